@@ -0,0 +1,43 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.util.Random;
+
+/**
+ * A fixed table of pseudo-random inputs that benchmarks cycle through, so the
+ * JIT can't fold a constant input into the code being measured. The table is
+ * seeded, so every run sees the same inputs.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+final class Inputs {
+
+    private static final int SIZE = 1024;
+
+    private final double[] values = new double[SIZE];
+    private int index = 0;
+
+    /**
+     * Create a table of inputs.
+     * 
+     * @param seed The random seed.
+     * @param min  The smallest value.
+     * @param max  The largest value.
+     */
+    Inputs(long seed, double min, double max) {
+        Random random = new Random(seed);
+        for (int i = 0; i < SIZE; i++) {
+            values[i] = min + (random.nextDouble() * (max - min));
+        }
+    }
+
+    /**
+     * @return The next input.
+     */
+    double next() {
+        double value = values[index];
+        index = (index + 1) & (SIZE - 1);
+        return value;
+    }
+}
@@ -0,0 +1,70 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.bancino.robotics.swerveio.SwerveDriveCalculator;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.si.ChassisDimension;
+import net.bancino.robotics.swerveio.si.Length;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * Benchmarks of the swerve drive calculator: solving one module at a time, the
+ * way the drive used to, against solving every module in one batch.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class KinematicsBenchmark {
+
+    private static final SwerveModule[] MODULES = { SwerveModule.FRONT_RIGHT, SwerveModule.FRONT_LEFT,
+            SwerveModule.REAR_LEFT, SwerveModule.REAR_RIGHT };
+
+    private final SwerveDriveCalculator calculator = new SwerveDriveCalculator(
+            new ChassisDimension(new Length(20, Unit.INCHES), new Length(24, Unit.INCHES)));
+    private final Inputs joystick = new Inputs(5557, -1, 1);
+    private final Inputs gyro = new Inputs(2020, 0, 360);
+    private final double[] speeds = new double[MODULES.length];
+    private final double[] angles = new double[MODULES.length];
+
+    @Benchmark
+    public double getWheelAngle() {
+        return calculator.getWheelAngle(SwerveModule.FRONT_LEFT, joystick.next(), joystick.next(), joystick.next());
+    }
+
+    @Benchmark
+    public double getWheelSpeed() {
+        return calculator.getWheelSpeed(SwerveModule.FRONT_LEFT, joystick.next(), joystick.next(), joystick.next());
+    }
+
+    @Benchmark
+    public void perModule(Blackhole blackhole) {
+        double fwd = joystick.next();
+        double str = joystick.next();
+        double rcw = joystick.next();
+        double gyroAngle = gyro.next();
+        for (SwerveModule module : MODULES) {
+            blackhole.consume(calculator.getWheelAngle(module, fwd, str, rcw, gyroAngle));
+            blackhole.consume(calculator.getWheelSpeed(module, fwd, str, rcw, gyroAngle));
+        }
+    }
+
+    @Benchmark
+    public void batch(Blackhole blackhole) {
+        calculator.calculate(joystick.next(), joystick.next(), joystick.next(), gyro.next(), speeds, angles);
+        blackhole.consume(speeds);
+        blackhole.consume(angles);
+    }
+}
@@ -0,0 +1,44 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.bancino.robotics.swerveio.pid.MiniPID;
+
+/**
+ * Benchmarks of a MiniPID configured like a pivot loop, with every feature the
+ * modules use turned on.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MiniPIDBenchmark {
+
+    private final MiniPID pid = new MiniPID(0.003, 1e-6, 1e-4);
+    private final Inputs feedback = new Inputs(5557, 0, 360);
+
+    @Setup
+    public void setup() {
+        pid.setOutputLimits(-1, 1);
+        pid.setSetpointRange(360);
+        pid.setOutputRampRate(0.1);
+        pid.setOutputFilter(0.1);
+        pid.setMaxIOutput(0.2);
+    }
+
+    @Benchmark
+    public double getOutput() {
+        return pid.getOutput(feedback.next(), feedback.next());
+    }
+}
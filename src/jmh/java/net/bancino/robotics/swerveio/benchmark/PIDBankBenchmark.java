@@ -0,0 +1,82 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.bancino.robotics.swerveio.pid.AbstractPIDController;
+import net.bancino.robotics.swerveio.pid.MiniPID;
+import net.bancino.robotics.swerveio.pid.PIDBank;
+
+/**
+ * Benchmarks of the eight PID loops of a four module drivetrain: as separate
+ * MiniPIDs, as views into a PID bank, and as one batch evaluation of the bank.
+ * Every loop is configured like the one in {@link MiniPIDBenchmark}.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PIDBankBenchmark {
+
+    private static final int LOOPS = 8;
+
+    private final AbstractPIDController[] miniPids = new AbstractPIDController[LOOPS];
+    private final AbstractPIDController[] views = new AbstractPIDController[LOOPS];
+    private final PIDBank bank = new PIDBank(LOOPS);
+    private final Inputs feedback = new Inputs(5557, 0, 360);
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < LOOPS; i++) {
+            miniPids[i] = new MiniPID(0.003, 1e-6, 1e-4);
+            views[i] = bank.add();
+            configure(miniPids[i]);
+            configure(views[i]);
+        }
+    }
+
+    private static void configure(AbstractPIDController pid) {
+        pid.setPID(0.003, 1e-6, 1e-4);
+        pid.setOutputLimits(-1, 1);
+        pid.setSetpointRange(360);
+        pid.setOutputRampRate(0.1);
+        pid.setOutputFilter(0.1);
+        pid.setMaxIOutput(0.2);
+    }
+
+    @Benchmark
+    public void miniPid(Blackhole blackhole) {
+        for (AbstractPIDController pid : miniPids) {
+            blackhole.consume(pid.getOutput(feedback.next(), feedback.next()));
+        }
+    }
+
+    @Benchmark
+    public void bankViews(Blackhole blackhole) {
+        for (AbstractPIDController pid : views) {
+            blackhole.consume(pid.getOutput(feedback.next(), feedback.next()));
+        }
+    }
+
+    @Benchmark
+    public void bankEvaluate(Blackhole blackhole) {
+        for (int i = 0; i < LOOPS; i++) {
+            bank.setInput(i, feedback.next(), feedback.next());
+        }
+        bank.evaluate();
+        for (int i = 0; i < LOOPS; i++) {
+            blackhole.consume(bank.getOutput(i));
+        }
+    }
+}
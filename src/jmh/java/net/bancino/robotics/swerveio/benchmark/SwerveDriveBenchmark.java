@@ -0,0 +1,75 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import net.bancino.robotics.swerveio.SwerveDrive;
+import net.bancino.robotics.swerveio.SwerveFlag;
+import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.exception.SwerveException;
+import net.bancino.robotics.swerveio.log.csv.CSVSwerveLogger;
+import net.bancino.robotics.swerveio.si.Length;
+import net.bancino.robotics.swerveio.si.SquareChassis;
+import net.bancino.robotics.swerveio.si.Unit;
+import net.bancino.robotics.swerveio.sim.SwerveSimulation;
+
+/**
+ * Benchmarks of a whole drive cycle and a CSV log entry, against simulated
+ * MK2 modules. The simulation is never stepped, so only SwerveIO itself is
+ * measured; the modules are just something to write outputs to and read
+ * encoders from.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SwerveDriveBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean fieldCentric;
+
+    private final Inputs joystick = new Inputs(5557, -1, 1);
+    private SwerveDrive swerve;
+    private CSVSwerveLogger logger;
+    private SwerveVector[] vectors;
+    private int index = 0;
+
+    @Setup
+    public void setup() throws SwerveException {
+        SwerveSimulation simulation = SwerveSimulation.mk2(new SquareChassis(new Length(30, Unit.INCHES)), 50);
+        swerve = new SwerveDrive(simulation.getMeta("Benchmark", List.of(SwerveFlag.ENABLE_PIVOT_OPTIMIZE))) {
+        };
+        swerve.setFieldCentric(fieldCentric);
+        logger = new CSVSwerveLogger(OutputStream.nullOutputStream());
+
+        /* Build the vectors up front so the benchmark doesn't measure their allocation. */
+        vectors = new SwerveVector[256];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = new SwerveVector(joystick.next(), joystick.next(), joystick.next());
+        }
+    }
+
+    @Benchmark
+    public void drive() {
+        swerve.drive(vectors[index]);
+        index = (index + 1) & (vectors.length - 1);
+    }
+
+    @Benchmark
+    public void logState() {
+        logger.logState(swerve);
+    }
+}
@@ -0,0 +1,48 @@
+package net.bancino.robotics.swerveio.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.kinematics.ChassisSpeeds;
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.si.ChassisDimension;
+import net.bancino.robotics.swerveio.si.Length;
+import net.bancino.robotics.swerveio.si.SquareChassis;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * Benchmarks of the utility conversions that run on every drive cycle.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UtilsBenchmark {
+
+    private static final Length WHEEL_DIAMETER = new Length(4, Unit.INCHES);
+    private static final ChassisDimension CHASSIS = new SquareChassis(new Length(30, Unit.INCHES));
+
+    private final Inputs encoder = new Inputs(5557, 0, 360);
+    private final Inputs speed = new Inputs(2020, -3, 3);
+
+    @Benchmark
+    public double correctPivotFeedback() {
+        return SwerveIOUtils.correctPivotFeedback(encoder.next(), encoder.next(), 360);
+    }
+
+    @Benchmark
+    public SwerveVector convertToSwerveVector() {
+        ChassisSpeeds speeds = new ChassisSpeeds(speed.next(), speed.next(), speed.next());
+        return SwerveIOUtils.convertToSwerveVector(speeds, 8.33, 5676, WHEEL_DIAMETER, CHASSIS);
+    }
+}
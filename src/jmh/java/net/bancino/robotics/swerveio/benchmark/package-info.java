@@ -0,0 +1,10 @@
+/**
+ * JMH benchmarks of the SwerveIO hot path. Run them with
+ * {@code ./gradlew jmh}; every benchmark reports its allocation rate through
+ * the GC profiler.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+package net.bancino.robotics.swerveio.benchmark;
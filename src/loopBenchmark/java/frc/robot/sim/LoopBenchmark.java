@@ -0,0 +1,150 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) 2019 FIRST. All Rights Reserved.                             */
+/* Open Source Software - may be modified and shared by FRC teams. The code   */
+/* must be accompanied by the FIRST BSD license file in the root directory of */
+/* the project.                                                               */
+/*----------------------------------------------------------------------------*/
+
+package frc.robot.sim;
+
+import java.io.File;
+import java.io.IOException;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.hal.sim.mockdata.DriverStationDataJNI;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import frc.robot.Constants;
+import frc.robot.Robot;
+import frc.robot.subsystems.ClimbSubsystem;
+import frc.robot.subsystems.IntakeSubsystem;
+import frc.robot.subsystems.LauncherSubsystem;
+import frc.robot.subsystems.StorageSubsystem;
+import frc.robot.subsystems.swerve.DrivetrainSubsystem;
+import net.bancino.robotics.swerveio.sim.LoopHarness;
+import net.bancino.robotics.swerveio.sim.LoopReport;
+
+/**
+ * Runs the whole robot loop on the desktop and reports what every cycle costs,
+ * so that a slow loop shows up before it gets to the roboRIO. The robot is
+ * wired up exactly like it is on the field, by robotInit(), against the
+ * desktop HAL, which simulates every motor controller and sensor. The driver
+ * station and both joysticks are scripted through the HAL too, so the button
+ * bindings in RobotContainer are what start the commands.
+ *
+ * Each scenario runs the scheduler at the robot's 20ms period, in real time,
+ * because the commands are timed with the robot's clock. The summary is
+ * printed and every cycle is written to a CSV file per scenario in the
+ * directory given as the first argument (build/loop-benchmark by default).
+ *
+ * Run this with ./gradlew loopBenchmark
+ */
+public final class LoopBenchmark {
+  private static final double PERIOD = 0.02;
+
+  private static final byte DRIVER = (byte) Constants.PRIMARY_JOYSTICK_PORT;
+  private static final byte MANIPULATOR = (byte) Constants.SECONDARY_JOYSTICK_PORT;
+
+  /* The raw axes and buttons of an Xbox controller */
+  private static final int AXES = 6;
+  private static final int BUTTONS = 10;
+  private static final int LEFT_X = 0, LEFT_Y = 1, RIGHT_X = 4;
+  private static final int A_BUTTON = 1;
+
+  private final float[] driverAxes = new float[AXES];
+  private final float[] manipulatorAxes = new float[AXES];
+
+  private final Robot robot;
+  private final LoopHarness harness;
+
+  private LoopBenchmark() {
+    robot = new Robot();
+    robot.robotInit();
+
+    harness = new LoopHarness(PERIOD);
+    harness.setRealTime(true);
+    harness.addSubsystem("Drivetrain", DrivetrainSubsystem.getInstance());
+    harness.addSubsystem("Launcher", LauncherSubsystem.getInstance());
+    harness.addSubsystem("Intake", IntakeSubsystem.getInstance());
+    harness.addSubsystem("Storage", StorageSubsystem.getInstance());
+    harness.addSubsystem("Climb", ClimbSubsystem.getInstance());
+  }
+
+  /**
+   * Drive around in a circle while turning back and forth, for a minute.
+   */
+  private LoopReport teleop() {
+    setMode(true, false);
+    robot.teleopInit();
+    return harness.run("Teleop Driving", 3000, cycle -> {
+      double t = cycle * PERIOD;
+      driverAxes[LEFT_X] = (float) (0.8 * Math.sin(2 * Math.PI * t / 4));
+      driverAxes[LEFT_Y] = (float) (0.8 * Math.cos(2 * Math.PI * t / 4));
+      driverAxes[RIGHT_X] = (float) (0.5 * Math.sin(2 * Math.PI * t / 7));
+      DriverStationDataJNI.setJoystickAxes(DRIVER, driverAxes);
+      DriverStationDataJNI.notifyNewData();
+      robot.teleopPeriodic();
+    });
+  }
+
+  /**
+   * Hold the manipulator's A button, which launches from distance, for 20
+   * seconds, then let go of it for the last second so the command ends.
+   */
+  private LoopReport launchFromDistance() {
+    setMode(true, false);
+    robot.teleopInit();
+    int cycles = 1050;
+    return harness.run("Launch From Distance", cycles, cycle -> {
+      int buttons = (cycle < cycles - 50) ? (1 << (A_BUTTON - 1)) : 0;
+      DriverStationDataJNI.setJoystickButtons(MANIPULATOR, buttons, BUTTONS);
+      DriverStationDataJNI.notifyNewData();
+      robot.teleopPeriodic();
+    });
+  }
+
+  /**
+   * Run the default autonomous, the 5 ball auto, for a whole 15 second
+   * autonomous period.
+   */
+  private LoopReport fiveBallAuto() {
+    setMode(true, true);
+    robot.autonomousInit();
+    return harness.run("5 Ball Auto", 750, cycle -> robot.autonomousPeriodic());
+  }
+
+  /**
+   * Put the driver station in a mode with every control let go.
+   */
+  private void setMode(boolean enabled, boolean autonomous) {
+    CommandScheduler.getInstance().cancelAll();
+    DriverStationDataJNI.setJoystickAxes(DRIVER, new float[AXES]);
+    DriverStationDataJNI.setJoystickAxes(MANIPULATOR, new float[AXES]);
+    DriverStationDataJNI.setJoystickButtons(DRIVER, 0, BUTTONS);
+    DriverStationDataJNI.setJoystickButtons(MANIPULATOR, 0, BUTTONS);
+    DriverStationDataJNI.setAutonomous(autonomous);
+    DriverStationDataJNI.setEnabled(enabled);
+    DriverStationDataJNI.notifyNewData();
+  }
+
+  public static void main(String... args) throws IOException {
+    if (!HAL.initialize(500, 0)) {
+      throw new IllegalStateException("Failed to initialize the HAL.");
+    }
+    DriverStationDataJNI.setDsAttached(true);
+
+    File outputDir = new File(args.length > 0 ? args[0] : "build/loop-benchmark");
+    outputDir.mkdirs();
+
+    LoopBenchmark benchmark = new LoopBenchmark();
+    LoopReport[] reports = { benchmark.teleop(), benchmark.launchFromDistance(), benchmark.fiveBallAuto() };
+    benchmark.setMode(false, false);
+
+    for (LoopReport report : reports) {
+      System.out.println(report);
+      report.writeCsv(new File(outputDir, report.getScenario().replace(' ', '_') + ".csv"));
+    }
+
+    /* The drivetrain's update loop and NetworkTables would keep the JVM alive */
+    System.exit(0);
+  }
+}
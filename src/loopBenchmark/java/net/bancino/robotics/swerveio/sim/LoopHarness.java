@@ -0,0 +1,224 @@
+package net.bancino.robotics.swerveio.sim;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+
+import edu.wpi.first.wpilibj2.command.Command;
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+import edu.wpi.first.wpilibj2.command.Subsystem;
+
+/**
+ * Runs the command scheduler for a fixed number of cycles on the desktop and
+ * records what every cycle cost: its wall time, the bytes it allocated, and the
+ * time spent in each subsystem's {@link Subsystem#periodic()}. This catches
+ * regressions in the whole robot loop, not just in the pieces a
+ * microbenchmark can isolate.
+ * <p>
+ * The scheduler normally calls every registered subsystem's periodic method
+ * itself, so it can't be timed per subsystem. Subsystems added to the harness
+ * are unregistered from the scheduler instead, and the harness calls their
+ * periodic methods, timed, at the start of each cycle, and schedules their
+ * default commands at the end of it, which is what the scheduler would have
+ * done. A default command set after a subsystem is added is picked up on the
+ * next cycle.
+ * <p>
+ * A scenario is scripted by a callback that runs before every cycle, outside of
+ * the measurement, to set joystick inputs or schedule commands. After every
+ * cycle, each stepper is given the loop period, which is where a
+ * {@link SwerveSimulation} is advanced. By default cycles are run back to back,
+ * which is right when everything is simulated; if the code under test reads
+ * the clock, the harness can instead pace cycles to the period like a
+ * {@code TimedRobot} would.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class LoopHarness {
+
+    private final double period;
+    private final List<String> subsystemNames = new ArrayList<>();
+    private final List<Subsystem> subsystems = new ArrayList<>();
+    private final List<Command> defaultCommands = new ArrayList<>();
+    private final List<DoubleConsumer> steppers = new ArrayList<>();
+    private final com.sun.management.ThreadMXBean threads;
+    private final long allocationOverhead;
+    private boolean realTime = false;
+
+    /**
+     * Create a loop harness.
+     *
+     * @param period The period of the loop, in seconds.
+     */
+    public LoopHarness(double period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Loop period must be greater than 0.");
+        }
+        this.period = period;
+
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+            /* Reading the counter can allocate, so take that out of every cycle. */
+            long id = Thread.currentThread().getId();
+            long overhead = Long.MAX_VALUE;
+            for (int i = 0; i < 16; i++) {
+                long before = threads.getThreadAllocatedBytes(id);
+                overhead = Math.min(overhead, threads.getThreadAllocatedBytes(id) - before);
+            }
+            allocationOverhead = overhead;
+        } else {
+            threads = null;
+            allocationOverhead = 0;
+        }
+    }
+
+    /**
+     * Time a subsystem's periodic method separately. The subsystem is
+     * unregistered from the command scheduler, so the harness is responsible for
+     * calling its periodic method and scheduling its default command from now on.
+     *
+     * @param name      The name to report the subsystem under.
+     * @param subsystem The subsystem.
+     */
+    public void addSubsystem(String name, Subsystem subsystem) {
+        if (name == null || subsystem == null) {
+            throw new IllegalArgumentException("Subsystem and name cannot be null.");
+        }
+        if (subsystems.contains(subsystem)) {
+            throw new IllegalArgumentException("Subsystem has already been added: " + name);
+        }
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        defaultCommands.add(scheduler.getDefaultCommand(subsystem));
+        scheduler.unregisterSubsystem(subsystem);
+        subsystemNames.add(name);
+        subsystems.add(subsystem);
+    }
+
+    /**
+     * Add something to advance by the loop period after every cycle, such as a
+     * {@link SwerveSimulation}.
+     *
+     * @param stepper Called with the loop period, in seconds.
+     */
+    public void addStepper(DoubleConsumer stepper) {
+        if (stepper == null) {
+            throw new IllegalArgumentException("Stepper cannot be null.");
+        }
+        steppers.add(stepper);
+    }
+
+    /**
+     * Set whether cycles are paced to the loop period, like a
+     * {@code TimedRobot}, or run back to back.
+     *
+     * @param realTime Whether or not to pace cycles in real time.
+     */
+    public void setRealTime(boolean realTime) {
+        this.realTime = realTime;
+    }
+
+    /**
+     * @return Whether or not cycles are paced in real time.
+     */
+    public boolean isRealTime() {
+        return realTime;
+    }
+
+    /**
+     * @return The loop period, in seconds.
+     */
+    public double getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return Whether or not allocations are being measured. This depends on the
+     *         JVM.
+     */
+    public boolean isMeasuringAllocations() {
+        return threads != null;
+    }
+
+    /**
+     * Run a scenario. This must be called from the same thread every time, the
+     * one that owns the command scheduler.
+     *
+     * @param scenario The name of the scenario, for the report.
+     * @param cycles   The number of cycles to run.
+     * @param script   Called with the cycle number before each cycle, or null.
+     * @return The measurements of every cycle.
+     */
+    public LoopReport run(String scenario, int cycles, IntConsumer script) {
+        if (cycles < 1) {
+            throw new IllegalArgumentException("A scenario must run for at least one cycle.");
+        }
+        CommandScheduler scheduler = CommandScheduler.getInstance();
+        int count = subsystems.size();
+        Subsystem[] subsystems = this.subsystems.toArray(new Subsystem[count]);
+        LoopReport report = new LoopReport(scenario, period, cycles, subsystemNames.toArray(new String[count]));
+        long threadId = Thread.currentThread().getId();
+        long periodNanos = (long) (period * 1e9);
+        long nextCycle = System.nanoTime();
+
+        for (int cycle = 0; cycle < cycles; cycle++) {
+            if (realTime) {
+                long wait = nextCycle - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                nextCycle += periodNanos;
+            }
+            if (script != null) {
+                script.accept(cycle);
+            }
+            adoptDefaultCommands(scheduler, subsystems);
+
+            long allocatedBefore = allocatedBytes(threadId);
+            long start = System.nanoTime();
+            long mark = start;
+            for (int i = 0; i < count; i++) {
+                subsystems[i].periodic();
+                long now = System.nanoTime();
+                report.recordSubsystem(i, cycle, now - mark);
+                mark = now;
+            }
+            scheduler.run();
+            for (int i = 0; i < count; i++) {
+                Command defaultCommand = defaultCommands.get(i);
+                if (defaultCommand != null && scheduler.requiring(subsystems[i]) == null) {
+                    scheduler.schedule(defaultCommand);
+                }
+            }
+            long end = System.nanoTime();
+            long allocated = allocatedBytes(threadId) - allocatedBefore - allocationOverhead;
+            report.recordCycle(cycle, end - start, Math.max(0, allocated));
+
+            for (DoubleConsumer stepper : steppers) {
+                stepper.accept(period);
+            }
+        }
+        return report;
+    }
+
+    /* Setting a default command registers the subsystem again, so take it back. */
+    private void adoptDefaultCommands(CommandScheduler scheduler, Subsystem[] subsystems) {
+        for (int i = 0; i < subsystems.length; i++) {
+            Command defaultCommand = scheduler.getDefaultCommand(subsystems[i]);
+            if (defaultCommand != null) {
+                defaultCommands.set(i, defaultCommand);
+                scheduler.unregisterSubsystem(subsystems[i]);
+            }
+        }
+    }
+
+    private long allocatedBytes(long threadId) {
+        return (threads == null) ? 0 : threads.getThreadAllocatedBytes(threadId);
+    }
+}
@@ -0,0 +1,204 @@
+package net.bancino.robotics.swerveio.sim;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import net.bancino.robotics.swerveio.log.LatencyHistogram;
+
+/**
+ * The measurements of every cycle of a {@link LoopHarness} scenario, with
+ * histograms for summarizing them. The raw measurements can be written out as
+ * CSV to compare runs or plot a whole scenario.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class LoopReport {
+
+    private final String scenario;
+    private final double period;
+    private final String[] subsystemNames;
+
+    private final long[] cycleNanos;
+    private final long[] allocatedBytes;
+    private final long[][] subsystemNanos;
+
+    private final LatencyHistogram cycleHistogram = new LatencyHistogram();
+    private final LatencyHistogram[] subsystemHistograms;
+    private long totalAllocated;
+    private long maxAllocated;
+    private int overruns;
+
+    LoopReport(String scenario, double period, int cycles, String[] subsystemNames) {
+        this.scenario = scenario;
+        this.period = period;
+        this.subsystemNames = subsystemNames;
+        cycleNanos = new long[cycles];
+        allocatedBytes = new long[cycles];
+        subsystemNanos = new long[subsystemNames.length][cycles];
+        subsystemHistograms = new LatencyHistogram[subsystemNames.length];
+        for (int i = 0; i < subsystemHistograms.length; i++) {
+            subsystemHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    void recordSubsystem(int subsystem, int cycle, long nanos) {
+        subsystemNanos[subsystem][cycle] = nanos;
+        subsystemHistograms[subsystem].record(nanos);
+    }
+
+    void recordCycle(int cycle, long nanos, long allocated) {
+        cycleNanos[cycle] = nanos;
+        allocatedBytes[cycle] = allocated;
+        cycleHistogram.record(nanos);
+        totalAllocated += allocated;
+        maxAllocated = Math.max(maxAllocated, allocated);
+        if (nanos > period * 1e9) {
+            overruns++;
+        }
+    }
+
+    /**
+     * @return The name of the scenario.
+     */
+    public String getScenario() {
+        return scenario;
+    }
+
+    /**
+     * @return The number of cycles that were run.
+     */
+    public int getCycles() {
+        return cycleNanos.length;
+    }
+
+    /**
+     * Get the wall time of a cycle, including every timed periodic method.
+     *
+     * @param cycle The cycle number.
+     * @return The wall time, in nanoseconds.
+     */
+    public long getCycleNanos(int cycle) {
+        return cycleNanos[cycle];
+    }
+
+    /**
+     * Get the number of bytes the loop thread allocated during a cycle.
+     *
+     * @param cycle The cycle number.
+     * @return The allocated bytes, or zero if allocations weren't measured.
+     */
+    public long getAllocatedBytes(int cycle) {
+        return allocatedBytes[cycle];
+    }
+
+    /**
+     * Get the time a subsystem's periodic method took during a cycle.
+     *
+     * @param subsystem The name the subsystem was added to the harness under.
+     * @param cycle     The cycle number.
+     * @return The time, in nanoseconds.
+     */
+    public long getSubsystemNanos(String subsystem, int cycle) {
+        return subsystemNanos[indexOf(subsystem)][cycle];
+    }
+
+    /**
+     * @return A histogram of the wall time of every cycle.
+     */
+    public LatencyHistogram getCycleHistogram() {
+        return cycleHistogram;
+    }
+
+    /**
+     * Get a histogram of a subsystem's periodic method.
+     *
+     * @param subsystem The name the subsystem was added to the harness under.
+     * @return The histogram.
+     */
+    public LatencyHistogram getSubsystemHistogram(String subsystem) {
+        return subsystemHistograms[indexOf(subsystem)];
+    }
+
+    /**
+     * @return The number of bytes allocated over the whole scenario.
+     */
+    public long getTotalAllocatedBytes() {
+        return totalAllocated;
+    }
+
+    /**
+     * @return The most bytes allocated in a single cycle.
+     */
+    public long getMaxAllocatedBytes() {
+        return maxAllocated;
+    }
+
+    /**
+     * @return The number of cycles that took longer than the loop period.
+     */
+    public int getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * Write every cycle's measurements as CSV, one row per cycle.
+     *
+     * @param file The file to write.
+     * @throws IOException If the file could not be written.
+     */
+    public void writeCsv(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.print("Cycle,Cycle (ns),Allocated (bytes)");
+            for (String name : subsystemNames) {
+                out.print(',');
+                out.print(name);
+                out.print(" (ns)");
+            }
+            out.println();
+            for (int cycle = 0; cycle < cycleNanos.length; cycle++) {
+                out.print(cycle);
+                out.print(',');
+                out.print(cycleNanos[cycle]);
+                out.print(',');
+                out.print(allocatedBytes[cycle]);
+                for (long[] nanos : subsystemNanos) {
+                    out.print(',');
+                    out.print(nanos[cycle]);
+                }
+                out.println();
+            }
+        }
+    }
+
+    private int indexOf(String subsystem) {
+        for (int i = 0; i < subsystemNames.length; i++) {
+            if (subsystemNames[i].equals(subsystem)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No subsystem named " + subsystem);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d cycles, %d overruns, %.1f KiB allocated (%.0f B/cycle mean, %d B max)%n",
+                scenario, cycleNanos.length, overruns, totalAllocated / 1024.0,
+                (double) totalAllocated / cycleNanos.length, maxAllocated));
+        appendRow(sb, "Cycle", cycleHistogram);
+        for (int i = 0; i < subsystemNames.length; i++) {
+            appendRow(sb, subsystemNames[i] + ".periodic()", subsystemHistograms[i]);
+        }
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, String name, LatencyHistogram histogram) {
+        sb.append(String.format("  %-32s mean %8.1f us  p50 %8.1f us  p99 %8.1f us  max %8.1f us%n", name,
+                histogram.getMean() / 1e3, histogram.getP50() / 1e3, histogram.getP99() / 1e3,
+                histogram.getMax() / 1e3));
+    }
+}
@@ -58,6 +58,8 @@ public final class Constants {
     public static final int DRIVETRAIN_BACK_RIGHT_ANGLE_ENCODER = 3; // Analog
     public static final int DRIVETRAIN_BACK_RIGHT_DRIVE_MOTOR = 8; // CAN
 
+    public static final double UPDATE_PERIOD = 5.0e-3; // seconds, drivetrain update loop
+
     public static final double SWERVE_DRIVE_MOTOR_PER_REVOLUTION = 42;
 
     public static final double FRONT_LEFT_DRIVE_PER_REVOLUTION = 8.285738945007324;
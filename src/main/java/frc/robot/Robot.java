@@ -61,6 +61,7 @@ import frc.robot.subsystems.swerve.SwerveDrivetrain;
 import io.github.oblarg.oblog.Logger;
 // import net.bancino.robotics.swerveio.commands.PathweaverSwerveDrive;
 import net.bancino.robotics.swerveio.command.PathweaverSwerveDrive;
+import net.bancino.robotics.swerveio.trajectory.TrajectoryCache;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -76,6 +77,12 @@ public class Robot extends TimedRobot {
 
   private static final double UPDATE_DT = 5.0e-3;
 
+  /**
+   * The distance, in inches, between samples of trajectories generated from
+   * .path files
+   */
+  private static final double PATH_SAMPLE_DISTANCE = 0.1;
+
   private double lastTimestamp = 0.0;
   Trajectory autonTrajectory;
 
@@ -92,6 +99,10 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void robotInit() {
+    // Start loading every trajectory in the deploy directory in the background
+    // first, so they are ready long before autonomous starts
+    this.startTrajectoryCache();
+
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our
     // autonomous chooser on the dashboard.
@@ -241,6 +252,17 @@ public class Robot extends TimedRobot {
     return robotContainer;
   }
 
+  private void startTrajectoryCache() {
+    TrajectoryCache trajectories = TrajectoryCache.getInstance();
+    trajectories.register(".path", file -> {
+      try (FileReader reader = new FileReader(file.toFile())) {
+        Path path = new PathReader(reader).read();
+        return new Trajectory(path, DrivetrainSubsystem.TRAJECTORY_CONSTRAINTS, PATH_SAMPLE_DISTANCE);
+      }
+    });
+    trajectories.start();
+  }
+
   private void setupAutonomousOptions() {
     ShuffleboardTab tab = Shuffleboard.getTab("competition");
     autonomousModes = new SendableChooser<Command>();
@@ -288,6 +310,7 @@ public class Robot extends TimedRobot {
             new ParallelCommandGroup(
                 new SequentialCommandGroup(new FeedOutForTimeCommand(1), new FeedInForTimeCommand(5)),
                 new LaunchUpperForTimeCommand(6))));
+    autonomousModes.addOption("Test Path", new FollowTrajectoryCommand("TestPath.path"));
     tab.add("Autonomous Mode", autonomousModes).withWidget(BuiltInWidgets.kComboBoxChooser);
     timeBack = tab.add("Time to move back", 5).withWidget(BuiltInWidgets.kNumberSlider)
         .withProperties(Map.of("min", .1, "max", 2)).getEntry();
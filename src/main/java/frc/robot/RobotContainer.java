@@ -69,7 +69,7 @@ public class RobotContainer {
     // SwerveDrivetrain.getInstance().startLogging(new DashboardSwerveLogger());
 
     // this starts the update thread for swerve drive
-    updateManager.startLoop(5.0e-3);
+    updateManager.startLoop(Constants.UPDATE_PERIOD);
 
     // SwerveDrivetrain.getInstance().setDefaultCommand(new
     // SwerveDriveTeleop(SwerveDrivetrain.getInstance(),
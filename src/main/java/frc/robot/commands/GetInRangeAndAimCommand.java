@@ -7,10 +7,10 @@
 
 package frc.robot.commands;
 
-import org.frcteam2910.common.math.Rotation2;
 import org.frcteam2910.common.math.Vector2;
 
 import edu.wpi.first.wpilibj.GenericHID.RumbleType;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.controller.PIDController;
 import edu.wpi.first.wpilibj.geometry.Translation2d;
 import edu.wpi.first.wpilibj2.command.CommandBase;
@@ -18,6 +18,7 @@ import edu.wpi.first.wpiutil.math.MathUtil;
 import frc.robot.Robot;
 import frc.robot.subsystems.Limelight;
 import frc.robot.subsystems.swerve.DrivetrainSubsystem;
+import net.bancino.robotics.swerveio.pid.HeadingController;
 
 /**
  * My hope for this command is to have the driver hold a button and it will move
@@ -32,6 +33,7 @@ public class GetInRangeAndAimCommand extends CommandBase {
   private boolean isAligned = false;
 
   PIDController xController, yController;
+  HeadingController heading = new HeadingController();
 
   /**
    * Creates a new GetInRangeAndAimCommand.
@@ -54,6 +56,9 @@ public class GetInRangeAndAimCommand extends CommandBase {
   public void initialize() {
     limelight.disableDriverMode();
     limelight.enableLEDs();
+    // hold the robot square to the target while we range
+    heading.reset();
+    heading.setGoal(0, drive.getHeading().toDegrees(), Timer.getFPGATimestamp());
   }
 
   // Called every time the scheduler runs while the command is scheduled.
@@ -110,20 +115,10 @@ public class GetInRangeAndAimCommand extends CommandBase {
       // System.out.println("X ADJUST: " + x_adjust);
       // System.out.println("Y ADJUST: " + y_adjust);
 
-      Rotation2 currentGyroAngleRotation = DrivetrainSubsystem.getInstance().getGyroscope().getAngle();
-      // DrivetrainSubsystem.getInstance().getG
-      // double newOutput = MathUtil.clamp(
-      // pidController.calculate(currentGyroAngle.toDegrees(), 0), -0.25, .25);
-      // double newOutput = pid.calculate(currentGyroAngle.toDegrees(), 0);
-      double currentGyroAngle = currentGyroAngleRotation.toDegrees();
-      if (currentGyroAngle > 180) {
-        currentGyroAngle = (360 - currentGyroAngle) * 0.01;
-      } else {
-        currentGyroAngle = (0 - currentGyroAngle) * 0.01;
-      }
+      double rotation = heading.calculate(drive.getHeading().toDegrees(), Timer.getFPGATimestamp());
 
       drive.drive(new Vector2(Math.copySign(Math.pow(y_adjust, 2.0), y_adjust),
-          Math.copySign(Math.pow(x_adjust, 2.0), -x_adjust)), currentGyroAngle, false);
+          Math.copySign(Math.pow(x_adjust, 2.0), -x_adjust)), rotation, false);
 
       // once aligned, we set this boolean to true which will finish the command
       // we also later might need to set this to a certain range and not just 0, but
@@ -7,62 +7,57 @@
 
 package frc.robot.commands;
 
-import org.frcteam2910.common.control.PidConstants;
-import org.frcteam2910.common.control.PidController;
-import org.frcteam2910.common.math.Rotation2;
 import org.frcteam2910.common.math.Vector2;
 
-import edu.wpi.first.wpilibj.controller.PIDController;
-import edu.wpi.first.wpilibj.geometry.Translation2d;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.CommandBase;
-import edu.wpi.first.wpiutil.math.MathUtil;
 import frc.robot.subsystems.swerve.DrivetrainSubsystem;
+import net.bancino.robotics.swerveio.pid.HeadingController;
 
 public class RotateToAngleCommand extends CommandBase {
-  double kP = 0.1;
-  double kI = 1e-4;
-  double kD = 1;
+  private final HeadingController heading = new HeadingController();
+  private final double angle;
 
   /**
    * Creates a new RotateToAngleCommand.
+   *
+   * @param angle The gyro angle to rotate to, in degrees.
    */
   public RotateToAngleCommand(double angle) {
+    this.angle = angle;
     // Use addRequirements() here to declare subsystem dependencies.
     addRequirements(DrivetrainSubsystem.getInstance());
   }
 
+  private double getGyroAngle() {
+    return DrivetrainSubsystem.getInstance().getHeading().toDegrees();
+  }
+
   // Called when the command is initially scheduled.
   @Override
   public void initialize() {
-    // here we have to figure out which direction to rotate; CCW or CW
-    // we also may or may not need to setup some PID stuff here too
-    System.out.println("Startig rotate to angle");
+    // the heading controller figures out which direction to rotate, and profiles
+    // the turn so it doesn't overshoot
+    heading.reset();
+    heading.setGoal(angle, getGyroAngle(), Timer.getFPGATimestamp());
   }
 
   // Called every time the scheduler runs while the command is scheduled.
   @Override
   public void execute() {
-    Rotation2 currentGyroAngleRotation = DrivetrainSubsystem.getInstance().getGyroscope().getAngle();
-    double currentGyroAngle = currentGyroAngleRotation.toDegrees();
-    if (currentGyroAngle > 180) {
-      currentGyroAngle = (360 - currentGyroAngle) * 0.005;
-    } else {
-      currentGyroAngle = (0 - currentGyroAngle) * 0.005;
-    }
-
-    DrivetrainSubsystem.getInstance().drive(new Vector2(0, 0), currentGyroAngle, true);
+    double rotation = heading.calculate(getGyroAngle(), Timer.getFPGATimestamp());
+    DrivetrainSubsystem.getInstance().drive(new Vector2(0, 0), rotation, true);
   }
 
   // Called once the command ends or is interrupted.
   @Override
   public void end(boolean interrupted) {
-    // DrivetrainSubsystem.getInstance().holonomicDrive(Vector2.ZERO, 0);
+    DrivetrainSubsystem.getInstance().drive(new Vector2(0, 0), 0, true);
   }
 
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    return DrivetrainSubsystem.getInstance().getGyroscope().getAngle().toDegrees() <= 1
-        || DrivetrainSubsystem.getInstance().getGyroscope().getAngle().toDegrees() >= 357;
+    return heading.isSettled();
   }
 }
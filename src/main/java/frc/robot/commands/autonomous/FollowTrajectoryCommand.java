@@ -0,0 +1,78 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) 2019 FIRST. All Rights Reserved.                             */
+/* Open Source Software - may be modified and shared by FRC teams. The code   */
+/* must be accompanied by the FIRST BSD license file in the root directory of */
+/* the project.                                                               */
+/*----------------------------------------------------------------------------*/
+
+package frc.robot.commands.autonomous;
+
+import org.frcteam2910.common.control.Trajectory;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.swerve.DrivetrainSubsystem;
+import net.bancino.robotics.swerveio.trajectory.TrajectoryCache;
+
+/**
+ * Follows a trajectory with the drivetrain. The trajectory is actually followed
+ * inside the drivetrain's update loop, which runs four times as fast as the
+ * scheduler; this command only hands it over and waits for it to finish.
+ */
+public class FollowTrajectoryCommand extends CommandBase {
+  private final DrivetrainSubsystem drivetrain;
+  private final Trajectory trajectory;
+  private final String name;
+
+  private long followId = 0;
+
+  /**
+   * Creates a new FollowTrajectoryCommand.
+   *
+   * @param trajectory The trajectory to follow
+   */
+  public FollowTrajectoryCommand(Trajectory trajectory) {
+    this(trajectory, null);
+  }
+
+  /**
+   * Creates a new FollowTrajectoryCommand that takes its trajectory from the
+   * trajectory cache when it starts. If the trajectory isn't loaded by then,
+   * the command finishes immediately.
+   *
+   * @param name The file name of the trajectory, such as "TestPath.path"
+   */
+  public FollowTrajectoryCommand(String name) {
+    this(null, name);
+  }
+
+  private FollowTrajectoryCommand(Trajectory trajectory, String name) {
+    this.trajectory = trajectory;
+    this.name = name;
+    drivetrain = DrivetrainSubsystem.getInstance();
+    addRequirements(drivetrain);
+  }
+
+  // Called when the command is initially scheduled.
+  @Override
+  public void initialize() {
+    Trajectory trajectory = this.trajectory;
+    if (trajectory == null) {
+      trajectory = TrajectoryCache.getInstance().getNow(name, Trajectory.class);
+    }
+    followId = (trajectory != null) ? drivetrain.follow(trajectory) : 0;
+  }
+
+  // Called once the command ends or is interrupted.
+  @Override
+  public void end(boolean interrupted) {
+    if (followId != 0) {
+      drivetrain.cancelFollow(followId);
+    }
+  }
+
+  // Returns true when the command should end.
+  @Override
+  public boolean isFinished() {
+    return followId == 0 || drivetrain.isFollowComplete(followId);
+  }
+}
@@ -10,15 +10,18 @@ package frc.robot.subsystems.swerve;
 import frc.robot.Constants;
 import frc.robot.Direction;
 
-import javax.annotation.concurrent.GuardedBy;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.CANSparkMaxLowLevel;
 
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.RobotController;
 import edu.wpi.first.wpilibj.SPI;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.drive.Vector2d;
 import edu.wpi.first.wpilibj.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.geometry.Translation2d;
@@ -38,6 +41,7 @@ import org.frcteam2910.common.control.MaxAccelerationConstraint;
 import org.frcteam2910.common.control.MaxVelocityConstraint;
 import org.frcteam2910.common.control.PidConstants;
 import org.frcteam2910.common.control.PidController;
+import org.frcteam2910.common.control.Trajectory;
 import org.frcteam2910.common.drivers.Gyroscope;
 import org.frcteam2910.common.math.RigidTransform2;
 import org.frcteam2910.common.math.Rotation2;
@@ -55,6 +59,8 @@ import org.frcteam2910.common.kinematics.SwerveKinematics;
 import org.frcteam2910.common.kinematics.SwerveOdometry;
 import org.frcteam2910.common.control.TrajectoryConstraint;
 
+import net.bancino.robotics.swerveio.log.LoopProfiler;
+
 public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.Updatable {
   /**
    * Creates a new DrivetrainSubsystem.
@@ -62,6 +68,22 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
   private static final double TRACKWIDTH = 30;
   private static final double WHEELBASE = 30;
 
+  /**
+   * The limits used when generating trajectories for the drivetrain, in inches
+   * and seconds
+   */
+  public static final TrajectoryConstraint[] TRAJECTORY_CONSTRAINTS = {
+      new MaxVelocityConstraint(12.0 * 12.0), new MaxAccelerationConstraint(15.0 * 12.0),
+      new CentripetalAccelerationConstraint(25.0 * 12.0) };
+
+  /**
+   * Feedforward for trajectory following, in volts per inch per second, volts
+   * per inch per second squared, and volts. These started from 2910's MK2 NEO
+   * drivetrain and should be re-characterized for ours
+   */
+  public static final DrivetrainFeedforwardConstants FEEDFORWARD_CONSTANTS = new DrivetrainFeedforwardConstants(
+      0.042746, 0.0032181, 0.30764);
+
   /**
    * These are the individual module offsets that represent their "zero" positions
    */
@@ -131,18 +153,20 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
   private final SwerveModule[] modules = { frontLeftModule, frontRightModule, backLeftModule, backRightModule };
 
   /**
-   * Below are variables or objects used for calculations crucial to swerve drive
-   * each with their respective "locks" for thread safety
+   * Below are variables or objects used for calculations crucial to swerve drive.
+   * The gyroscope and odometry are only ever touched by the update thread; other
+   * threads exchange state with it through atomic references to immutable
+   * objects, so the update thread never waits on a command or the dashboard.
+   * The heading is published for other threads to read, instead of them reading
+   * the gyroscope
    */
-  private final Object sensorLock = new Object();
-  @GuardedBy("sensorLock")
   private final Gyroscope gyroscope = new NavX(SPI.Port.kMXP);
+  private final AtomicReference<Rotation2> gyroReset = new AtomicReference<>();
+  private final AtomicReference<Rotation2> heading = new AtomicReference<>(Rotation2.ZERO);
 
   private final SwerveOdometry odometry = new SwerveOdometry(kinematics, RigidTransform2.ZERO);
 
-  private final Object kinematicsLock = new Object();
-  @GuardedBy("kinematicsLock")
-  private RigidTransform2 pose = RigidTransform2.ZERO;
+  private final AtomicReference<RigidTransform2> pose = new AtomicReference<>(RigidTransform2.ZERO);
 
   private NetworkTableEntry[] moduleAngleEntries = new NetworkTableEntry[modules.length];
 
@@ -150,18 +174,50 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
   private NetworkTableEntry poseYEntry;
   private NetworkTableEntry poseAngleEntry;
 
-  private final Object stateLock = new Object();
-  @GuardedBy("stateLock")
-  private HolonomicDriveSignal driveSignal = null;
+  private final AtomicReference<HolonomicDriveSignal> driveSignal = new AtomicReference<>();
+
+  /**
+   * The longest time update() has spent exchanging state with other threads in
+   * one cycle: taking the gyro reset, drive signal and follow request, and
+   * publishing the heading and pose. Every exchange is a single atomic get or
+   * set, so nothing the other threads do can make the update thread wait; this
+   * is measured so that a regression shows up on the dashboard. It is only
+   * written by the update thread
+   */
+  private volatile long maxExchangeNanos = 0;
+  private NetworkTableEntry maxExchangeEntry;
+
+  /**
+   * The trajectory follower runs inside update() at the UpdateManager rate and is
+   * only ever touched by the update thread. Commands hand it trajectories, and
+   * find out a trajectory is done, through followHandoff
+   */
+  private final HolonomicMotionProfiledTrajectoryFollower follower = new HolonomicMotionProfiledTrajectoryFollower(
+      new PidConstants(0.4, 0.0, 0.025), new PidConstants(5.0, 0.0, 0.0),
+      new HolonomicFeedforward(FEEDFORWARD_CONSTANTS));
+  private final FollowHandoff<Trajectory> followHandoff = new FollowHandoff<>();
+  private Vector2 velocity = Vector2.ZERO;
+  private double angularVelocity = 0.0;
+
+  /**
+   * Timing for each stage of the update loop, published to the dashboard about
+   * once a second so we can tell which stage causes loop overruns
+   */
+  private static final int PROFILE_SENSORS = 0;
+  private static final int PROFILE_ODOMETRY = 1;
+  private static final int PROFILE_KINEMATICS = 2;
+  private static final int PROFILE_MODULES = 3;
+  private static final double PROFILE_PUBLISH_PERIOD = 1.0;
+  private final LoopProfiler profiler = new LoopProfiler("Drivetrain Update", Constants.UPDATE_PERIOD, "Sensors",
+      "Odometry", "Kinematics", "Modules");
+  private double lastProfilePublish = 0;
 
   public DrivetrainSubsystem() {
 
-    synchronized (sensorLock) {
-      /**
-       * We found that inverting the gyroscope gives us the proper behavior
-       */
-      gyroscope.setInverted(true);
-    }
+    /**
+     * We found that inverting the gyroscope gives us the proper behavior
+     */
+    gyroscope.setInverted(true);
 
     /**
      * This displays some key information about swerve to the shuffleboard
@@ -170,6 +226,7 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
     poseXEntry = tab.add("Pose X", 0.0).withPosition(0, 0).withSize(1, 1).getEntry();
     poseYEntry = tab.add("Pose Y", 0.0).withPosition(0, 1).withSize(1, 1).getEntry();
     poseAngleEntry = tab.add("Pose Angle", 0.0).withPosition(0, 2).withSize(1, 1).getEntry();
+    maxExchangeEntry = tab.add("Max Exchange (us)", 0.0).withPosition(0, 3).withSize(1, 1).getEntry();
 
     ShuffleboardLayout frontLeftModuleContainer = tab.getLayout("Front Left Module", BuiltInLayouts.kList)
         .withPosition(1, 0).withSize(2, 3);
@@ -198,28 +255,76 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
     }
   }
 
+  /**
+   * @return The pose from the most recent update. This never blocks
+   */
   public RigidTransform2 getPose() {
-    synchronized (kinematicsLock) {
-      return pose;
-    }
+    return pose.get();
+  }
+
+  /**
+   * @return The gyroscope heading from the most recent update. This never
+   *         blocks, and is safe to call from any thread
+   */
+  public Rotation2 getHeading() {
+    return heading.get();
   }
 
   public void drive(Vector2 translationalVelocity, double rotationalVelocity, boolean fieldOriented) {
-    synchronized (stateLock) {
-      driveSignal = new HolonomicDriveSignal(translationalVelocity, rotationalVelocity, fieldOriented);
-    }
+    driveSignal.set(new HolonomicDriveSignal(translationalVelocity, rotationalVelocity, fieldOriented));
   }
 
   public void drive(HolonomicDriveSignal signal) {
-    synchronized (stateLock) {
-      driveSignal = signal;
-    }
+    driveSignal.set(signal);
+  }
+
+  /**
+   * Start following a trajectory on the update thread. This returns
+   * immediately; the trajectory replaces any that is already being followed
+   * on the next update.
+   *
+   * @param trajectory The trajectory to follow
+   * @return An id to check for completion with {@link #isFollowComplete(long)}
+   */
+  public long follow(Trajectory trajectory) {
+    return followHandoff.follow(trajectory);
+  }
+
+  /**
+   * Stop following a trajectory. This does nothing if a newer trajectory has
+   * been started since.
+   *
+   * @param id The id returned by {@link #follow(Trajectory)}
+   */
+  public void cancelFollow(long id) {
+    followHandoff.cancel(id);
   }
 
+  /**
+   * @param id The id returned by {@link #follow(Trajectory)}
+   * @return Whether that trajectory has finished, been cancelled, or been
+   *         replaced by a newer one
+   */
+  public boolean isFollowComplete(long id) {
+    return followHandoff.isComplete(id);
+  }
+
+  /**
+   * Reset the gyroscope to an angle. This takes effect on the next update, so
+   * the gyroscope is only ever touched by the update thread
+   *
+   * @param angle The angle the robot is at now
+   */
   public void resetGyroAngle(Rotation2 angle) {
-    synchronized (sensorLock) {
-      gyroscope.setAdjustmentAngle(gyroscope.getUnadjustedAngle().rotateBy(angle.inverse()));
-    }
+    gyroReset.set(angle);
+  }
+
+  /**
+   * @return The longest time, in nanoseconds, that one update has spent
+   *         exchanging state with other threads
+   */
+  public long getMaxExchangeNanos() {
+    return maxExchangeNanos;
   }
 
   public void stop() {
@@ -229,44 +334,95 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
 
   @Override
   public void update(double timestamp, double dt) {
-    updateOdometry(dt);
+    profiler.beginCycle();
+    long exchangeStart = System.nanoTime();
+    Rotation2 reset = gyroReset.getAndSet(null);
+    HolonomicDriveSignal commandedSignal = this.driveSignal.get();
+    boolean followChanged = followHandoff.poll();
+    long exchangeNanos = System.nanoTime() - exchangeStart;
+
+    Rotation2 angle = updateSensors(reset);
+    RigidTransform2 pose = updateOdometry(angle, dt);
+
+    exchangeStart = System.nanoTime();
+    heading.set(angle);
+    this.pose.set(pose);
+    exchangeNanos += System.nanoTime() - exchangeStart;
+    if (exchangeNanos > maxExchangeNanos) {
+      maxExchangeNanos = exchangeNanos;
+    }
 
     HolonomicDriveSignal driveSignal;
-    synchronized (stateLock) {
-      driveSignal = this.driveSignal;
+    Optional<HolonomicDriveSignal> trajectorySignal = updateFollower(followChanged, pose, timestamp, dt);
+    if (trajectorySignal.isPresent()) {
+      /**
+       * The follower outputs volts, but the modules take a percentage
+       */
+      double voltage = RobotController.getBatteryVoltage();
+      driveSignal = trajectorySignal.get();
+      driveSignal = new HolonomicDriveSignal(driveSignal.getTranslation().scale(1.0 / voltage),
+          driveSignal.getRotation() / voltage, driveSignal.isFieldOriented());
+    } else {
+      driveSignal = commandedSignal;
+    }
+
+    updateModules(pose, driveSignal, dt);
+    profiler.endCycle();
+  }
+
+  private Optional<HolonomicDriveSignal> updateFollower(boolean followChanged, RigidTransform2 pose,
+      double timestamp, double dt) {
+    if (followChanged) {
+      Trajectory trajectory = followHandoff.getActiveTrajectory();
+      if (trajectory != null) {
+        follower.follow(trajectory);
+      } else {
+        follower.cancel();
+      }
+    }
+
+    Optional<HolonomicDriveSignal> signal = follower.update(pose, velocity, angularVelocity, timestamp, dt);
+    if (followHandoff.getActiveTrajectory() != null && follower.getCurrentTrajectory().isEmpty()) {
+      followHandoff.finish();
+    }
+    return signal;
+  }
+
+  private Rotation2 updateSensors(Rotation2 reset) {
+    for (int i = 0; i < modules.length; i++) {
+      modules[i].updateSensors();
     }
 
-    updateModules(driveSignal, dt);
+    if (reset != null) {
+      gyroscope.setAdjustmentAngle(gyroscope.getUnadjustedAngle().rotateBy(reset.inverse()));
+    }
+    Rotation2 angle = gyroscope.getAngle();
+    profiler.mark(PROFILE_SENSORS);
+    return angle;
   }
 
-  private void updateOdometry(double dt) {
+  private RigidTransform2 updateOdometry(Rotation2 angle, double dt) {
     Vector2[] moduleVelocities = new Vector2[modules.length];
     for (int i = 0; i < modules.length; i++) {
       var module = modules[i];
-      module.updateSensors();
-
       moduleVelocities[i] = Vector2.fromAngle(Rotation2.fromRadians(module.getCurrentAngle()))
           .scale(module.getCurrentVelocity());
     }
 
-    Rotation2 angle;
-    synchronized (sensorLock) {
-      angle = gyroscope.getAngle();
-    }
-
     RigidTransform2 pose = odometry.update(angle, dt, moduleVelocities);
-
-    synchronized (kinematicsLock) {
-      this.pose = pose;
-    }
+    ChassisVelocity chassisVelocity = kinematics.toChassisVelocity(moduleVelocities);
+    velocity = chassisVelocity.getTranslationalVelocity().rotateBy(angle);
+    angularVelocity = chassisVelocity.getAngularVelocity();
+    profiler.mark(PROFILE_ODOMETRY);
+    return pose;
   }
 
-  private void updateModules(HolonomicDriveSignal signal, double dt) {
+  private void updateModules(RigidTransform2 pose, HolonomicDriveSignal signal, double dt) {
     ChassisVelocity velocity;
     if (signal == null) {
       velocity = new ChassisVelocity(Vector2.ZERO, 0.0);
     } else if (signal.isFieldOriented()) {
-      velocity = new ChassisVelocity(signal.getTranslation().rotateBy(getPose().rotation.inverse()),
+      velocity = new ChassisVelocity(signal.getTranslation().rotateBy(pose.rotation.inverse()),
           signal.getRotation());
     } else {
       velocity = new ChassisVelocity(signal.getTranslation(), signal.getRotation());
@@ -274,12 +430,14 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
 
     Vector2[] moduleOutputs = kinematics.toModuleVelocities(velocity);
     SwerveKinematics.normalizeModuleVelocities(moduleOutputs, 1.0);
+    profiler.mark(PROFILE_KINEMATICS);
 
     for (int i = 0; i < modules.length; i++) {
       var module = modules[i];
       module.setTargetVelocity(moduleOutputs[i]);
       module.updateState(dt);
     }
+    profiler.mark(PROFILE_MODULES);
   }
 
   @Override
@@ -288,14 +446,21 @@ public class DrivetrainSubsystem extends SubsystemBase implements UpdateManager.
     poseXEntry.setDouble(pose.translation.x);
     poseYEntry.setDouble(pose.translation.y);
     poseAngleEntry.setDouble(pose.rotation.toDegrees());
+    maxExchangeEntry.setDouble(maxExchangeNanos / 1000.0);
 
     for (int i = 0; i < modules.length; i++) {
       var module = modules[i];
       moduleAngleEntries[i].setDouble(Math.toDegrees(module.getCurrentAngle()));
     }
+
+    double now = Timer.getFPGATimestamp();
+    if (now - lastProfilePublish >= PROFILE_PUBLISH_PERIOD) {
+      profiler.publish("Drivetrain");
+      lastProfilePublish = now;
+    }
   }
 
-  public Gyroscope getGyroscope() {
-    return this.gyroscope;
+  public LoopProfiler getProfiler() {
+    return profiler;
   }
 }
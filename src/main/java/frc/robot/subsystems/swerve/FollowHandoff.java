@@ -0,0 +1,133 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) 2019 FIRST. All Rights Reserved.                             */
+/* Open Source Software - may be modified and shared by FRC teams. The code   */
+/* must be accompanied by the FIRST BSD license file in the root directory of */
+/* the project.                                                               */
+/*----------------------------------------------------------------------------*/
+
+package frc.robot.subsystems.swerve;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands trajectories from commands to the update thread without locking.
+ * Commands call {@link #follow(Object)} and {@link #cancel(long)} from any
+ * thread; only the update thread calls {@link #poll()} and {@link #finish()}.
+ * Every follow gets a larger id than the ones before it, and a cancel stops
+ * whatever trajectory is running if it is the one named or an older one, so a
+ * cancel that replaces a pending follow in the same update still stops the
+ * trajectory that was running before it
+ *
+ * @param <T> The type of trajectory being handed off
+ */
+final class FollowHandoff<T> {
+  private final AtomicReference<Request<T>> request = new AtomicReference<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+  private volatile long completed = 0;
+
+  /**
+   * Only touched by the update thread
+   */
+  private long activeId = 0;
+  private T activeTrajectory = null;
+
+  /**
+   * A trajectory to start following, or a null trajectory to stop following the
+   * request with the given id
+   */
+  private static final class Request<T> {
+    private final long id;
+    private final T trajectory;
+
+    private Request(long id, T trajectory) {
+      this.id = id;
+      this.trajectory = trajectory;
+    }
+  }
+
+  /**
+   * Ask the update thread to start following a trajectory, replacing any that
+   * it is already following.
+   *
+   * @param trajectory The trajectory to follow
+   * @return An id to cancel the trajectory with, or to check it for completion
+   */
+  long follow(T trajectory) {
+    if (trajectory == null) {
+      throw new IllegalArgumentException("Trajectory cannot be null.");
+    }
+    long id = nextId.getAndIncrement();
+    request.set(new Request<>(id, trajectory));
+    return id;
+  }
+
+  /**
+   * Ask the update thread to stop following a trajectory. This does nothing if
+   * a newer trajectory has been started since.
+   *
+   * @param id The id returned by {@link #follow(Object)}
+   */
+  void cancel(long id) {
+    request.accumulateAndGet(new Request<>(id, null),
+        (pending, cancel) -> (pending != null && pending.id > cancel.id) ? pending : cancel);
+  }
+
+  /**
+   * @param id The id returned by {@link #follow(Object)}
+   * @return Whether that trajectory has finished, been cancelled, or been
+   *         replaced by a newer one
+   */
+  boolean isComplete(long id) {
+    return completed >= id;
+  }
+
+  /**
+   * Take the pending request, if there is one. Only the update thread may call
+   * this.
+   *
+   * @return Whether the active trajectory changed, in which case the follower
+   *         should follow {@link #getActiveTrajectory()}, or stop if it is null
+   */
+  boolean poll() {
+    Request<T> pending = request.getAndSet(null);
+    if (pending == null) {
+      return false;
+    }
+    if (pending.trajectory != null) {
+      /**
+       * Anything older than this request has been replaced by it
+       */
+      completed = Math.max(completed, pending.id - 1);
+      activeId = pending.id;
+      activeTrajectory = pending.trajectory;
+      return true;
+    }
+    completed = Math.max(completed, pending.id);
+    if (activeId != 0 && activeId <= pending.id) {
+      activeId = 0;
+      activeTrajectory = null;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * @return The trajectory the update thread should be following, or null
+   */
+  T getActiveTrajectory() {
+    return activeTrajectory;
+  }
+
+  /**
+   * Mark the active trajectory as done, once the follower has reached its end.
+   * Only the update thread may call this.
+   */
+  void finish() {
+    if (activeId != 0) {
+      completed = Math.max(completed, activeId);
+      activeId = 0;
+      activeTrajectory = null;
+    }
+  }
+}
@@ -152,12 +152,12 @@ public class SwerveDrivetrain extends SwerveDrive {
 
                 // swerve.setIdleAngle(0, false);
 
-                // swerve.startLogging(new DashboardSwerveLogger());
+                // swerve.startLogging(LogPolicy.rate(5), new DashboardSwerveLogger());
 
                 // File logFile = new File("/home/lvuser/pid.csv");
                 // try {
                 // logFile.createNewFile();
-                // swerve.startLogging(100, new CSVPIDSwerveLogger(logFile,
+                // swerve.startLogging(LogPolicy.everyCycle(), new CSVPIDSwerveLogger(logFile,
                 // SwerveModule.FRONT_LEFT));
                 // } catch (IOException e) {
                 // System.out.println("Error Creating Robot CSV: " + e);
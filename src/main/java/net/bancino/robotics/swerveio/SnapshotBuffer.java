@@ -0,0 +1,121 @@
+package net.bancino.robotics.swerveio;
+
+import java.lang.invoke.VarHandle;
+
+/**
+ * A fixed-size set of doubles that one thread publishes and any number of
+ * threads read, without locks or allocation. This is a sequence lock: the
+ * writer bumps a sequence number before and after it writes, and readers retry
+ * if the sequence number changed while they were copying, so a reader always
+ * sees a consistent set of values that were all published together.
+ * <p>
+ * Only one thread may write to a given buffer. Readers never block the writer,
+ * so this is suitable for handing state in and out of a control loop thread.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SnapshotBuffer {
+
+    private final double[] values;
+    private volatile long sequence = 0;
+
+    /**
+     * Create a new snapshot buffer.
+     * 
+     * @param size The number of values in a snapshot.
+     */
+    public SnapshotBuffer(int size) {
+        if (size > 0) {
+            values = new double[size];
+        } else {
+            throw new IllegalArgumentException("Snapshot size must be greater than 0.");
+        }
+    }
+
+    /**
+     * Get the number of values in a snapshot.
+     * 
+     * @return The snapshot size.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Begin writing a new snapshot. Call {@link #set(int, double)} for each value
+     * to change, then {@link #endWrite()}. Values that aren't set keep their
+     * previous value.
+     */
+    public void beginWrite() {
+        sequence = sequence + 1;
+        VarHandle.storeStoreFence();
+    }
+
+    /**
+     * Set a value in the snapshot being written. This must only be called between
+     * {@link #beginWrite()} and {@link #endWrite()}.
+     * 
+     * @param index The index of the value.
+     * @param value The value to publish.
+     */
+    public void set(int index, double value) {
+        values[index] = value;
+    }
+
+    /**
+     * Finish writing a snapshot, publishing it to readers.
+     */
+    public void endWrite() {
+        sequence = sequence + 1;
+    }
+
+    /**
+     * Copy the latest complete snapshot.
+     * 
+     * @param out The array to copy the snapshot into. It must be at least as
+     *            large as the snapshot.
+     * @return The version of the snapshot that was read. This increases every
+     *         time a snapshot is published, and is zero if nothing has been
+     *         published yet.
+     */
+    public long read(double[] out) {
+        long before, after;
+        do {
+            before = sequence;
+            System.arraycopy(values, 0, out, 0, values.length);
+            VarHandle.loadLoadFence();
+            after = sequence;
+        } while ((before & 1) != 0 || before != after);
+        return before >> 1;
+    }
+
+    /**
+     * Read a single value from the latest snapshot. To read several values that
+     * are consistent with each other, use {@link #read(double[])} instead.
+     * 
+     * @param index The index of the value.
+     * @return The latest published value at that index.
+     */
+    public double get(int index) {
+        long before, after;
+        double value;
+        do {
+            before = sequence;
+            value = values[index];
+            VarHandle.loadLoadFence();
+            after = sequence;
+        } while ((before & 1) != 0 || before != after);
+        return value;
+    }
+
+    /**
+     * Get the version of the latest complete snapshot, without reading it.
+     * 
+     * @return The number of snapshots that have been published.
+     */
+    public long getVersion() {
+        return sequence >> 1;
+    }
+}
@@ -1,19 +1,30 @@
 package net.bancino.robotics.swerveio;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Threads;
 import edu.wpi.first.wpilibj.kinematics.ChassisSpeeds;
 import net.bancino.robotics.swerveio.exception.NullModuleException;
 import net.bancino.robotics.swerveio.exception.SwerveException;
 import net.bancino.robotics.swerveio.exception.SwerveImplementationException;
 import net.bancino.robotics.swerveio.gyro.AbstractGyro;
+import net.bancino.robotics.swerveio.kinematics.SteeringOptimizer;
+import net.bancino.robotics.swerveio.kinematics.SwerveKinematics;
+import net.bancino.robotics.swerveio.kinematics.SwerveOdometry;
+import net.bancino.robotics.swerveio.log.LogPolicy;
+import net.bancino.robotics.swerveio.log.LoopProfiler;
 import net.bancino.robotics.swerveio.log.SwerveLogger;
 import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
+import net.bancino.robotics.swerveio.pid.HeadingController;
 import net.bancino.robotics.swerveio.SwerveFlag;
 
 /**
@@ -34,6 +45,23 @@ public abstract class SwerveDrive extends SubsystemBase {
      */
     protected final Map<SwerveModule, AbstractSwerveModule> moduleMap;
 
+    /**
+     * The module names and the modules themselves, flattened into arrays in the
+     * order the kinematics engine solves them. The drive loop iterates these
+     * instead of the module map so that it doesn't have to allocate iterators or
+     * perform hash lookups every cycle. The module at a given index belongs to the
+     * name at the same index.
+     */
+    protected final SwerveModule[] moduleKeys;
+    protected final AbstractSwerveModule[] modules;
+
+    /*
+     * Preallocated buffers that the drive loop solves into, indexed the same way
+     * as the module arrays above.
+     */
+    private final double[] targetSpeeds;
+    private final double[] targetAngles;
+
     /**
      * A calculator is provided by default so that calculations can be easily
      * retrieved. If invalid base dimensions are provide, the default of a 1:1 base
@@ -52,7 +80,13 @@ public abstract class SwerveDrive extends SubsystemBase {
     protected boolean fieldCentric = true;
     protected final AbstractGyro gyro;
 
-    protected final List<SwerveFlag> flags;
+    /**
+     * The flags applied by the swerve meta. These are only read when the swerve
+     * drive is constructed, where they are compiled into the axis masks and the
+     * module pipeline, so that they cost nothing to check while driving.
+     */
+    protected final Set<SwerveFlag> flags;
+    private final boolean useFwd, useStr, useRcw;
 
     /**
      * When not moving, the idle angle is the default position. This is set
@@ -70,7 +104,27 @@ public abstract class SwerveDrive extends SubsystemBase {
 
     protected SwerveVector lastSwerveVector = new SwerveVector(0, 0, 0);
     protected double lastGyroAngle;
-    protected final HashMap<SwerveModule, Double> lastPivotAngle = new HashMap<>();
+    /**
+     * The last pivot angle of each module while it was moving, indexed in the
+     * same order as {@link #getModules()}. This is NaN until a module has moved.
+     * Only used with {@link SwerveFlag#ENABLE_PIVOT_LAST_ANGLE}.
+     */
+    protected final double[] lastPivotAngle;
+
+    /**
+     * A stage in the pipeline that every module's calculated speed and angle pass
+     * through before being written to the module. Stages read and modify the
+     * target arrays in place for the module at the given index.
+     */
+    @FunctionalInterface
+    private interface DriveStage {
+        void apply(int module);
+    }
+
+    private final DriveStage[] pipeline;
+    private final double[] currentAngles;
+    private final SteeringOptimizer steeringOptimizer;
+    private final boolean[] idleFlip;
 
     /**
      * Construct a new swerve drive with the given swerve meta.
@@ -82,7 +136,7 @@ public abstract class SwerveDrive extends SubsystemBase {
      */
     public SwerveDrive(SwerveMeta swerveMeta) throws SwerveException {
         if (swerveMeta.moduleMap() != null) {
-            if (swerveMeta.moduleMap().size() == SwerveModule.length) {
+            if (swerveMeta.moduleMap().size() > 0) {
                 moduleMap = swerveMeta.moduleMap();
                 for (var moduleName : moduleMap.keySet()) {
                     var module = moduleMap.get(moduleName);
@@ -93,17 +147,45 @@ public abstract class SwerveDrive extends SubsystemBase {
                     }
                 }
             } else {
-                throw new SwerveException(
-                        "Expected map of size " + SwerveModule.length + ". Got size " + swerveMeta.moduleMap().size());
+                throw new SwerveException("Expected at least one module, but " + swerveMeta.name()
+                        + " provided an empty module map.");
             }
         } else {
             throw new SwerveException("Expected a module map, but " + swerveMeta.name() + " didn't provide one.");
         }
         if (swerveMeta.chassisDimensions() != null) {
-            this.calc = new SwerveDriveCalculator(swerveMeta.chassisDimensions());
+            var modulePositions = swerveMeta.modulePositions();
+            if (modulePositions != null) {
+                if (!modulePositions.keySet().equals(moduleMap.keySet())) {
+                    throw new SwerveException("Expected a position for each module, but " + swerveMeta.name()
+                            + " provided positions for " + modulePositions.keySet() + " and modules for "
+                            + moduleMap.keySet());
+                }
+                try {
+                    this.calc = new SwerveDriveCalculator(swerveMeta.chassisDimensions(),
+                            new SwerveKinematics(modulePositions));
+                } catch (IllegalArgumentException e) {
+                    throw new SwerveException(e);
+                }
+            } else if (moduleMap.size() == 4 && moduleMap.keySet().containsAll(List.of(SwerveModule.FRONT_LEFT,
+                    SwerveModule.FRONT_RIGHT, SwerveModule.REAR_LEFT, SwerveModule.REAR_RIGHT))) {
+                this.calc = new SwerveDriveCalculator(swerveMeta.chassisDimensions());
+            } else {
+                throw new SwerveException("Expected module positions for a non-standard module layout, but "
+                        + swerveMeta.name() + " didn't provide any.");
+            }
         } else {
             throw new SwerveException("Expected chassis dimensions, but " + swerveMeta.name() + " didn't provide any.");
         }
+        /* Lay the modules out in the same order the kinematics engine solves them in. */
+        moduleKeys = calc.getKinematics().getModules().clone();
+        modules = new AbstractSwerveModule[moduleKeys.length];
+        for (int i = 0; i < moduleKeys.length; i++) {
+            modules[i] = moduleMap.get(moduleKeys[i]);
+        }
+        targetSpeeds = new double[modules.length];
+        targetAngles = new double[modules.length];
+        state = new SnapshotBuffer(STATE_MODULES + (2 * modules.length));
         if (swerveMeta.countsPerPivotRevolution() > 0) {
             this.countsPerPivotRevolution = swerveMeta.countsPerPivotRevolution();
         } else {
@@ -112,11 +194,25 @@ public abstract class SwerveDrive extends SubsystemBase {
         }
         gyro = swerveMeta.gyro();
         fieldCentric = (gyro != null);
-        if (swerveMeta.applyFlags() != null) {
-            flags = swerveMeta.applyFlags();
+        List<SwerveFlag> appliedFlags = swerveMeta.applyFlags();
+        if (appliedFlags != null && !appliedFlags.isEmpty()) {
+            flags = Collections.unmodifiableSet(EnumSet.copyOf(appliedFlags));
         } else {
-            flags = List.of();
+            flags = Collections.unmodifiableSet(EnumSet.noneOf(SwerveFlag.class));
+        }
+        useFwd = !flags.contains(SwerveFlag.DISABLE_FWD);
+        useStr = !flags.contains(SwerveFlag.DISABLE_STR);
+        useRcw = !flags.contains(SwerveFlag.DISABLE_RCW);
+
+        currentAngles = new double[modules.length];
+        steeringOptimizer = new SteeringOptimizer(modules.length);
+        lastPivotAngle = new double[modules.length];
+        Arrays.fill(lastPivotAngle, Double.NaN);
+        idleFlip = new boolean[modules.length];
+        for (int i = 0; i < modules.length; i++) {
+            idleFlip[i] = (moduleKeys[i] == SwerveModule.FRONT_RIGHT || moduleKeys[i] == SwerveModule.REAR_LEFT);
         }
+        pipeline = compilePipeline();
         swerveMeta.initialize(this);
     }
 
@@ -171,35 +267,91 @@ public abstract class SwerveDrive extends SubsystemBase {
     /**
      * Drive the entire chassis with a WPILib ChassisSpeeds object. This converts
      * the chassis speed object into a raw swerve vector based on individual module
-     * values. <b>Note:</b> If you are mis-matching modules with different gear
-     * ratios and max RPMS, THIS WILL NOT WORK.
+     * values, using the gearing of the first module, and drives it like
+     * {@link #drive(SwerveVector)}. <b>Note:</b> If you are mis-matching modules
+     * with different gear ratios and max RPMS, THIS WILL NOT WORK.
      *
      * @param v A WPILib ChassisSpeeds vector that represents the velocity to apply
      *          to this swerve base.
      */
     public void drive(ChassisSpeeds v) {
-        for (SwerveModule key : moduleMap.keySet()) {
-            AbstractSwerveModule module = moduleMap.get(key);
-            SwerveVector rawVector = SwerveIOUtils.convertToSwerveVector(v, module.getGearRatio(),
-                    module.getDriveMaxRPM(), module.getWheelDiameter(), calc.getChassisDimension());
-            drive(rawVector, key);
-        }
+        AbstractSwerveModule module = modules[0];
+        drive(SwerveIOUtils.convertToSwerveVector(v, module.getGearRatio(), module.getDriveMaxRPM(),
+                module.getWheelDiameter(), calc.getChassisDimension()));
     }
 
     /**
      * A drive function that should be implemented to drive the robot with the
-     * joystick. This will drive all modules.
+     * joystick. This will drive all modules. If the control loop is running,
+     * this only publishes the vector; the control loop thread drives the modules
+     * with it on its next cycle.
      * 
      * @param v The vector (X, Y, Z)
      * @throws SwerveImplementationException If there is an error with the
      *                                       implementation of any swerve module.
      */
     public void drive(SwerveVector v) {
-        for (SwerveModule module : moduleMap.keySet()) {
-            drive(v, module);
+        if (controlLoopRunning) {
+            publishCommand(v);
+        } else {
+            driveAll(v);
         }
     }
 
+    /**
+     * Drive all the modules in a single batched pass. The gyro is read once, the
+     * vector is rotated once, and all the module speeds and angles are solved
+     * into preallocated arrays before any module is written to. Once warmed up,
+     * this path does not allocate. This always drives the modules on the calling
+     * thread, so it must not be called directly while the control loop is
+     * running.
+     * 
+     * @param v The vector (X, Y, Z)
+     * @throws SwerveImplementationException If there is an error with the
+     *                                       implementation of any swerve module.
+     */
+    public void driveAll(SwerveVector v) {
+        driveProfiler.beginCycle();
+        double fwd = (useFwd) ? v.getFwd() : 0;
+        double str = (useStr) ? v.getStr() : 0;
+        double rcw = (useRcw) ? v.getRcw() : 0;
+        double gyroAngle = 0;
+        double reading = 0;
+        if (gyro != null && (fieldCentric || holdAngle)) {
+            reading = gyro.getAngle();
+            if (fieldCentric) {
+                gyroAngle = reading;
+            }
+        }
+        driveProfiler.mark(PROFILE_SENSORS);
+        if (holdAngle) {
+            rcw = headingController.calculate(reading, System.nanoTime() / 1e9);
+        }
+        driveProfiler.mark(PROFILE_HEADING);
+
+        calc.calculate(fwd, str, rcw, gyroAngle, targetSpeeds, targetAngles);
+        driveProfiler.mark(PROFILE_KINEMATICS);
+        for (int i = 0; i < modules.length; i++) {
+            driveModule(i);
+        }
+        driveProfiler.mark(PROFILE_MODULES);
+        lastSwerveVector = v;
+        lastGyroAngle = gyroAngle;
+
+        state.beginWrite();
+        state.set(STATE_TIMESTAMP, System.nanoTime() / 1e9);
+        state.set(STATE_GYRO, gyroAngle);
+        state.set(STATE_FWD, fwd);
+        state.set(STATE_STR, str);
+        state.set(STATE_RCW, rcw);
+        for (int i = 0; i < modules.length; i++) {
+            state.set(STATE_MODULES + (2 * i), targetSpeeds[i]);
+            state.set(STATE_MODULES + (2 * i) + 1, targetAngles[i]);
+        }
+        state.endWrite();
+        driveProfiler.endCycle();
+    }
+
     /**
      * A drive function that should be implemented to drive the robot with the
      * joystick. This will drive the specified modules.
@@ -225,94 +377,143 @@ public abstract class SwerveDrive extends SubsystemBase {
      *                                       implementation of any swerve module.
      */
     public void drive(SwerveVector v, SwerveModule module) {
-        double fwd = 0;
-        if (!flags.contains(SwerveFlag.DISABLE_FWD)) {
-            fwd = v.getFwd();
-        }
-        double str = 0;
-        if (!flags.contains(SwerveFlag.DISABLE_STR)) {
-            str = v.getStr();
+        if (controlLoopRunning) {
+            throw new UnsupportedOperationException(
+                    "Cannot drive individual modules while the control loop is running.");
         }
-        double rcw = 0;
-        if (!flags.contains(SwerveFlag.DISABLE_RCW)) {
-            rcw = v.getRcw();
+        double fwd = (useFwd) ? v.getFwd() : 0;
+        double str = (useStr) ? v.getStr() : 0;
+        double rcw = (useRcw) ? v.getRcw() : 0;
+        int i = calc.getKinematics().indexOf(module);
+        if (i < 0) {
+            throw new IllegalArgumentException("This swerve drive has no module: " + module);
         }
-        /* Use the swerve drive calculator to calculate target speeds and angles. */
-        double speed = calc.getWheelSpeed(module, fwd, str, rcw);
-        /* Get the target angle from the calculator, scaled from 0 to 360 */
         boolean useGyro = (gyro != null) && fieldCentric;
         double gyroAngle = (useGyro) ? gyro.getAngle() : 0;
-        double targetAngle = calc.getWheelAngle(module, fwd, str, rcw, gyroAngle);
+        /*
+         * Use the swerve drive calculator to calculate the target speed and angle,
+         * both from the field-centric vector, like drive(SwerveVector) does.
+         */
+        targetSpeeds[i] = calc.getWheelSpeed(module, fwd, str, rcw, gyroAngle);
+        targetAngles[i] = calc.getWheelAngle(module, fwd, str, rcw, gyroAngle);
 
-        /* Get a reference to the module to get feedback from it. */
-        AbstractSwerveModule swerveModule = moduleMap.get(module);
+        driveModule(i);
+        lastSwerveVector = v;
+        lastGyroAngle = gyroAngle;
+    }
 
-        double currentAngle = SwerveIOUtils.convertToDegrees(swerveModule.getPivotMotorEncoder(),
-                countsPerPivotRevolution);
+    /**
+     * Apply a calculated speed and angle to a single module, by running it
+     * through the compiled pipeline. The speed and angle are read from, and may
+     * be modified in, the target arrays.
+     * 
+     * @param i The index of the module being driven.
+     */
+    private void driveModule(int i) {
+        currentAngles[i] = SwerveIOUtils.convertToDegrees(modules[i].getPivotMotorEncoder(), countsPerPivotRevolution);
+        for (DriveStage stage : pipeline) {
+            stage.apply(i);
+        }
+    }
 
+    /**
+     * Compile the flags into the fixed chain of stages that every module passes
+     * through: the idle or last angle, the pivot optimization, and the pivot and
+     * drive outputs. Stages that a flag disables are left out entirely.
+     * 
+     * @return The pipeline.
+     */
+    private DriveStage[] compilePipeline() {
+        List<DriveStage> stages = new ArrayList<>();
         if (flags.contains(SwerveFlag.ENABLE_PIVOT_LAST_ANGLE)) {
-            if (speed < swerveModule.getOutputThreshhold()) {
-                if (lastPivotAngle.containsKey(module)) {
-                    targetAngle = lastPivotAngle.get(module);
+            stages.add(i -> {
+                if (targetSpeeds[i] < modules[i].getOutputThreshhold()) {
+                    if (!Double.isNaN(lastPivotAngle[i])) {
+                        targetAngles[i] = lastPivotAngle[i];
+                    }
+                } else {
+                    lastPivotAngle[i] = currentAngles[i];
                 }
-            } else {
-                lastPivotAngle.put(module, currentAngle);
-            }
+            });
         } else { /* Idle-Angle mode */
             /*
              * If the calculated drive speed for this module is less than that module's
              * minimum output threshhold then snap to the idle angle, not the calculated
-             * angle. Otherwise, drive.
+             * angle. Otherwise, drive. Modules that aren't on a corner have no diagonal
+             * and idle straight ahead.
              */
-            if (speed < swerveModule.getOutputThreshhold()) {
-                switch (module) {
-                case FRONT_LEFT:
-                case REAR_RIGHT:
-                    targetAngle = idleAngle;
-                    break;
-                case FRONT_RIGHT:
-                case REAR_LEFT:
-                    targetAngle = diagonalFlipIdle ? 180 - idleAngle : idleAngle;
-                    break;
-                default:
-                    targetAngle = 0;
-                    break;
+            stages.add(i -> {
+                if (targetSpeeds[i] < modules[i].getOutputThreshhold()) {
+                    switch (moduleKeys[i]) {
+                    case MIDDLE_LEFT:
+                    case MIDDLE_RIGHT:
+                        targetAngles[i] = 0;
+                        break;
+                    default:
+                        targetAngles[i] = (idleFlip[i] && diagonalFlipIdle) ? 180 - idleAngle : idleAngle;
+                        break;
+                    }
                 }
-            }
+            });
         }
 
         if (flags.contains(SwerveFlag.ENABLE_PIVOT_OPTIMIZE)) {
-            double flippedAngle = SwerveIOUtils.flip180(targetAngle);
-            double diff = Math.abs(targetAngle - currentAngle);
-            double flipDiff = Math.abs(flippedAngle - currentAngle);
-            if (flipDiff < 90 && diff > 90) {
-                targetAngle = flippedAngle;
-                speed *= -1;
-            }
+            /*
+             * The module already takes the short way to its reference, so the target only
+             * needs wrapping back into the encoder's range once it has been chosen.
+             */
+            stages.add(i -> {
+                double angle = steeringOptimizer.optimize(i, currentAngles[i], targetAngles[i]);
+                targetAngles[i] = SwerveIOUtils.wrapAngle360(angle);
+                if (steeringOptimizer.isReversed(i)) {
+                    targetSpeeds[i] *= -1;
+                }
+            });
         }
 
-        /* Convert the target angle into a target position on the pivot encoder. */
-        double targetPos = SwerveIOUtils.convertToEncoderCount(targetAngle, countsPerPivotRevolution);
         if (!flags.contains(SwerveFlag.DISABLE_PIVOT)) {
-            swerveModule.setPivotReference(targetPos);
+            /* Convert the target angle into a target position on the pivot encoder. */
+            stages.add(i -> modules[i].setPivotReference(
+                    SwerveIOUtils.convertToEncoderCount(targetAngles[i], countsPerPivotRevolution)));
         }
         if (!flags.contains(SwerveFlag.DISABLE_DRIVE)) {
-            swerveModule.setDriveMotorSpeed(speed);
+            stages.add(i -> modules[i].setDriveMotorSpeed(targetSpeeds[i]));
         }
-        lastSwerveVector = v;
-        lastGyroAngle = gyroAngle;
+        return stages.toArray(new DriveStage[stages.size()]);
     }
 
+    /**
+     * The controller that holds the chassis heading when
+     * {@link #setAngle(double)} is used.
+     */
+    protected final HeadingController headingController = new HeadingController();
+    private volatile boolean holdAngle = false;
+
     /**
      * Set the chassis angle based on a gyro reading. This doesn't necessarily
      * require field-centric drive, but it does require that a working gyro is
      * provided.
      * 
+     * Once an angle is set, the chassis holds it: the rotation component of
+     * every vector passed to {@link #drive(SwerveVector)} is replaced by the
+     * output of the heading controller, so the chassis can snap to or hold a
+     * heading while still translating. Because the control loop runs inside
+     * the drive function, drive must keep being called; to turn in place, drive
+     * with a zero vector. Call {@link #releaseAngle()} to give rotation back to
+     * the vector.
+     * 
      * @param gyroAngle The angle in terms of 0-360 to set the pivot to.
+     * @throws UnsupportedOperationException If no gyro was provided.
      */
     public void setAngle(double gyroAngle) {
         if (gyro != null) {
-            throw new UnsupportedOperationException("The chassis angle control loop is not implemented yet.");
+            if (controlLoopRunning) {
+                commandHeading = gyroAngle;
+                commandHeadingRequest++;
+                publishCommand(lastCommand);
+            } else {
+                applyAngle(gyroAngle);
+            }
         } else {
             throw new UnsupportedOperationException(
                     "Cannot run the chassis angle control loop without a feedback device (gyro not provided).");
@@ -320,10 +521,87 @@ public abstract class SwerveDrive extends SubsystemBase {
     }
 
     /**
-     * Stop all the modules, stopping this swerve drive.
+     * Stop holding the chassis angle, so the rotation component of the drive
+     * vector is used again.
+     */
+    public void releaseAngle() {
+        if (controlLoopRunning) {
+            commandHeading = Double.NaN;
+            commandHeadingRequest++;
+            publishCommand(lastCommand);
+        } else {
+            applyAngle(Double.NaN);
+        }
+    }
+
+    /**
+     * Start or stop holding an angle on the thread that drives the modules.
+     * 
+     * @param gyroAngle The angle to hold, or NaN to release the angle.
+     */
+    private void applyAngle(double gyroAngle) {
+        if (Double.isNaN(gyroAngle)) {
+            holdAngle = false;
+            headingController.reset();
+        } else {
+            headingController.setGoal(gyroAngle, gyro.getAngle(), System.nanoTime() / 1e9);
+            holdAngle = true;
+        }
+    }
+
+    /**
+     * Whether or not the chassis angle is being held by the heading controller.
+     * 
+     * @return True if {@link #setAngle(double)} was called and the angle has not
+     *         been released.
+     */
+    public boolean isHoldingAngle() {
+        return holdAngle;
+    }
+
+    /**
+     * Whether or not the chassis has settled at the angle set by
+     * {@link #setAngle(double)}.
+     * 
+     * @return True if the chassis angle is being held and is settled at its
+     *         goal.
+     */
+    public boolean isAngleSettled() {
+        return holdAngle && headingController.isSettled();
+    }
+
+    /**
+     * Get the heading controller, so that its gains, constraints, and tolerances
+     * can be tuned.
+     * 
+     * @return The heading controller used by {@link #setAngle(double)}.
+     */
+    public HeadingController getHeadingController() {
+        return headingController;
+    }
+
+    /**
+     * Get the steering optimizer, so that its hysteresis can be tuned. This is
+     * only used with {@link SwerveFlag#ENABLE_PIVOT_OPTIMIZE}.
+     * 
+     * @return The steering optimizer, indexed in the same order as
+     *         {@link #getModules()}.
+     */
+    public SteeringOptimizer getSteeringOptimizer() {
+        return steeringOptimizer;
+    }
+
+    /**
+     * Stop all the modules, stopping this swerve drive. If the control loop is
+     * running, this publishes a zero vector instead, and the modules stop on the
+     * next cycle.
      */
     public void stop() {
-        for (AbstractSwerveModule module : moduleMap.values()) {
+        if (controlLoopRunning) {
+            publishCommand(new SwerveVector(0, 0, 0));
+            return;
+        }
+        for (AbstractSwerveModule module : modules) {
             module.stop();
         }
     }
@@ -332,7 +610,7 @@ public abstract class SwerveDrive extends SubsystemBase {
      * Zero all the drive encoders in this swerve drive.
      */
     public void zeroDriveEncoders() {
-        for (AbstractSwerveModule module : moduleMap.values()) {
+        for (AbstractSwerveModule module : modules) {
             module.zeroDriveEncoder();
         }
     }
@@ -341,7 +619,7 @@ public abstract class SwerveDrive extends SubsystemBase {
      * Zero all the pivot and drive encoders in this swerve drive.
      */
     public void zero() {
-        for (AbstractSwerveModule module : moduleMap.values()) {
+        for (AbstractSwerveModule module : modules) {
             module.zero();
         }
     }
@@ -351,11 +629,287 @@ public abstract class SwerveDrive extends SubsystemBase {
      * resetting all the encoders
      */
     public void reset() {
-        for (AbstractSwerveModule module : moduleMap.values()) {
+        for (AbstractSwerveModule module : modules) {
             module.reset();
         }
     }
 
+    /**
+     * Odometry for this swerve drive, if it has been started.
+     */
+    private SwerveOdometry odometry;
+
+    /**
+     * Start tracking the position of this swerve drive on the field. Odometry
+     * runs on its own thread, so it isn't tied to the scheduler rate. If odometry
+     * is already running, it is restarted at the new rate.
+     * 
+     * @param countsPerDriveRevolution The number of drive encoder counts in one
+     *                                 revolution of the drive motor.
+     * @param rate                     The rate, in hertz, to update at. This is
+     *                                 capped at {@link SwerveOdometry#MAX_RATE}.
+     * @return The odometry object, which the pose can be read from.
+     */
+    public SwerveOdometry startOdometry(double countsPerDriveRevolution, double rate) {
+        if (odometry == null) {
+            odometry = new SwerveOdometry(this, countsPerDriveRevolution);
+        }
+        odometry.start(rate);
+        return odometry;
+    }
+
+    /**
+     * Get the odometry for this swerve drive.
+     * 
+     * @return The odometry object, or null if odometry was never started.
+     */
+    public SwerveOdometry getOdometry() {
+        return odometry;
+    }
+
+    /**
+     * The control loop API, for driving the modules on a dedicated thread.
+     * 
+     * When the control loop is running, the modules are only ever written to
+     * from the control loop thread. Commands publish vectors and heading goals
+     * into a command snapshot, and the control loop publishes what it did into a
+     * state snapshot, so neither side ever waits on the other. Commands must all
+     * publish from a single thread, which is normally the scheduler.
+     */
+    private static final int COMMAND_FWD = 0;
+    private static final int COMMAND_STR = 1;
+    private static final int COMMAND_RCW = 2;
+    private static final int COMMAND_HEADING = 3;
+    private static final int COMMAND_HEADING_REQUEST = 4;
+    private static final int COMMAND_SIZE = 5;
+
+    /** The index of the time the state was published, in seconds. */
+    public static final int STATE_TIMESTAMP = 0;
+    /** The index of the gyro angle used for field-centric drive. */
+    public static final int STATE_GYRO = 1;
+    /** The index of the forward component that was driven. */
+    public static final int STATE_FWD = 2;
+    /** The index of the strafe component that was driven. */
+    public static final int STATE_STR = 3;
+    /**
+     * The index of the rotation component that was driven, including any heading
+     * controller output.
+     */
+    public static final int STATE_RCW = 4;
+    /**
+     * The index of the first module's target speed. Each module has a speed
+     * followed by an angle, in the order of {@link #getModules()}.
+     */
+    public static final int STATE_MODULES = 5;
+
+    /** The maximum rate of the control loop, in hertz. */
+    public static final double MAX_CONTROL_RATE = 500;
+
+    private final SnapshotBuffer command = new SnapshotBuffer(COMMAND_SIZE);
+    private final SnapshotBuffer state;
+
+    /* Written only by the thread that publishes commands. */
+    private SwerveVector lastCommand = new SwerveVector(0, 0, 0);
+    private double commandHeading = Double.NaN;
+    private long commandHeadingRequest = 0;
+
+    /* Used only by the control loop thread. */
+    private final double[] commandValues = new double[COMMAND_SIZE];
+    private long appliedCommandVersion = -1;
+    private long appliedHeadingRequest = 0;
+    private SwerveVector controlVector = new SwerveVector(0, 0, 0);
+    private boolean priorityRaised = false;
+    private int controlPriority;
+
+    private Notifier controlLoop;
+    private volatile boolean controlLoopRunning = false;
+    /* Held for every control loop cycle, so that stopping can wait for one in flight. */
+    private final Object controlCycleLock = new Object();
+
+    /**
+     * Start driving the modules on a dedicated, real-time priority thread at a
+     * fixed rate. This separates the timing of the control loop from the jitter
+     * of the command scheduler. Once started, {@link #drive(SwerveVector)},
+     * {@link #drive(ChassisSpeeds)}, {@link #setAngle(double)}, and
+     * {@link #stop()} publish to the control loop instead of touching the
+     * modules directly, and the last published command is driven every cycle.
+     * 
+     * @param rate     The rate, in hertz, to run at. This is capped at
+     *                 {@link #MAX_CONTROL_RATE}.
+     * @param priority The real-time priority of the control loop thread, from 1
+     *                 to 99.
+     */
+    public synchronized void startControlLoop(double rate, int priority) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Control loop rate must be greater than 0.");
+        }
+        if (priority < 1 || priority > 99) {
+            throw new IllegalArgumentException("Control loop priority must be between 1 and 99.");
+        }
+        controlPriority = priority;
+        priorityRaised = false;
+        if (controlLoop == null) {
+            controlLoop = new Notifier(this::runControlLoop);
+        }
+        publishCommand(lastSwerveVector);
+        controlLoopRunning = true;
+        driveProfiler.setPeriod(1.0 / Math.min(rate, MAX_CONTROL_RATE));
+        controlLoop.startPeriodic(1.0 / Math.min(rate, MAX_CONTROL_RATE));
+    }
+
+    /**
+     * Start the control loop at a priority of 50, which is above the main robot
+     * thread.
+     * 
+     * @param rate The rate, in hertz, to run at.
+     */
+    public void startControlLoop(double rate) {
+        startControlLoop(rate, 50);
+    }
+
+    /**
+     * Stop the control loop. If a cycle is running on the control loop thread,
+     * this waits for it to finish, so no more cycles run once this returns, and
+     * driving goes back to happening directly on the calling thread. The modules
+     * are left at their last command, so this should be followed by a call to
+     * drive or stop.
+     */
+    public synchronized void stopControlLoop() {
+        if (controlLoop != null) {
+            controlLoop.stop();
+        }
+        synchronized (controlCycleLock) {
+            controlLoopRunning = false;
+        }
+        driveProfiler.setPeriod(SCHEDULER_PERIOD);
+    }
+
+    /**
+     * Whether or not the control loop thread is driving the modules.
+     * 
+     * @return True if the control loop is running.
+     */
+    public boolean isControlLoopRunning() {
+        return controlLoopRunning;
+    }
+
+    /**
+     * Copy the state that was last driven. This is safe to call from any thread,
+     * and always returns a consistent set of values from a single cycle.
+     * 
+     * @param out The array to copy the state into. It must be at least
+     *            {@link #getStateSize()} long. See the STATE_ constants for the
+     *            layout.
+     * @return The number of cycles that have been driven.
+     */
+    public long getState(double[] out) {
+        return state.read(out);
+    }
+
+    /**
+     * Get the number of values in the state snapshot.
+     * 
+     * @return The state size, for allocating an array for
+     *         {@link #getState(double[])}.
+     */
+    public int getStateSize() {
+        return state.size();
+    }
+
+    /**
+     * Publish a command for the control loop to drive.
+     * 
+     * @param v The vector to drive.
+     */
+    private void publishCommand(SwerveVector v) {
+        lastCommand = v;
+        command.beginWrite();
+        command.set(COMMAND_FWD, v.getFwd());
+        command.set(COMMAND_STR, v.getStr());
+        command.set(COMMAND_RCW, v.getRcw());
+        command.set(COMMAND_HEADING, commandHeading);
+        command.set(COMMAND_HEADING_REQUEST, commandHeadingRequest);
+        command.endWrite();
+    }
+
+    /**
+     * One cycle of the control loop. A new vector is only created when a new
+     * command was published, so a steady command doesn't allocate. Stopping the
+     * notifier doesn't cancel a callback that has already been dispatched, so a
+     * cycle that starts after the loop was stopped does nothing.
+     */
+    private void runControlLoop() {
+        synchronized (controlCycleLock) {
+            if (controlLoopRunning) {
+                runControlCycle();
+            }
+        }
+    }
+
+    private void runControlCycle() {
+        if (!priorityRaised) {
+            Threads.setCurrentThreadPriority(true, controlPriority);
+            priorityRaised = true;
+        }
+        long version = command.read(commandValues);
+        if (version != appliedCommandVersion) {
+            controlVector = new SwerveVector(commandValues[COMMAND_FWD], commandValues[COMMAND_STR],
+                    commandValues[COMMAND_RCW]);
+            long headingRequest = (long) commandValues[COMMAND_HEADING_REQUEST];
+            if (headingRequest != appliedHeadingRequest) {
+                applyAngle(commandValues[COMMAND_HEADING]);
+                appliedHeadingRequest = headingRequest;
+            }
+            appliedCommandVersion = version;
+        }
+        driveAll(controlVector);
+    }
+
+    /**
+     * The profiling API, for finding out which part of the loop is slow. Timing
+     * is always recorded; add a
+     * {@link net.bancino.robotics.swerveio.log.ProfileSwerveLogger} to publish
+     * it.
+     */
+    private static final double SCHEDULER_PERIOD = 0.02;
+
+    /** The drive profiler stage that reads the gyro. */
+    public static final int PROFILE_SENSORS = 0;
+    /** The drive profiler stage that runs the heading controller. */
+    public static final int PROFILE_HEADING = 1;
+    /** The drive profiler stage that solves the module speeds and angles. */
+    public static final int PROFILE_KINEMATICS = 2;
+    /**
+     * The drive profiler stage that runs the pivot PID loops and writes to the
+     * motors.
+     */
+    public static final int PROFILE_MODULES = 3;
+
+    private final LoopProfiler driveProfiler = new LoopProfiler("Drive", SCHEDULER_PERIOD, "Sensors", "Heading",
+            "Kinematics", "Modules");
+    private final LoopProfiler periodicProfiler = new LoopProfiler("Periodic", SCHEDULER_PERIOD, "Log");
+
+    /**
+     * Get the profiler for the drive cycle. Its period follows the control loop
+     * rate when the control loop is running, and the scheduler rate otherwise.
+     * 
+     * @return The drive profiler, with the stages given by the PROFILE_
+     *         constants.
+     */
+    public LoopProfiler getDriveProfiler() {
+        return driveProfiler;
+    }
+
+    /**
+     * Get the profiler for the scheduler's periodic call, which runs the
+     * loggers.
+     * 
+     * @return The periodic profiler.
+     */
+    public LoopProfiler getPeriodicProfiler() {
+        return periodicProfiler;
+    }
+
     /**
      * The logging API, for logging the state of the swerve drive.
      * 
@@ -363,16 +917,92 @@ public abstract class SwerveDrive extends SubsystemBase {
      * logger is provided by default.
      */
     private boolean doLog = false;
-    private long logWait = 1000;
-    private long lastTime = 0;
+    private long logCycle = 0;
+
+    /**
+     * The policy given to loggers that are started without one, which is once a
+     * second.
+     */
+    private static final LogPolicy DEFAULT_LOG_POLICY = LogPolicy.period(1);
 
     /**
-     * The logger that is responsible for logging the state of this swerve drive.
+     * The loggers that are responsible for logging the state of this swerve
+     * drive.
      */
     private ArrayList<SwerveLogger> loggers = new ArrayList<>();
+    private final ArrayList<ScheduledLogger> logSchedule = new ArrayList<>();
+
+    /**
+     * A logger along with when it should next run.
+     */
+    private static final class ScheduledLogger {
+        private final SwerveLogger logger;
+        private LogPolicy policy;
+        private int phase;
+        private long nextDue;
+        private long lastVersion = -1;
+        private double[] lastState;
+        private double[] currentState;
+
+        private ScheduledLogger(SwerveLogger logger) {
+            this.logger = logger;
+        }
+
+        /**
+         * Set the policy, staggering this logger by its slot so that loggers with
+         * the same policy don't all run on the same cycle.
+         */
+        private void schedule(LogPolicy policy, int slot, long now) {
+            this.policy = policy;
+            phase = slot % policy.getCycles();
+            nextDue = now + policy.getPeriodNanos() + (slot * (long) (SCHEDULER_PERIOD * 1e9));
+        }
+
+        private boolean isDue(long now, long cycle, SnapshotBuffer state) {
+            switch (policy.getKind()) {
+            case EVERY_NTH_CYCLE:
+                return ((cycle + phase) % policy.getCycles()) == 0;
+            case PERIOD:
+                if (now < nextDue) {
+                    return false;
+                }
+                nextDue += policy.getPeriodNanos();
+                if (now >= nextDue) {
+                    /* Fell behind, so don't try to catch up. */
+                    nextDue = now + policy.getPeriodNanos();
+                }
+                return true;
+            case ON_CHANGE:
+                long version = state.getVersion();
+                if (version == lastVersion) {
+                    return false;
+                }
+                lastVersion = version;
+                if (lastState == null) {
+                    lastState = new double[state.size()];
+                    currentState = new double[state.size()];
+                    Arrays.fill(lastState, Double.NaN);
+                }
+                state.read(currentState);
+                boolean changed = false;
+                for (int i = 0; i < currentState.length; i++) {
+                    if (i != STATE_TIMESTAMP && Double.compare(currentState[i], lastState[i]) != 0) {
+                        changed = true;
+                        break;
+                    }
+                }
+                if (changed) {
+                    System.arraycopy(currentState, 0, lastState, 0, currentState.length);
+                }
+                return changed;
+            default:
+                return true;
+            }
+        }
+    }
 
     /**
-     * Start logging using the current logger.
+     * Start logging using the current loggers, all at the same wait.
      * 
      * @param wait The wait time, in milliseconds, to wait in-between snapshots.
      *             Note that this is a minimum, because it isn't always sure when
@@ -381,16 +1011,30 @@ public abstract class SwerveDrive extends SubsystemBase {
      * @throws IllegalArgumentException If no logger is registered.
      */
     public final void startLogging(long wait) {
-        startLogging(wait, loggers.toArray(new SwerveLogger[loggers.size()]));
+        if (wait <= 0) {
+            throw new IllegalArgumentException("Wait must be greater than 0.");
+        }
+        if (loggers.isEmpty()) {
+            throw new IllegalArgumentException("No swerve logger is registered.");
+        }
+        LogPolicy policy = LogPolicy.period(wait / 1000.0);
+        long now = System.nanoTime();
+        for (int i = 0; i < logSchedule.size(); i++) {
+            logSchedule.get(i).schedule(policy, i, now);
+        }
+        doLog = true;
     }
 
     /**
-     * Start logging using the current loggers and the default log time.
+     * Start logging using the current loggers, each at its own policy.
      * 
      * @throws IllegalArgumentException If no logger is registered.
      */
     public final void startLogging() {
-        startLogging(logWait);
+        if (loggers.isEmpty()) {
+            throw new IllegalArgumentException("No swerve logger is registered.");
+        }
+        doLog = true;
     }
 
     /**
@@ -404,29 +1048,65 @@ public abstract class SwerveDrive extends SubsystemBase {
      * @throws IllegalArgumentException If any logger is null.
      */
     public final void startLogging(long wait, SwerveLogger... loggers) {
+        if (wait <= 0) {
+            throw new IllegalArgumentException("Wait must be greater than 0.");
+        }
+        startLogging(LogPolicy.period(wait / 1000.0), loggers);
+    }
+
+    /**
+     * Start logging with the provided loggers, each at its own policy.
+     * 
+     * @param policy  How often the loggers should run.
+     * @param loggers The loggers to use.
+     * @throws IllegalArgumentException If any logger is null.
+     */
+    public final void startLogging(LogPolicy policy, SwerveLogger... loggers) {
+        if (policy == null) {
+            throw new IllegalArgumentException("No log policy provided.");
+        }
+        long now = System.nanoTime();
         for (SwerveLogger logger : loggers) {
             if (logger != null) {
+                ScheduledLogger scheduled = new ScheduledLogger(logger);
+                scheduled.schedule(policy, logSchedule.size(), now);
+                logSchedule.add(scheduled);
                 this.loggers.add(logger);
                 doLog = true;
             } else {
                 throw new IllegalArgumentException("No valid swerve logger provided.");
             }
         }
-        if (wait > 0) {
-            logWait = wait;
-        } else {
-            throw new IllegalArgumentException("Wait must be greater than 0.");
-        }
     }
 
     /**
-     * Start logging with the provided loggers
+     * Start logging with the provided loggers, once a second.
      * 
      * @param loggers The loggers to use.
      * @throws IllegalArgumentException If any logger is null.
      */
     public final void startLogging(SwerveLogger... loggers) {
-        startLogging(logWait, loggers);
+        startLogging(DEFAULT_LOG_POLICY, loggers);
+    }
+
+    /**
+     * Change how often a registered logger runs.
+     * 
+     * @param logger The logger to change.
+     * @param policy How often the logger should run.
+     * @throws IllegalArgumentException If the logger isn't registered.
+     */
+    public final void setLogPolicy(SwerveLogger logger, LogPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("No log policy provided.");
+        }
+        for (int i = 0; i < logSchedule.size(); i++) {
+            if (logSchedule.get(i).logger == logger) {
+                logSchedule.get(i).schedule(policy, i, System.nanoTime());
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Logger is not registered: " + logger);
     }
 
     /**
@@ -457,26 +1137,42 @@ public abstract class SwerveDrive extends SubsystemBase {
      * <b>Important:</b> This function is used for the logging functionality. If you
      * are using the logging features, you must call "super.periodic()" somewhere in
      * your periodic routine, if you choose to override this function.
+     * 
+     * Each logger runs according to its own {@link LogPolicy}. The driver
+     * station is only asked whether it is enabled once per cycle, and only if a
+     * logger needs to know. A logger that needs an enabled driver station isn't
+     * scheduled while it is disabled, so an on-change logger still logs the
+     * first change it sees once the driver station is enabled.
      */
     @Override
     public void periodic() {
-        long time = System.currentTimeMillis();
-        if (doLog && time - lastTime >= logWait) {
-            for (SwerveLogger logger : loggers) {
-                if (logger != null) {
-                    if (logger.requiresEnabledDriverStation()) {
-                        if (DriverStation.getInstance().isEnabled()) {
-                            logger.logState(this);
-                        }
-                    } else {
-                        logger.logState(this);
+        periodicProfiler.beginCycle();
+        if (doLog) {
+            long now = System.nanoTime();
+            logCycle++;
+            int enabled = 0; /* 0 is unknown, 1 is enabled, -1 is disabled. */
+            for (int i = 0; i < logSchedule.size(); i++) {
+                ScheduledLogger scheduled = logSchedule.get(i);
+                /*
+                 * Check the driver station first, so that a logger that can't run
+                 * doesn't use up the change or period it would have logged.
+                 */
+                if (scheduled.logger.requiresEnabledDriverStation()) {
+                    if (enabled == 0) {
+                        enabled = DriverStation.getInstance().isEnabled() ? 1 : -1;
                     }
-
+                    if (enabled < 0) {
+                        continue;
+                    }
+                }
+                if (!scheduled.isDue(now, logCycle, state)) {
+                    continue;
                 }
+                scheduled.logger.logState(this);
             }
-            lastTime = time;
-
         }
+        periodicProfiler.mark(0);
+        periodicProfiler.endCycle();
     }
 
     /* Exposed internal variables, intended to be used for logging only. */
@@ -539,6 +1235,16 @@ public abstract class SwerveDrive extends SubsystemBase {
         return moduleMap;
     }
 
+    /**
+     * Get the modules in this swerve drive, in the order that all the per-module
+     * arrays and snapshots use.
+     * 
+     * @return A copy of the module names, in order.
+     */
+    public SwerveModule[] getModules() {
+        return moduleKeys.clone();
+    }
+
     /**
      * Get the number of encoder counts per pivot revolution.
      * 
@@ -1,13 +1,10 @@
 package net.bancino.robotics.swerveio;
 
-import static java.lang.Math.atan2;
 import static java.lang.Math.cos;
-import static java.lang.Math.pow;
 import static java.lang.Math.sin;
-import static java.lang.Math.sqrt;
-import static java.lang.Math.toDegrees;
 import static java.lang.Math.toRadians;
 
+import net.bancino.robotics.swerveio.kinematics.SwerveKinematics;
 import net.bancino.robotics.swerveio.si.Length;
 import net.bancino.robotics.swerveio.si.Unit;
 import net.bancino.robotics.swerveio.si.ChassisDimension;
@@ -17,6 +14,10 @@ import net.bancino.robotics.swerveio.si.ChassisDimension;
  * obtain wheel angles and speeds. The proofs behind why this works is not
  * documented here, but there is plenty online. It is just a little
  * trigonometry.
+ * <p>
+ * The actual math is done by a {@link SwerveKinematics} engine. By default, the
+ * engine is built for a module in each corner of the base, but any engine can
+ * be provided for chassis with other layouts.
  * 
  * @author Jordan Bancino
  */
@@ -24,6 +25,12 @@ public class SwerveDriveCalculator {
     private Length baseWidth;
     private Length baseLength;
 
+    /* The engine that performs all the calculations. */
+    private SwerveKinematics kinematics;
+
+    /* Whether or not the engine should be rebuilt when the base changes. */
+    private final boolean cornerKinematics;
+
     /**
      * Instantiate a calculator with the given base dimensions. Note that these
      * don't have to be exact measurements, they just need to be proportionate to
@@ -34,10 +41,34 @@ public class SwerveDriveCalculator {
      * @param baseLength The length of the drive base.
      */
     public SwerveDriveCalculator(Length baseWidth, Length baseLength) {
+        cornerKinematics = true;
         setBase(baseWidth, baseLength);
     }
 
+    /**
+     * Instantiate a calculator for a four-module chassis with the given
+     * dimensions.
+     * 
+     * @param chassisDimension The dimensions of the drive base.
+     */
     public SwerveDriveCalculator(ChassisDimension chassisDimension) {
+        this(chassisDimension.getWidth(), chassisDimension.getLength());
+    }
+
+    /**
+     * Instantiate a calculator that uses the provided kinematics engine. This is
+     * used when the modules are not simply placed in the four corners of the
+     * base. Changing the base dimensions will not affect the engine.
+     * 
+     * @param chassisDimension The dimensions of the drive base.
+     * @param kinematics       The kinematics engine to perform calculations with.
+     */
+    public SwerveDriveCalculator(ChassisDimension chassisDimension, SwerveKinematics kinematics) {
+        if (kinematics == null) {
+            throw new IllegalArgumentException("Kinematics engine cannot be null.");
+        }
+        cornerKinematics = false;
+        this.kinematics = kinematics;
         setBase(chassisDimension.getWidth(), chassisDimension.getLength());
     }
 
@@ -60,6 +91,7 @@ public class SwerveDriveCalculator {
             throw new IllegalArgumentException("Base width cannot be zero.");
         }
         this.baseWidth = baseWidth;
+        updateKinematics();
     }
 
     /**
@@ -83,6 +115,7 @@ public class SwerveDriveCalculator {
             throw new IllegalArgumentException("Base length cannot be zero.");
         }
         this.baseLength = baseLength;
+        updateKinematics();
     }
 
     /**
@@ -107,6 +140,26 @@ public class SwerveDriveCalculator {
         setBaseLength(baseLength);
     }
 
+    /**
+     * Rebuild the corner kinematics engine. This is called whenever a base
+     * dimension changes, so the geometry is never worked out in the drive loop.
+     * Both dimensions must be set before the engine can be built.
+     */
+    private void updateKinematics() {
+        if (cornerKinematics && baseWidth != null && baseLength != null) {
+            kinematics = SwerveKinematics.fromChassisDimension(new ChassisDimension(baseWidth, baseLength));
+        }
+    }
+
+    /**
+     * Get the kinematics engine this calculator is using.
+     * 
+     * @return The engine that performs all the calculations.
+     */
+    public SwerveKinematics getKinematics() {
+        return kinematics;
+    }
+
     /**
      * Get the chassis dimensions being used in this calculator.
      * @return A ChassisDimension object that represents the dimensions being used in this calculator.
@@ -125,8 +178,7 @@ public class SwerveDriveCalculator {
      * @return The angle (in degrees) that the given wheel should be set to.
      */
     public double getWheelAngle(SwerveModule module, double fwd, double str, double rcw) {
-        double[] tmp = getWheelConstants(module, fwd, str, rcw);
-        return toDegrees(atan2(tmp[0], tmp[1]));
+        return kinematics.getWheelAngle(indexOf(module), fwd, str, rcw);
     }
 
     /**
@@ -160,56 +212,78 @@ public class SwerveDriveCalculator {
      *         to.
      */
     public double getWheelSpeed(SwerveModule module, double fwd, double str, double rcw) {
-        double[] tmp = getWheelConstants(module, fwd, str, rcw);
-        double wheelSpeed = sqrt(pow(tmp[0], 2) + pow(tmp[1], 2));
-        return (wheelSpeed > 1f) ? 1f : wheelSpeed;
-    }
-
-    /**
-     * Wheel constants are generated by using the degrees provided, these aren't
-     * really "constants" exactly since they're caculated depending on the provided
-     * degree values, but there's really no other name for them
-     * 
-     * @param module The wheel to fetch constants for.
-     * @param fwd    The Y degree
-     * @param str    The X degree
-     * @param rcw    the Z degree
-     * @return An array of floats containing the wheel constants. This array will
-     *         always be of size 2.
-     */
-    private double[] getWheelConstants(SwerveModule module, double fwd, double str, double rcw) {
-        /* Calculate the ratio constant */
-        double baseLength = this.baseLength.get(Unit.METERS);
-        double baseWidth = this.baseWidth.get(Unit.METERS);
-        final double R = sqrt(pow(baseLength, 2) + pow(baseWidth, 2));
-        /* Allocate the array */
-        double sides[] = new double[2];
-        /*
-         * The exact way these are calculated may seem arbitrary, but reading up on any
-         * swerve guide, or looking at any diagram will show you exactly how these are
-         * calcuated, it's just a little basic trig.
-         * 
-         * This basically involves computing the sides of a triangle that will be used
-         * to construct a vector.
-         */
-        switch (module) {
-        case FRONT_RIGHT:
-            sides[0] = str + rcw * (baseLength / R);
-            sides[1] = fwd - rcw * (baseWidth / R);
-            break;
-        case FRONT_LEFT:
-            sides[0] = str + rcw * (baseLength / R);
-            sides[1] = fwd + rcw * (baseWidth / R);
-            break;
-        case REAR_LEFT:
-            sides[0] = str - rcw * (baseLength / R);
-            sides[1] = fwd + rcw * (baseWidth / R);
-            break;
-        case REAR_RIGHT:
-            sides[0] = str - rcw * (baseLength / R);
-            sides[1] = fwd - rcw * (baseWidth / R);
-            break;
+        return kinematics.getWheelSpeed(indexOf(module), fwd, str, rcw);
+    }
+
+    /**
+     * Get the wheel speed for the given degrees. This is the field-centric method
+     * that recalculates the values based on the gyro angle, the same way as
+     * {@link #getWheelAngle(SwerveModule, double, double, double, double)}.
+     * 
+     * @param module    The wheel to get the speed of.
+     * @param fwd       The Y degree (from an input device)
+     * @param str       The X degree (from an input device)
+     * @param rcw       The Z degree (from an input device)
+     * @param gyroAngle The gyro angle (in degrees) measured from the zero position
+     *                  (straight down field)
+     * @return The speed (scaled 0 to 1) that the given wheel should be set to.
+     */
+    public double getWheelSpeed(SwerveModule module, double fwd, double str, double rcw, double gyroAngle) {
+        double cosAngle = cos(toRadians(gyroAngle));
+        double sinAngle = sin(toRadians(gyroAngle));
+        double modFwd = (fwd * cosAngle) + (str * sinAngle);
+        double modStr = (-fwd * sinAngle) + (str * cosAngle);
+        return getWheelSpeed(module, modFwd, modStr, rcw);
+    }
+
+    /**
+     * Calculate the speeds and angles of every module in a single pass. The
+     * field-centric rotation is computed once for all the modules, and the
+     * results are written into the provided arrays, so this method does not
+     * allocate anything. This is what the swerve drive uses every cycle; the
+     * single-module methods above are kept for convenience.
+     * 
+     * @param fwd       The Y degree (from an input device)
+     * @param str       The X degree (from an input device)
+     * @param rcw       The Z degree (from an input device)
+     * @param gyroAngle The gyro angle (in degrees) measured from the zero position
+     *                  (straight down field), or zero for robot-centric drive.
+     * @param speeds    The array to write the wheel speeds (scaled 0 to 1) into.
+     *                  Results are written in the order of
+     *                  {@link SwerveKinematics#getModules()}.
+     * @param angles    The array to write the wheel angles (in degrees) into.
+     */
+    public void calculate(double fwd, double str, double rcw, double gyroAngle, double[] speeds, double[] angles) {
+        kinematics.solve(fwd, str, rcw, gyroAngle, speeds, angles);
+    }
+
+    /**
+     * Perform forward kinematics, finding the chassis motion that best fits the
+     * motion of the modules, in the least-squares sense. See
+     * {@link SwerveKinematics#toChassisMotion(double[], double[])}.
+     * 
+     * @param moduleVectors The strafe and forward motion of each module,
+     *                      interleaved, in the order of
+     *                      {@link SwerveKinematics#getModules()}.
+     * @param out           The array to write the forward, strafe, and rotation
+     *                      motion of the chassis into.
+     */
+    public void getChassisMotion(double[] moduleVectors, double[] out) {
+        kinematics.toChassisMotion(moduleVectors, out);
+    }
+
+    /**
+     * Look up a module in the kinematics engine.
+     * 
+     * @param module The module to look up.
+     * @return The index of the module in the engine.
+     * @throws IllegalArgumentException If the engine has no such module.
+     */
+    private int indexOf(SwerveModule module) {
+        int index = kinematics.indexOf(module);
+        if (index < 0) {
+            throw new IllegalArgumentException("This calculator has no position for module: " + module);
         }
-        return sides;
+        return index;
     }
 }
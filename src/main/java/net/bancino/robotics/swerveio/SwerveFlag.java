@@ -19,8 +19,9 @@ public enum SwerveFlag {
     /**
      * The pivot optimize flag will enable an experimental feature that
      * will optimize the pivot motors in a way that won't rotate them
-     * more than 90 degrees. Because this feature is unstable and still a
-     * work in progress, it isn't enabled by default.
+     * more than about 90 degrees, by driving a module backwards when its
+     * target is behind it. See {@link net.bancino.robotics.swerveio.kinematics.SteeringOptimizer}.
+     * It isn't enabled by default.
      */
     ENABLE_PIVOT_OPTIMIZE,
 
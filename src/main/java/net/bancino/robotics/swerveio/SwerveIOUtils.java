@@ -119,6 +119,40 @@ public final class SwerveIOUtils {
         }
     }
 
+    /**
+     * Wrap an angle so that it is within -180 (exclusive) and 180 (inclusive)
+     * degrees. This is useful for finding the shortest way around a circle.
+     *
+     * @param angle The angle to wrap, in degrees. This can be any value.
+     * @return The equivalent angle between -180 and 180.
+     */
+    public static double wrapAngle180(double angle) {
+        double wrapped = angle % 360;
+        if (wrapped > 180) {
+            return wrapped - 360;
+        } else if (wrapped <= -180) {
+            return wrapped + 360;
+        } else {
+            return wrapped;
+        }
+    }
+
+    /**
+     * Wrap an angle so that it is within 0 (inclusive) and 360 (exclusive)
+     * degrees.
+     *
+     * @param angle The angle to wrap, in degrees. This can be any value.
+     * @return The equivalent angle between 0 and 360.
+     */
+    public static double wrapAngle360(double angle) {
+        double wrapped = angle % 360;
+        if (wrapped < 0) {
+            wrapped += 360;
+        }
+        /* Adding 360 to a tiny negative angle can round up to exactly 360. */
+        return (wrapped >= 360) ? 0 : wrapped;
+    }
+
     /**
      * Get the maximum chassis speed in meters per second.
      * 
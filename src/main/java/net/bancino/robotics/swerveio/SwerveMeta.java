@@ -3,6 +3,7 @@ package net.bancino.robotics.swerveio;
 import java.util.Map;
 import java.util.List;
 
+import edu.wpi.first.wpilibj.geometry.Translation2d;
 import net.bancino.robotics.swerveio.si.ChassisDimension;
 import net.bancino.robotics.swerveio.gyro.AbstractGyro;
 import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
@@ -47,11 +48,26 @@ public interface SwerveMeta {
     /**
      * Create a module map.
      * 
-     * @return A map containing a swerve module for each of the values in the
-     *         enumeration. This can be any type of map.
+     * @return A map containing a swerve module for each module on the chassis.
+     *         This can be any type of map. Unless module positions are provided,
+     *         this must contain exactly the four corner modules.
      */
     public Map<SwerveModule, AbstractSwerveModule> moduleMap();
 
+    /**
+     * Get the position of each module on the chassis. This is only required if
+     * the modules aren't simply placed in the four corners of the chassis
+     * dimensions, for instance, on a six-module chassis.
+     *
+     * @return A map containing the position of every module in the module map,
+     *         in meters from the center of the chassis, where positive X is
+     *         towards the front and positive Y is towards the left. Return null
+     *         to place the four corner modules using the chassis dimensions.
+     */
+    public default Map<SwerveModule, Translation2d> modulePositions() {
+        return null;
+    }
+
     /**
      * Get a gyro to be used for field centric navigation.
      * 
@@ -2,18 +2,20 @@ package net.bancino.robotics.swerveio;
 
 /**
  * Each module is driven independently, they all have their own speeds and
- * angles. Use this enumeration to specify modules.
+ * angles. Use this enumeration to specify modules. A typical swerve drive uses
+ * the four corner modules, but the middle modules are available for chassis
+ * with more than four. A swerve drive doesn't need to use every module.
  * 
  * @author Jordan Bancino
  */
 public enum SwerveModule {
-    FRONT_LEFT, FRONT_RIGHT, REAR_LEFT, REAR_RIGHT;
+    FRONT_LEFT, FRONT_RIGHT, REAR_LEFT, REAR_RIGHT, MIDDLE_LEFT, MIDDLE_RIGHT;
 
     /**
-     * The length of this enum. Used for checking a module map for the proper
-     * length. Instead of calling this code all the time, we set this static
-     * variable that we can reference. This will reduce overhead, if only by
-     * slightly
+     * The length of this enum. This is the maximum number of modules a swerve
+     * drive can have, and is useful for sizing arrays indexed by ordinal.
+     * Instead of calling this code all the time, we set this static variable
+     * that we can reference. This will reduce overhead, if only by slightly
      */
     public static final int length = SwerveModule.values().length;
 }
\ No newline at end of file
@@ -1,8 +1,11 @@
 package net.bancino.robotics.swerveio;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.io.Serializable;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A basic "point" collector that collects the state of the values being passed
@@ -12,27 +15,133 @@ import java.util.ArrayList;
  * action. Traditionally, a button press will start collecting points, another
  * button press will stop collecting points, and a third button press will play
  * back the collected points.
+ * <p>
+ * Points are stored as columns of primitive doubles, in fixed-size chunks, so
+ * collecting a point never copies the points before it and doesn't allocate
+ * except once every few thousand points. Each point is stamped with the time it
+ * was collected, so it can be played back at the speed it was recorded with
+ * {@link #sample(double, double[])}, regardless of the loop rate. Collections
+ * can be saved to and loaded from a compact binary file.
  * 
  * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 1.0.0
  */
-public class VectorCollector implements Serializable {
+public class VectorCollector {
 
-    private static final long serialVersionUID = 4031466732994117907L;
+    /** The magic number at the start of a saved collection, "SWVC". */
+    public static final int MAGIC = 0x53575643;
 
-    private ArrayList<SwerveVector> points = new ArrayList<>();
+    /** The version of the saved collection format. */
+    public static final int VERSION = 1;
+
+    /** The index of the time in the array filled by {@link #get(int, double[])}. */
+    public static final int TIME = 0;
+    /** The index of the forward value. */
+    public static final int FWD = 1;
+    /** The index of the strafe value. */
+    public static final int STR = 2;
+    /** The index of the rotation value. */
+    public static final int RCW = 3;
+    private static final int COLUMNS = 4;
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /* Indexed by column, then chunk, then position in the chunk. */
+    private double[][][] chunks = new double[COLUMNS][4][];
+    private int size = 0;
     /* The current location in the points list. */
     private int cursor = 0;
+    private long startNanos = 0;
+
+    /**
+     * Create an empty vector collector.
+     */
+    public VectorCollector() {
+
+    }
+
+    /**
+     * Create an empty vector collector with room for a number of points, so that
+     * collecting them won't allocate at all.
+     * 
+     * @param expectedPoints The number of points to make room for. At 50 Hz, a
+     *                       fifteen second autonomous is 750 points.
+     */
+    public VectorCollector(int expectedPoints) {
+        if (expectedPoints < 0) {
+            throw new IllegalArgumentException("Expected points must not be negative.");
+        }
+        ensureCapacity(expectedPoints);
+    }
 
     /**
      * Collect a point and seek it, moving the cursor forward. This should be run
      * iteratively, so that this object can construct a list of operations to run.
+     * The point is stamped with the time since the first point was collected. If
+     * the cursor isn't at the end, the points after it are discarded, so
+     * rewinding and collecting again records over the old points.
      * 
      * @param v The vector value to collect.
-     * @return A point representing the current values.
+     * @return The vector that was collected.
      */
     public SwerveVector collect(SwerveVector v) {
-        points.add(cursor, v);
-        return seek();
+        long now = System.nanoTime();
+        if (cursor == 0) {
+            startNanos = now;
+        }
+        collect((now - startNanos) / 1e9, v.getFwd(), v.getStr(), v.getRcw());
+        return v;
+    }
+
+    /**
+     * Collect a point at a given time and move the cursor past it. If the cursor
+     * isn't at the end, the points after it are discarded.
+     * 
+     * @param time The time of the point, in seconds. This must not be before the
+     *             point at the cursor.
+     * @param fwd  The forward value.
+     * @param str  The strafe value.
+     * @param rcw  The rotation value.
+     */
+    public void collect(double time, double fwd, double str, double rcw) {
+        if (cursor > 0 && time < getValue(TIME, cursor - 1)) {
+            throw new IllegalArgumentException("Points must be collected in order of time.");
+        }
+        ensureCapacity(cursor + 1);
+        int chunk = cursor >>> CHUNK_BITS;
+        int offset = cursor & CHUNK_MASK;
+        chunks[TIME][chunk][offset] = time;
+        chunks[FWD][chunk][offset] = fwd;
+        chunks[STR][chunk][offset] = str;
+        chunks[RCW][chunk][offset] = rcw;
+        cursor++;
+        size = cursor;
+    }
+
+    private void ensureCapacity(int points) {
+        int needed = (points + CHUNK_MASK) >>> CHUNK_BITS;
+        if (needed > chunks[0].length) {
+            int length = Math.max(needed, chunks[0].length * 2);
+            for (int c = 0; c < COLUMNS; c++) {
+                double[][] grown = new double[length][];
+                System.arraycopy(chunks[c], 0, grown, 0, chunks[c].length);
+                chunks[c] = grown;
+            }
+        }
+        for (int i = 0; i < needed; i++) {
+            if (chunks[0][i] == null) {
+                for (int c = 0; c < COLUMNS; c++) {
+                    chunks[c][i] = new double[CHUNK_SIZE];
+                }
+            }
+        }
+    }
+
+    private double getValue(int column, int index) {
+        return chunks[column][index >>> CHUNK_BITS][index & CHUNK_MASK];
     }
 
     /**
@@ -43,6 +152,41 @@ public class VectorCollector implements Serializable {
         cursor = 0;
     }
 
+    /**
+     * Discard all the points.
+     */
+    public void clear() {
+        size = 0;
+        cursor = 0;
+    }
+
+    /**
+     * Get the number of points in this collector.
+     * 
+     * @return The point count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the position of the cursor.
+     * 
+     * @return The index of the point the cursor is at.
+     */
+    public int getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Get the time between the first and last points.
+     * 
+     * @return The duration of the collection, in seconds.
+     */
+    public double getDuration() {
+        return (size == 0) ? 0 : getValue(TIME, size - 1) - getValue(TIME, 0);
+    }
+
     /**
      * Retrieve the current point and set the cursor forward to the next one.
      * 
@@ -71,7 +215,157 @@ public class VectorCollector implements Serializable {
      * @return The point located at the given index.
      */
     public SwerveVector peekAt(int index) {
-        return points.get(index);
+        checkIndex(index);
+        return new SwerveVector(getValue(FWD, index), getValue(STR, index), getValue(RCW, index));
+    }
+
+    /**
+     * Copy a point without allocating.
+     * 
+     * @param index The index of the point.
+     * @param out   An array of at least four, which is filled with the point's
+     *              values at {@link #TIME}, {@link #FWD}, {@link #STR}, and
+     *              {@link #RCW}.
+     */
+    public void get(int index, double[] out) {
+        checkIndex(index);
+        for (int c = 0; c < COLUMNS; c++) {
+            out[c] = getValue(c, index);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No point " + index + " in a collection of " + size);
+        }
+    }
+
+    /**
+     * Get the point at a time, interpolating between the collected points on
+     * either side of it. This doesn't allocate, so it can be used to play a
+     * collection back at the speed it was recorded, no matter the loop rate.
+     * 
+     * @param time The time, in seconds from the first point. Times before the
+     *             first point or after the last point give the first or last
+     *             point.
+     * @param out  An array of at least four, which is filled like
+     *             {@link #get(int, double[])}.
+     * @return The index of the last point at or before the time.
+     */
+    public int sample(double time, double[] out) {
+        if (size == 0) {
+            throw new IllegalStateException("Cannot sample an empty collection.");
+        }
+        time += getValue(TIME, 0);
+        int low = 0;
+        int high = size - 1;
+        if (time <= getValue(TIME, low)) {
+            get(low, out);
+            return low;
+        }
+        if (time >= getValue(TIME, high)) {
+            get(high, out);
+            return high;
+        }
+        /* Find the last point at or before the time. */
+        while (low < high - 1) {
+            int mid = (low + high) >>> 1;
+            if (getValue(TIME, mid) <= time) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        double t0 = getValue(TIME, low);
+        double t1 = getValue(TIME, high);
+        double fraction = (t1 > t0) ? (time - t0) / (t1 - t0) : 0;
+        for (int c = 0; c < COLUMNS; c++) {
+            double v0 = getValue(c, low);
+            out[c] = v0 + ((getValue(c, high) - v0) * fraction);
+        }
+        return low;
+    }
+
+    /**
+     * Save this collection to a file. The file is a header of the magic number
+     * {@link #MAGIC}, the {@link #VERSION}, and the number of points, followed by
+     * each column of doubles in turn: time, fwd, str, and rcw. Everything is
+     * big-endian.
+     * 
+     * @param file The file to save to. It is created if it doesn't exist, and
+     *             truncated if it does.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(size).flip();
+            writeFully(channel, header);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE * Double.BYTES);
+            for (int c = 0; c < COLUMNS; c++) {
+                for (int start = 0; start < size; start += CHUNK_SIZE) {
+                    int count = Math.min(CHUNK_SIZE, size - start);
+                    buffer.clear();
+                    buffer.asDoubleBuffer().put(chunks[c][start >>> CHUNK_BITS], 0, count);
+                    buffer.limit(count * Double.BYTES);
+                    writeFully(channel, buffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a collection that was saved with {@link #save(File)}. The cursor is
+     * left at the start.
+     * 
+     * @param file The file to load.
+     * @return The loaded collection.
+     * @throws IOException If the file can't be read, or isn't a saved collection.
+     */
+    public static VectorCollector load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(3 * Integer.BYTES);
+            readFully(channel, header);
+            if (header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a saved vector collection.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported vector collection version: " + version);
+            }
+            int size = header.getInt();
+            if (size < 0 || ((long) size * COLUMNS * Double.BYTES) + header.capacity() != channel.size()) {
+                throw new IOException(file + " is truncated or corrupt.");
+            }
+            VectorCollector collector = new VectorCollector(size);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK_SIZE * Double.BYTES);
+            for (int c = 0; c < COLUMNS; c++) {
+                for (int start = 0; start < size; start += CHUNK_SIZE) {
+                    int count = Math.min(CHUNK_SIZE, size - start);
+                    buffer.clear().limit(count * Double.BYTES);
+                    readFully(channel, buffer);
+                    buffer.asDoubleBuffer().get(collector.chunks[c][start >>> CHUNK_BITS], 0, count);
+                }
+            }
+            collector.size = size;
+            return collector;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Unexpected end of file.");
+            }
+        }
+        buffer.flip();
     }
 
     /**
@@ -80,7 +374,7 @@ public class VectorCollector implements Serializable {
      * @param out The output stream to print to.
      */
     public void prettyPrint(PrintStream out) {
-        prettyPrint(out, 0, points.size());
+        prettyPrint(out, 0, size);
     }
 
     /**
@@ -91,7 +385,7 @@ public class VectorCollector implements Serializable {
      */
     public void prettyPrint(PrintStream out, int point) {
         SwerveVector p = peekAt(point);
-        out.printf("[SwerveVector: %4d] %s\n", point, p.toString());
+        out.printf("[SwerveVector: %4d @ %8.3fs] %s\n", point, getValue(TIME, point), p.toString());
     }
 
     /**
@@ -106,4 +400,4 @@ public class VectorCollector implements Serializable {
             prettyPrint(out, i);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,73 +1,337 @@
 package net.bancino.robotics.swerveio.command;
 
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.Filesystem;
-import edu.wpi.first.wpilibj.trajectory.Trajectory;
-import edu.wpi.first.wpilibj.trajectory.TrajectoryUtil;
-import edu.wpi.first.wpilibj.kinematics.ChassisSpeeds;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.NavigableMap;
+import java.util.function.Supplier;
 import net.bancino.robotics.swerveio.SwerveDrive;
 import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.gyro.AbstractGyro;
+import net.bancino.robotics.swerveio.kinematics.SwerveOdometry;
+import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
+import net.bancino.robotics.swerveio.pid.MiniPID;
+import net.bancino.robotics.swerveio.trajectory.CompiledTrajectory;
+import net.bancino.robotics.swerveio.trajectory.HeadingProfile;
+import net.bancino.robotics.swerveio.trajectory.TrackingStatistics;
+import net.bancino.robotics.swerveio.trajectory.TrajectoryCache;
 
 /**
  * A command that, while running, will execute a PathWeaver trajectory
- * on a Swerve drive.
+ * on a Swerve drive. The trajectory is compiled once and kept next to the
+ * JSON file, so loading it after the first time is nearly free. It can also
+ * be taken from a {@link TrajectoryCache} when the command starts, so building
+ * the command never touches the disk.
+ * <p>
+ * The velocity of the trajectory is fed forward, and if the swerve drive has
+ * {@link SwerveDrive#startOdometry(double, double) odometry} running, the
+ * position and heading are corrected with PID controllers. Time is measured
+ * with a monotonic clock, and how closely the trajectory was tracked is
+ * recorded in {@link #getTrackingStatistics()}.
+ * <p>
+ * Pathweaver trajectories use WPILib's conventions (Y to the left,
+ * counter-clockwise angles); they are converted to SwerveIO's (Y to the right,
+ * clockwise angles) here. By default, the robot is turned at a constant rate
+ * from the starting heading of the trajectory to the final one; put a
+ * {@link HeadingProfile#ROTATIONS_SUFFIX rotations file} next to the
+ * trajectory, or give it {@link #setHeadingKeyframes(NavigableMap) keyframes},
+ * to follow a {@link HeadingProfile} instead.
  *
  * @author Jordan Bancino
  */
 public class PathweaverSwerveDrive extends CommandBase {
 
-    private final Trajectory trajectory;
+    /** The default proportional gain of the X and Y controllers, in (m/s)/m. */
+    public static final double DEFAULT_TRANSLATION_P = 2.0;
+    /** The default proportional gain of the heading controller, in (deg/s)/deg. */
+    public static final double DEFAULT_HEADING_P = 2.0;
+    /** The default limit of the X and Y corrections, in meters per second. */
+    public static final double DEFAULT_MAX_TRANSLATION_CORRECTION = 1.0;
+    /** The default limit of the heading correction, in degrees per second. */
+    public static final double DEFAULT_MAX_HEADING_CORRECTION = 180.0;
+
+    private final Supplier<CompiledTrajectory> source;
     private final SwerveDrive swerve;
-    private final double angularVelocity;
 
-    private Trajectory.State currentState;
-    private long startTime, currentTime;
+    private final MiniPID xController = new MiniPID(DEFAULT_TRANSLATION_P, 0, 0);
+    private final MiniPID yController = new MiniPID(DEFAULT_TRANSLATION_P, 0, 0);
+    private final MiniPID headingController = new MiniPID(DEFAULT_HEADING_P, 0, 0);
+    private final TrackingStatistics statistics = new TrackingStatistics();
+    private boolean resetPose = true;
+    private NavigableMap<Double, Double> headingKeyframes;
+    private HeadingProfile headingProfile;
+    private CompiledTrajectory headingProfileTrajectory;
+
+    private CompiledTrajectory trajectory;
+    private SwerveOdometry odometry;
+    private double startHeading, angularVelocity;
+    private double maxSpeed, maxOmega;
+
+    private final double[] currentState = new double[CompiledTrajectory.COLUMNS];
+    private final double[] headingState = new double[HeadingProfile.COLUMNS];
+    private final double[] pose = new double[SwerveOdometry.SNAPSHOT_SIZE];
+    private long startTime;
 
     /**
-     * Create a Pathweaver swerve drive.
+     * Create a Pathweaver swerve drive. If the trajectory has a
+     * {@link HeadingProfile#getRotationsFile(Path) rotations file} next to it,
+     * the robot's heading follows its keyframes.
      *
      * @param swerve The swerve drive object to drive.
      * @param pathweaverJson The pathweaver file to load, relative to the deploy directory.
-     * @throws IOException If there is an IO error when reading the pathweaver json file.
+     * @throws IOException If there is an IO error when reading the pathweaver json file
+     *                     or its rotations file.
+     * @throws IllegalArgumentException If the rotations file has keyframes that
+     *                                  don't fit on the trajectory.
      */
     public PathweaverSwerveDrive(SwerveDrive swerve, String pathweaverJson) throws IOException {
-        if (pathweaverJson != null) {
-            Path jsonPath = Filesystem.getDeployDirectory().toPath().resolve(pathweaverJson);
-            trajectory = TrajectoryUtil.fromPathweaverJson(jsonPath);
-            angularVelocity = SwerveIOUtils.getAngularVelocity(trajectory);
-        } else {
-            throw new IllegalArgumentException("Pathweaver JSON file name cannot be null.");
+        this(swerve, load(pathweaverJson));
+        Path rotations = HeadingProfile.getRotationsFile(resolve(pathweaverJson));
+        if (Files.exists(rotations)) {
+            setHeadingKeyframes(HeadingProfile.readKeyframes(rotations));
+            /* Build the profile now, so keyframes that don't fit the trajectory fail here. */
+            CompiledTrajectory trajectory = source.get();
+            if (headingKeyframes != null) {
+                headingProfile = HeadingProfile.build(trajectory, headingKeyframes);
+                headingProfileTrajectory = trajectory;
+            }
+        }
+    }
+
+    /**
+     * Create a Pathweaver swerve drive from a trajectory that has already been
+     * compiled.
+     *
+     * @param swerve The swerve drive object to drive.
+     * @param trajectory The compiled trajectory to follow.
+     */
+    public PathweaverSwerveDrive(SwerveDrive swerve, CompiledTrajectory trajectory) {
+        this(swerve, () -> trajectory);
+        if (trajectory == null) {
+            throw new IllegalArgumentException("Trajectory cannot be null.");
+        }
+    }
+
+    /**
+     * Create a Pathweaver swerve drive that takes its trajectory from a cache
+     * when it starts. If the trajectory isn't loaded by then, the command
+     * finishes immediately instead of waiting for it.
+     *
+     * @param swerve The swerve drive object to drive.
+     * @param cache The cache to take the trajectory from.
+     * @param name The file name of the trajectory in the cache.
+     */
+    public PathweaverSwerveDrive(SwerveDrive swerve, TrajectoryCache cache, String name) {
+        this(swerve, () -> cache.getNow(name, CompiledTrajectory.class));
+        if (cache == null || name == null) {
+            throw new IllegalArgumentException("Trajectory cache and name cannot be null.");
         }
+    }
+
+    private PathweaverSwerveDrive(SwerveDrive swerve, Supplier<CompiledTrajectory> source) {
+        this.source = source;
         if (swerve != null) {
             this.swerve = swerve;
             addRequirements(swerve);
         } else {
             throw new IllegalArgumentException("Swerve drive cannot be null.");
         }
+        xController.setOutputLimits(DEFAULT_MAX_TRANSLATION_CORRECTION);
+        yController.setOutputLimits(DEFAULT_MAX_TRANSLATION_CORRECTION);
+        headingController.setOutputLimits(DEFAULT_MAX_HEADING_CORRECTION);
+    }
+
+    private static CompiledTrajectory load(String pathweaverJson) throws IOException {
+        return CompiledTrajectory.fromPathweaverJson(resolve(pathweaverJson));
+    }
+
+    private static Path resolve(String pathweaverJson) {
+        if (pathweaverJson != null) {
+            return Filesystem.getDeployDirectory().toPath().resolve(pathweaverJson);
+        } else {
+            throw new IllegalArgumentException("Pathweaver JSON file name cannot be null.");
+        }
+    }
+
+    /**
+     * Set the gains of the X and Y position controllers.
+     *
+     * @param p The proportional gain, in meters per second per meter of error.
+     * @param i The integral gain.
+     * @param d The derivative gain.
+     */
+    public void setTranslationGains(double p, double i, double d) {
+        xController.setPID(p, i, d);
+        yController.setPID(p, i, d);
+    }
+
+    /**
+     * Set the gains of the heading controller.
+     *
+     * @param p The proportional gain, in degrees per second per degree of error.
+     * @param i The integral gain.
+     * @param d The derivative gain.
+     */
+    public void setHeadingGains(double p, double i, double d) {
+        headingController.setPID(p, i, d);
+    }
+
+    /**
+     * Set whether the odometry is reset to the start of the trajectory when this
+     * command starts. This is on by default; turn it off when chaining
+     * trajectories, so each one starts from wherever the last one really ended.
+     *
+     * @param resetPose Whether to reset the odometry when starting.
+     */
+    public void setResetPose(boolean resetPose) {
+        this.resetPose = resetPose;
+    }
+
+    /**
+     * Set the rotation keyframes that the robot's heading should follow while
+     * driving. The heading profile is built from these against the trajectory
+     * when the command starts, so they must have been made for that trajectory.
+     *
+     * @param keyframes The keyframes, mapping a distance along the trajectory to
+     *                  a heading in radians, counter-clockwise, as read by
+     *                  {@link HeadingProfile#readKeyframes(Path)}. If this is
+     *                  null or empty, the robot turns at a constant rate.
+     */
+    public void setHeadingKeyframes(NavigableMap<Double, Double> keyframes) {
+        headingKeyframes = (keyframes == null || keyframes.isEmpty()) ? null : keyframes;
+        headingProfile = null;
+        headingProfileTrajectory = null;
+    }
+
+    /**
+     * @return How closely the trajectory has been tracked since this command
+     *         last started.
+     */
+    public TrackingStatistics getTrackingStatistics() {
+        return statistics;
     }
 
     @Override
     public void initialize() {
-        startTime = System.currentTimeMillis();
+        trajectory = source.get();
+        if (trajectory == null) {
+            return;
+        }
+        int last = trajectory.getSampleCount() - 1;
+        double totalTime = trajectory.getTotalTime();
+        startHeading = trajectory.get(CompiledTrajectory.HEADING, 0);
+        double endHeading = trajectory.get(CompiledTrajectory.HEADING, last);
+        angularVelocity = (totalTime > 0) ? (endHeading - startHeading) / totalTime : 0;
+
+        AbstractSwerveModule module = swerve.getModuleMap().get(swerve.getModules()[0]);
+        maxSpeed = SwerveIOUtils.getMaxChassisSpeed(module.getGearRatio(), module.getDriveMaxRPM(),
+                module.getWheelDiameter());
+        maxOmega = SwerveIOUtils.getMaxChassisOmega(maxSpeed, swerve.getCalculator().getChassisDimension());
+
+        if (headingKeyframes != null && headingProfileTrajectory != trajectory) {
+            headingProfile = HeadingProfile.build(trajectory, headingKeyframes);
+            headingProfileTrajectory = trajectory;
+            startHeading = headingProfile.get(0);
+        } else if (headingProfile != null) {
+            startHeading = headingProfile.get(0);
+        }
+
+        odometry = swerve.getOdometry();
+        if (odometry == null) {
+            DriverStation.reportWarning("[SwerveIO Pathweaver] Odometry is not running, following open loop.", false);
+        } else if (resetPose) {
+            odometry.reset(trajectory.get(CompiledTrajectory.X, 0), -trajectory.get(CompiledTrajectory.Y, 0),
+                    SwerveIOUtils.wrapAngle360(-Math.toDegrees(startHeading)));
+        }
+        xController.reset();
+        yController.reset();
+        headingController.reset();
+        statistics.reset();
+        startTime = System.nanoTime();
     }
 
     private double getTimeSeconds() {
-        currentTime = System.currentTimeMillis();
-        return (currentTime - startTime) / 1000;
+        return (System.nanoTime() - startTime) / 1e9;
     }
 
     @Override
     public void execute() {
-        currentState = trajectory.sample(getTimeSeconds());
-        ChassisSpeeds swerveVector = SwerveIOUtils.convertToChassisSpeeds(currentState, angularVelocity);
-        swerve.drive(swerveVector);
-        System.out.println("[SwerveIO Pathweaver] (" + getTimeSeconds() + " s) Running vector: " + swerveVector);
+        if (trajectory == null) {
+            return;
+        }
+        double time = getTimeSeconds();
+        trajectory.sample(time, currentState);
+
+        /* The reference, in SwerveIO's frame. */
+        double pathAngle = currentState[CompiledTrajectory.HEADING];
+        double velocity = currentState[CompiledTrajectory.VELOCITY];
+        double targetX = currentState[CompiledTrajectory.X];
+        double targetY = -currentState[CompiledTrajectory.Y];
+        double targetHeading;
+        double rcw;
+        if (headingProfile != null) {
+            headingProfile.sample(time, headingState);
+            targetHeading = -Math.toDegrees(headingState[HeadingProfile.HEADING]);
+            rcw = -Math.toDegrees(headingState[HeadingProfile.ANGULAR_VELOCITY]);
+        } else {
+            double headingTime = Math.min(time, trajectory.getTotalTime());
+            targetHeading = -Math.toDegrees(startHeading + (angularVelocity * headingTime));
+            rcw = (time < trajectory.getTotalTime()) ? -Math.toDegrees(angularVelocity) : 0;
+        }
+
+        /* Feedforward, in meters per second and degrees per second clockwise. */
+        double fwd = velocity * Math.cos(pathAngle);
+        double str = -velocity * Math.sin(pathAngle);
+
+        AbstractGyro gyro = swerve.getGyro();
+        double gyroAngle = (gyro != null) ? gyro.getAngle() : 0;
+        double rotation;
+        if (odometry != null && odometry.getPose(pose) > 0 && pose[SwerveOdometry.TIMESTAMP] >= startTime / 1e9) {
+            double x = pose[SwerveOdometry.X];
+            double y = pose[SwerveOdometry.Y];
+            double heading = pose[SwerveOdometry.HEADING];
+            double headingError = SwerveIOUtils.wrapAngle180(heading - SwerveIOUtils.wrapAngle360(targetHeading));
+            fwd += xController.getOutput(x, targetX);
+            str += yController.getOutput(y, targetY);
+            /* Measure the heading relative to the target, so the error always takes the short way around. */
+            rcw += headingController.getOutput(headingError, 0);
+            statistics.record(Math.hypot(targetX - x, targetY - y), headingError);
+
+            /*
+             * Into the robot's frame by the odometry heading, then back out by the
+             * gyro if the drive does that itself.
+             */
+            rotation = (swerve.isFieldCentric()) ? heading - gyroAngle : heading;
+        } else {
+            rotation = (swerve.isFieldCentric()) ? 0 : gyroAngle;
+        }
+
+        double cos = Math.cos(Math.toRadians(rotation));
+        double sin = Math.sin(Math.toRadians(rotation));
+        double driveFwd = (fwd * cos) + (str * sin);
+        double driveStr = (-fwd * sin) + (str * cos);
+        swerve.drive(new SwerveVector(driveFwd / maxSpeed, driveStr / maxSpeed, Math.toRadians(rcw) / maxOmega));
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        swerve.stop();
+        if (trajectory != null && statistics.getCount() > 0) {
+            String result = (interrupted) ? "Interrupted: " : "Finished: ";
+            System.out.println("[SwerveIO Pathweaver] " + result + statistics);
+        }
     }
 
     @Override
     public boolean isFinished() {
-        return currentState == null || trajectory.getTotalTimeSeconds() <= getTimeSeconds();
+        if (trajectory == null) {
+            return true;
+        }
+        double totalTime = (headingProfile != null) ? headingProfile.getTotalTime() : trajectory.getTotalTime();
+        return totalTime <= getTimeSeconds();
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ import edu.wpi.first.wpilibj.XboxController;
 
 import net.bancino.robotics.swerveio.SwerveDrive;
 import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.VectorCollector;
 
 /**
  * A simple command for driving a swerve drive. 
@@ -20,6 +21,7 @@ public class SwerveDriveTeleop extends CommandBase {
     private XboxController.Axis fwdAxis, strAxis, rcwAxis;
 
     private double deadband, throttle;
+    private VectorCollector collector;
 
     /**
      * Create a new swerve drive joystick command.
@@ -58,6 +60,17 @@ public class SwerveDriveTeleop extends CommandBase {
       this.throttle = throttle;
     }
 
+    /**
+     * Record every vector this command drives with into a collector, so that it
+     * can be played back later with a
+     * {@link net.bancino.robotics.swerveio.command.VectorReplayCommand}.
+     *
+     * @param collector The collector to record into, or null to stop recording.
+     */
+    public void setCollector(VectorCollector collector) {
+      this.collector = collector;
+    }
+
     @Override
     public void execute() {
         double fwd = - throttle(deadband(joystick.getRawAxis(fwdAxis.value)));
@@ -65,6 +78,9 @@ public class SwerveDriveTeleop extends CommandBase {
         double rcw = throttle(deadband(joystick.getRawAxis(rcwAxis.value)));
         SwerveVector joystickVector = new SwerveVector(fwd, str, rcw);
         swerve.drive(joystickVector);
+        if (collector != null) {
+            collector.collect(joystickVector);
+        }
     }
 
     @Override
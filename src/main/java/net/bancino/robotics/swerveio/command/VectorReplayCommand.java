@@ -0,0 +1,73 @@
+package net.bancino.robotics.swerveio.command;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+
+import net.bancino.robotics.swerveio.SwerveDrive;
+import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.VectorCollector;
+
+/**
+ * A command that plays a {@link VectorCollector} back on a swerve drive, at the
+ * speed it was recorded. Each cycle, the recording is sampled at the time since
+ * the command started, interpolating between the recorded points, so playback
+ * doesn't depend on the loop running at the same rate it was recorded at. This
+ * makes a "drive it once in teleop, replay it in auto" routine.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class VectorReplayCommand extends CommandBase {
+
+    private final SwerveDrive swerve;
+    private final VectorCollector collector;
+    private final double[] point = new double[4];
+    private long startNanos;
+    private boolean finished;
+
+    /**
+     * Create a new replay command.
+     *
+     * @param swerve    The swerve drive to drive.
+     * @param collector The recording to play back.
+     */
+    public VectorReplayCommand(SwerveDrive swerve, VectorCollector collector) {
+        if (swerve == null) {
+            throw new IllegalArgumentException("Swerve Drive cannot be null.");
+        }
+        if (collector == null) {
+            throw new IllegalArgumentException("Vector collector cannot be null.");
+        }
+        this.swerve = swerve;
+        this.collector = collector;
+        addRequirements(swerve);
+    }
+
+    @Override
+    public void initialize() {
+        startNanos = System.nanoTime();
+        finished = (collector.size() == 0);
+    }
+
+    @Override
+    public void execute() {
+        if (finished) {
+            return;
+        }
+        double time = (System.nanoTime() - startNanos) / 1e9;
+        collector.sample(time, point);
+        swerve.drive(new SwerveVector(point[VectorCollector.FWD], point[VectorCollector.STR],
+                point[VectorCollector.RCW]));
+        finished = time >= collector.getDuration();
+    }
+
+    @Override
+    public void end(boolean interrupted) {
+        swerve.drive(new SwerveVector(0, 0, 0));
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+}
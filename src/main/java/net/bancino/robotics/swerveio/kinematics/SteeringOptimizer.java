@@ -0,0 +1,151 @@
+package net.bancino.robotics.swerveio.kinematics;
+
+import java.util.Arrays;
+
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+
+/**
+ * Chooses the way each module steers to reach its target with the least pivot
+ * travel. A module can point its wheel at the target angle, or at the opposite
+ * angle and drive backwards, and either of those is the same as itself plus or
+ * minus any number of full turns. Of all of these, the one closest to where the
+ * module is actually pointing is chosen, so a module never turns more than
+ * about 90 degrees and never takes the long way around the 0/360 seam.
+ * <p>
+ * Each module's angle is tracked continuously, without wrapping, so the travel
+ * is always measured the short way no matter how many times the module has
+ * turned. When the target is near 90 degrees away, driving forwards and
+ * backwards are almost equally good, and noise in the target would make the
+ * module flip back and forth between them. To prevent this, a module only
+ * changes direction once the other direction is better by more than the
+ * hysteresis.
+ * <p>
+ * This is not thread-safe; it keeps state for every module and should only be
+ * used by the thread that drives them.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SteeringOptimizer {
+
+    /** The default hysteresis, in degrees. */
+    public static final double DEFAULT_HYSTERESIS = 10;
+
+    private final double[] continuousAngle;
+    private final boolean[] reversed;
+    private double hysteresis;
+
+    /**
+     * Create a steering optimizer with the default hysteresis.
+     *
+     * @param modules The number of modules.
+     */
+    public SteeringOptimizer(int modules) {
+        this(modules, DEFAULT_HYSTERESIS);
+    }
+
+    /**
+     * Create a steering optimizer.
+     *
+     * @param modules    The number of modules.
+     * @param hysteresis How much less travel, in degrees, the other direction
+     *                   must take before a module changes direction.
+     */
+    public SteeringOptimizer(int modules, double hysteresis) {
+        if (modules < 1) {
+            throw new IllegalArgumentException("A steering optimizer needs at least one module.");
+        }
+        continuousAngle = new double[modules];
+        reversed = new boolean[modules];
+        setHysteresis(hysteresis);
+        reset();
+    }
+
+    /**
+     * Set the hysteresis.
+     *
+     * @param hysteresis How much less travel, in degrees, the other direction
+     *                   must take before a module changes direction. This must
+     *                   be less than 180.
+     */
+    public void setHysteresis(double hysteresis) {
+        if (hysteresis < 0 || hysteresis >= 180) {
+            throw new IllegalArgumentException("Hysteresis must be at least 0 and less than 180 degrees.");
+        }
+        this.hysteresis = hysteresis;
+    }
+
+    /**
+     * @return The hysteresis, in degrees.
+     */
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    /**
+     * Choose the way a module should steer to a target.
+     *
+     * @param module       The index of the module.
+     * @param currentAngle The angle the module is pointing now, in degrees. This
+     *                     can be wrapped any way.
+     * @param targetAngle  The angle the module should drive towards, in degrees.
+     *                     This can be wrapped any way.
+     * @return The angle to steer the module to, in continuous degrees. This is
+     *         within about 90 degrees of the continuous current angle. If
+     *         {@link #isReversed(int)} is true, the module should drive backwards
+     *         to go towards the target.
+     */
+    public double optimize(int module, double currentAngle, double targetAngle) {
+        double continuous = continuousAngle[module];
+        if (Double.isNaN(continuous)) {
+            continuous = currentAngle;
+        } else {
+            continuous += SwerveIOUtils.wrapAngle180(currentAngle - continuous);
+        }
+        continuousAngle[module] = continuous;
+
+        double forward = SwerveIOUtils.wrapAngle180(targetAngle - continuous);
+        double backward = SwerveIOUtils.wrapAngle180(targetAngle + 180 - continuous);
+        boolean reverse = reversed[module];
+        if (reverse) {
+            reverse = Math.abs(forward) + hysteresis >= Math.abs(backward);
+        } else {
+            reverse = Math.abs(backward) + hysteresis < Math.abs(forward);
+        }
+        reversed[module] = reverse;
+        return continuous + (reverse ? backward : forward);
+    }
+
+    /**
+     * Whether the last target chosen for a module is behind it, so that the
+     * module should drive backwards.
+     *
+     * @param module The index of the module.
+     * @return True if the module's speed should be negated.
+     */
+    public boolean isReversed(int module) {
+        return reversed[module];
+    }
+
+    /**
+     * Get the continuous angle of a module, as of the last call to
+     * {@link #optimize(int, double, double)}.
+     *
+     * @param module The index of the module.
+     * @return The module's angle, in degrees, unwrapped, or NaN if it hasn't
+     *         been optimized yet.
+     */
+    public double getContinuousAngle(int module) {
+        return continuousAngle[module];
+    }
+
+    /**
+     * Forget every module's angle and direction, for when the modules have been
+     * moved without the optimizer knowing.
+     */
+    public void reset() {
+        Arrays.fill(continuousAngle, Double.NaN);
+        Arrays.fill(reversed, false);
+    }
+}
@@ -0,0 +1,342 @@
+package net.bancino.robotics.swerveio.kinematics;
+
+import static java.lang.Math.atan2;
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.sqrt;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import edu.wpi.first.wpilibj.geometry.Translation2d;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.si.ChassisDimension;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * A kinematics engine for a swerve drive with any number of modules in any
+ * placement. All the geometry is worked out once, when the engine is
+ * constructed, and stored as a flat inverse-kinematics matrix. Solving for
+ * every module is then a single matrix-vector product, followed by converting
+ * each module's vector into a speed and an angle.
+ * <p>
+ * Rotation is normalized by the distance of the furthest module from the
+ * center of the chassis, so a rotation input of 1 will drive that module at
+ * full speed. For a rectangular four-module chassis, this produces exactly the
+ * same results as the classic corner equations.
+ * <p>
+ * The engine also goes the other way: given what each module is actually
+ * doing, it can find the chassis motion that best explains it. With more than
+ * two modules the system is over-determined, so this is solved in the
+ * least-squares sense using the pseudo-inverse of the inverse-kinematics
+ * matrix, which is also computed only once.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SwerveKinematics {
+
+    /* The modules, in the order that their results are stored. */
+    private final SwerveModule[] modules;
+
+    /* Maps a module's ordinal to its index in the arrays, or -1 if absent. */
+    private final int[] moduleIndex;
+
+    /*
+     * The inverse kinematics matrix, stored row-major with three columns (fwd,
+     * str, rcw). Row 2i produces the strafe component of module i and row 2i + 1
+     * produces the forward component.
+     */
+    private final double[] inverse;
+
+    /*
+     * The forward kinematics matrix, the pseudo-inverse of the matrix above. It is
+     * stored row-major with three rows (fwd, str, rcw) and one column for each
+     * row of the inverse matrix.
+     */
+    private final double[] forward;
+
+    /* The distance of the furthest module from the center, in meters. */
+    private final double radius;
+
+    /* Scratch space for the module vectors; two entries per module. */
+    private final double[] moduleVectors;
+
+    /**
+     * Build a kinematics engine from a set of module positions.
+     * 
+     * @param modulePositions The position of each module relative to the center
+     *                        of the chassis, in meters. This follows the WPILib
+     *                        convention, where positive X is towards the front of
+     *                        the robot and positive Y is towards the left.
+     * @throws IllegalArgumentException If no modules are given, a position is
+     *                                  missing, or every module is at the center.
+     */
+    public SwerveKinematics(Map<SwerveModule, Translation2d> modulePositions) {
+        if (modulePositions == null || modulePositions.isEmpty()) {
+            throw new IllegalArgumentException("At least one module position is required.");
+        }
+        int count = modulePositions.size();
+        modules = new SwerveModule[count];
+        moduleIndex = new int[SwerveModule.length];
+        double[] x = new double[count];
+        double[] y = new double[count];
+
+        /* Iterate in enumeration order so the layout doesn't depend on the map type. */
+        int index = 0;
+        for (int i = 0; i < moduleIndex.length; i++) {
+            moduleIndex[i] = -1;
+        }
+        for (SwerveModule module : SwerveModule.values()) {
+            if (modulePositions.containsKey(module)) {
+                Translation2d position = modulePositions.get(module);
+                if (position == null) {
+                    throw new IllegalArgumentException("No position provided for module: " + module);
+                }
+                modules[index] = module;
+                moduleIndex[module.ordinal()] = index;
+                x[index] = position.getX();
+                y[index] = position.getY();
+                index++;
+            }
+        }
+
+        double radius = 0;
+        for (int i = 0; i < count; i++) {
+            radius = Math.max(radius, sqrt((x[i] * x[i]) + (y[i] * y[i])));
+        }
+        if (radius == 0) {
+            throw new IllegalArgumentException("At least one module must be offset from the center of the chassis.");
+        }
+
+        inverse = new double[count * 6];
+        for (int i = 0; i < count; i++) {
+            /* Strafe (right) component: str + rcw * (forward offset / radius) */
+            inverse[(i * 6)] = 0;
+            inverse[(i * 6) + 1] = 1;
+            inverse[(i * 6) + 2] = x[i] / radius;
+            /* Forward component: fwd + rcw * (left offset / radius) */
+            inverse[(i * 6) + 3] = 1;
+            inverse[(i * 6) + 4] = 0;
+            inverse[(i * 6) + 5] = y[i] / radius;
+        }
+        moduleVectors = new double[count * 2];
+        forward = pseudoInverse(inverse, count * 2);
+        this.radius = radius;
+    }
+
+    /**
+     * Compute the pseudo-inverse of a matrix with three columns, that is,
+     * (A<sup>T</sup>A)<sup>-1</sup>A<sup>T</sup>.
+     * 
+     * @param a    The matrix, stored row-major.
+     * @param rows The number of rows in the matrix.
+     * @return The pseudo-inverse, stored row-major with three rows.
+     * @throws IllegalArgumentException If the matrix is singular, which means
+     *                                  the chassis motion can't be recovered.
+     */
+    private static double[] pseudoInverse(double[] a, int rows) {
+        /* AtA is a symmetric 3x3 matrix. */
+        double[] ata = new double[9];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    ata[(i * 3) + j] += a[(r * 3) + i] * a[(r * 3) + j];
+                }
+            }
+        }
+        /* Invert it using cofactors. */
+        double c00 = (ata[4] * ata[8]) - (ata[5] * ata[7]);
+        double c01 = (ata[5] * ata[6]) - (ata[3] * ata[8]);
+        double c02 = (ata[3] * ata[7]) - (ata[4] * ata[6]);
+        double det = (ata[0] * c00) + (ata[1] * c01) + (ata[2] * c02);
+        if (Math.abs(det) < 1e-12) {
+            throw new IllegalArgumentException("Module layout cannot resolve chassis motion.");
+        }
+        double[] inv = {
+            c00 / det, ((ata[2] * ata[7]) - (ata[1] * ata[8])) / det, ((ata[1] * ata[5]) - (ata[2] * ata[4])) / det,
+            c01 / det, ((ata[0] * ata[8]) - (ata[2] * ata[6])) / det, ((ata[2] * ata[3]) - (ata[0] * ata[5])) / det,
+            c02 / det, ((ata[1] * ata[6]) - (ata[0] * ata[7])) / det, ((ata[0] * ata[4]) - (ata[1] * ata[3])) / det
+        };
+        /* Multiply by At. */
+        double[] result = new double[3 * rows];
+        for (int i = 0; i < 3; i++) {
+            for (int r = 0; r < rows; r++) {
+                double sum = 0;
+                for (int k = 0; k < 3; k++) {
+                    sum += inv[(i * 3) + k] * a[(r * 3) + k];
+                }
+                result[(i * rows) + r] = sum;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Build a kinematics engine for a four-module chassis with a module in each
+     * corner.
+     * 
+     * @param chassisDimension The dimensions of the chassis, measured from the
+     *                         center of each module.
+     * @return A kinematics engine for the front left, front right, rear left, and
+     *         rear right modules.
+     */
+    public static SwerveKinematics fromChassisDimension(ChassisDimension chassisDimension) {
+        double halfLength = chassisDimension.getLength().get(Unit.METERS) / 2;
+        double halfWidth = chassisDimension.getWidth().get(Unit.METERS) / 2;
+        var positions = new EnumMap<SwerveModule, Translation2d>(SwerveModule.class);
+        positions.put(SwerveModule.FRONT_LEFT, new Translation2d(halfLength, halfWidth));
+        positions.put(SwerveModule.FRONT_RIGHT, new Translation2d(halfLength, -halfWidth));
+        positions.put(SwerveModule.REAR_LEFT, new Translation2d(-halfLength, halfWidth));
+        positions.put(SwerveModule.REAR_RIGHT, new Translation2d(-halfLength, -halfWidth));
+        return new SwerveKinematics(positions);
+    }
+
+    /**
+     * Get the modules this engine solves for.
+     * 
+     * @return The modules, in the order that results are written by
+     *         {@link #solve}. Do not modify this array.
+     */
+    public SwerveModule[] getModules() {
+        return modules;
+    }
+
+    /**
+     * Get the number of modules this engine solves for.
+     * 
+     * @return The module count.
+     */
+    public int getModuleCount() {
+        return modules.length;
+    }
+
+    /**
+     * Get the distance of the furthest module from the center of the chassis. A
+     * rotation value of 1 corresponds to this module moving at full speed, so
+     * dividing a rotation value by this radius converts it to radians.
+     * 
+     * @return The radius, in meters.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Get the index that a module's results are written at.
+     * 
+     * @param module The module to look up.
+     * @return The index of the module, or -1 if this engine doesn't know about it.
+     */
+    public int indexOf(SwerveModule module) {
+        return moduleIndex[module.ordinal()];
+    }
+
+    /**
+     * Solve the speeds and angles of all the modules at once. This doesn't
+     * allocate, but it does use internal scratch space, so it should only be
+     * called from one thread at a time.
+     * 
+     * @param fwd       The Y degree (from an input device)
+     * @param str       The X degree (from an input device)
+     * @param rcw       The Z degree (from an input device)
+     * @param gyroAngle The gyro angle (in degrees) measured from the zero position
+     *                  (straight down field), or zero for robot-centric drive.
+     * @param speeds    The array to write the wheel speeds (scaled 0 to 1) into.
+     * @param angles    The array to write the wheel angles (in degrees) into.
+     */
+    public void solve(double fwd, double str, double rcw, double gyroAngle, double[] speeds, double[] angles) {
+        double modFwd = fwd;
+        double modStr = str;
+        if (gyroAngle != 0) {
+            double cosAngle = cos(toRadians(gyroAngle));
+            double sinAngle = sin(toRadians(gyroAngle));
+            modFwd = (fwd * cosAngle) + (str * sinAngle);
+            modStr = (-fwd * sinAngle) + (str * cosAngle);
+        }
+
+        /* One matrix-vector product for every module. */
+        for (int row = 0, m = 0; row < moduleVectors.length; row++, m += 3) {
+            moduleVectors[row] = (inverse[m] * modFwd) + (inverse[m + 1] * modStr) + (inverse[m + 2] * rcw);
+        }
+
+        for (int i = 0; i < modules.length; i++) {
+            double strSide = moduleVectors[i * 2];
+            double fwdSide = moduleVectors[(i * 2) + 1];
+            double wheelSpeed = sqrt((strSide * strSide) + (fwdSide * fwdSide));
+            speeds[i] = (wheelSpeed > 1f) ? 1f : wheelSpeed;
+            angles[i] = toDegrees(atan2(strSide, fwdSide));
+        }
+    }
+
+    /**
+     * Get the wheel angle for a single module. This is a robot-centric
+     * calculation.
+     * 
+     * @param index The index of the module, as given by {@link #indexOf}.
+     * @param fwd   The Y degree (from an input device)
+     * @param str   The X degree (from an input device)
+     * @param rcw   The Z degree (from an input device)
+     * @return The angle (in degrees) that the given wheel should be set to.
+     */
+    public double getWheelAngle(int index, double fwd, double str, double rcw) {
+        return toDegrees(atan2(getStrSide(index, fwd, str, rcw), getFwdSide(index, fwd, str, rcw)));
+    }
+
+    /**
+     * Get the wheel speed for a single module.
+     * 
+     * @param index The index of the module, as given by {@link #indexOf}.
+     * @param fwd   The Y degree (from an input device)
+     * @param str   The X degree (from an input device)
+     * @param rcw   The Z degree (from an input device)
+     * @return The speed (scaled 0 to 1) that the given wheel should be set to.
+     */
+    public double getWheelSpeed(int index, double fwd, double str, double rcw) {
+        double strSide = getStrSide(index, fwd, str, rcw);
+        double fwdSide = getFwdSide(index, fwd, str, rcw);
+        double wheelSpeed = sqrt((strSide * strSide) + (fwdSide * fwdSide));
+        return (wheelSpeed > 1f) ? 1f : wheelSpeed;
+    }
+
+    private double getStrSide(int index, double fwd, double str, double rcw) {
+        int m = index * 6;
+        return (inverse[m] * fwd) + (inverse[m + 1] * str) + (inverse[m + 2] * rcw);
+    }
+
+    private double getFwdSide(int index, double fwd, double str, double rcw) {
+        int m = (index * 6) + 3;
+        return (inverse[m] * fwd) + (inverse[m + 1] * str) + (inverse[m + 2] * rcw);
+    }
+
+    /**
+     * Find the chassis motion that best explains the motion of the modules. This
+     * is the least-squares solution when there are more than two modules, so
+     * disagreements between modules (like a slipping wheel) are averaged out.
+     * This doesn't allocate.
+     * 
+     * @param moduleVectors The motion of each module, two entries per module in
+     *                      the order of {@link #getModules()}: first the strafe
+     *                      (right) component, then the forward component. This
+     *                      can be a velocity or a distance.
+     * @param out           An array of at least three elements to write the
+     *                      robot-centric chassis motion into: forward, strafe,
+     *                      and rotation. The forward and strafe components are in
+     *                      the same units as the module vectors. The rotation is
+     *                      the clockwise motion of the furthest module, so divide
+     *                      it by {@link #getRadius()} to get radians.
+     */
+    public void toChassisMotion(double[] moduleVectors, double[] out) {
+        int columns = modules.length * 2;
+        for (int row = 0; row < 3; row++) {
+            double sum = 0;
+            for (int c = 0, m = row * columns; c < columns; c++, m++) {
+                sum += forward[m] * moduleVectors[c];
+            }
+            out[row] = sum;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package net.bancino.robotics.swerveio.kinematics;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+import edu.wpi.first.wpilibj.Notifier;
+import net.bancino.robotics.swerveio.SnapshotBuffer;
+import net.bancino.robotics.swerveio.SwerveDrive;
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.gyro.AbstractGyro;
+import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * Estimates the position of a swerve drive on the field by integrating how far
+ * each module's wheel has rolled and which way it was pointing, using the
+ * least-squares forward kinematics of the drive's kinematics engine. If the
+ * swerve drive has a gyro, it is used for the heading; otherwise, the heading
+ * is integrated from the modules as well.
+ * <p>
+ * Odometry can either be updated manually by calling {@link #update()}, or it
+ * can run on its own thread at a fixed rate with {@link #start(double)}. Either
+ * way, the pose is published as a lock-free snapshot, so it can be read from
+ * any thread at any time. Updating doesn't allocate.
+ * <p>
+ * The pose uses the same conventions as the rest of SwerveIO: X is forward
+ * (down field), Y is to the right, and the heading is in degrees, clockwise.
+ * Distances are in meters.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SwerveOdometry {
+
+    /** The fastest rate, in hertz, that odometry will run at on its own thread. */
+    public static final double MAX_RATE = 200;
+
+    /** The index of the X position in a pose snapshot. */
+    public static final int X = 0;
+    /** The index of the Y position in a pose snapshot. */
+    public static final int Y = 1;
+    /** The index of the heading in a pose snapshot. */
+    public static final int HEADING = 2;
+    /** The index of the field-centric X velocity in a pose snapshot. */
+    public static final int VELOCITY_X = 3;
+    /** The index of the field-centric Y velocity in a pose snapshot. */
+    public static final int VELOCITY_Y = 4;
+    /** The index of the angular velocity, in degrees per second, in a pose snapshot. */
+    public static final int ANGULAR_VELOCITY = 5;
+    /** The index of the time the snapshot was taken, in seconds. */
+    public static final int TIMESTAMP = 6;
+    /** The number of values in a pose snapshot. */
+    public static final int SNAPSHOT_SIZE = 7;
+
+    private final SwerveKinematics kinematics;
+    private final AbstractSwerveModule[] modules;
+    private final AbstractGyro gyro;
+    private final double countsPerPivotRevolution;
+    private final double[] metersPerCount;
+
+    /* State owned by the updating thread. */
+    private final double[] lastDrivePosition;
+    private final double[] moduleVectors;
+    private final double[] chassisMotion = new double[3];
+    private double x, y, heading, headingOffset;
+    private long lastTime;
+    private boolean initialized = false;
+
+    private final SnapshotBuffer pose = new SnapshotBuffer(SNAPSHOT_SIZE);
+
+    /* A pose to reset to, posted by any thread and applied by the updating thread. */
+    private volatile double[] pendingReset = null;
+
+    private Notifier notifier;
+
+    /**
+     * Create odometry for a swerve drive.
+     * 
+     * @param swerve                   The swerve drive to track.
+     * @param countsPerDriveRevolution The number of drive encoder counts in one
+     *                                 revolution of the drive motor (the input
+     *                                 shaft, before the gear ratio). For a Spark
+     *                                 Max's internal encoder, this is 1.
+     */
+    public SwerveOdometry(SwerveDrive swerve, double countsPerDriveRevolution) {
+        if (swerve == null) {
+            throw new IllegalArgumentException("Swerve drive cannot be null.");
+        }
+        if (countsPerDriveRevolution <= 0) {
+            throw new IllegalArgumentException("Counts per drive revolution must be greater than 0.");
+        }
+        kinematics = swerve.getCalculator().getKinematics();
+        gyro = swerve.getGyro();
+        countsPerPivotRevolution = swerve.getCountsPerPivotRevolution();
+
+        SwerveModule[] moduleKeys = kinematics.getModules();
+        modules = new AbstractSwerveModule[moduleKeys.length];
+        metersPerCount = new double[moduleKeys.length];
+        for (int i = 0; i < moduleKeys.length; i++) {
+            modules[i] = swerve.getModuleMap().get(moduleKeys[i]);
+            double wheelCircumference = modules[i].getWheelDiameter().get(Unit.METERS) * Math.PI;
+            metersPerCount[i] = wheelCircumference / (modules[i].getGearRatio() * countsPerDriveRevolution);
+        }
+        lastDrivePosition = new double[moduleKeys.length];
+        moduleVectors = new double[moduleKeys.length * 2];
+    }
+
+    /**
+     * Start updating odometry on its own thread.
+     * 
+     * @param rate The rate, in hertz, to update at. This is capped at
+     *             {@link #MAX_RATE}.
+     */
+    public synchronized void start(double rate) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Odometry rate must be greater than 0.");
+        }
+        if (notifier == null) {
+            notifier = new Notifier(this::update);
+        }
+        notifier.startPeriodic(1.0 / Math.min(rate, MAX_RATE));
+    }
+
+    /**
+     * Stop updating odometry on its own thread. The last pose remains available.
+     */
+    public synchronized void stop() {
+        if (notifier != null) {
+            notifier.stop();
+        }
+    }
+
+    /**
+     * Reset the pose. This is safe to call from any thread; the reset takes
+     * effect on the next update.
+     * 
+     * @param x       The new X position, in meters.
+     * @param y       The new Y position, in meters.
+     * @param heading The new heading, in degrees. If there is a gyro, the gyro
+     *                itself is not touched; an offset is applied instead.
+     */
+    public void reset(double x, double y, double heading) {
+        pendingReset = new double[] { x, y, heading };
+    }
+
+    /**
+     * Read the sensors and integrate the pose. This must only be called from one
+     * thread, and should not be called manually if odometry was started with
+     * {@link #start(double)}.
+     */
+    public void update() {
+        long time = System.nanoTime();
+        double gyroAngle = (gyro != null) ? gyro.getAngle() : 0;
+
+        double[] reset = pendingReset;
+        if (reset != null) {
+            pendingReset = null;
+            x = reset[0];
+            y = reset[1];
+            heading = reset[2];
+            headingOffset = heading - gyroAngle;
+        }
+
+        if (!initialized) {
+            for (int i = 0; i < modules.length; i++) {
+                lastDrivePosition[i] = modules[i].getDriveMotorEncoder();
+            }
+            headingOffset = heading - gyroAngle;
+            lastTime = time;
+            initialized = true;
+            publish(0, 0, 0, time);
+            return;
+        }
+
+        /* How far, and in which direction, has each wheel rolled? */
+        for (int i = 0; i < modules.length; i++) {
+            double position = modules[i].getDriveMotorEncoder();
+            double distance = (position - lastDrivePosition[i]) * metersPerCount[i];
+            lastDrivePosition[i] = position;
+            double angle = toRadians(
+                    SwerveIOUtils.convertToDegrees(modules[i].getPivotMotorEncoder(), countsPerPivotRevolution));
+            moduleVectors[i * 2] = distance * sin(angle);
+            moduleVectors[(i * 2) + 1] = distance * cos(angle);
+        }
+        kinematics.toChassisMotion(moduleVectors, chassisMotion);
+
+        double lastHeading = heading;
+        if (gyro != null) {
+            heading = gyroAngle + headingOffset;
+        } else {
+            heading += toDegrees(chassisMotion[2] / kinematics.getRadius());
+        }
+        double deltaHeading = SwerveIOUtils.wrapAngle180(heading - lastHeading);
+        heading = SwerveIOUtils.wrapAngle360(heading);
+
+        /* Rotate the robot-centric motion onto the field using the average heading. */
+        double midHeading = toRadians(lastHeading + (deltaHeading / 2));
+        double cosHeading = cos(midHeading);
+        double sinHeading = sin(midHeading);
+        double deltaX = (chassisMotion[0] * cosHeading) - (chassisMotion[1] * sinHeading);
+        double deltaY = (chassisMotion[0] * sinHeading) + (chassisMotion[1] * cosHeading);
+        x += deltaX;
+        y += deltaY;
+
+        double dt = (time - lastTime) / 1e9;
+        lastTime = time;
+        if (dt > 0) {
+            publish(deltaX / dt, deltaY / dt, deltaHeading / dt, time);
+        } else {
+            publish(0, 0, 0, time);
+        }
+    }
+
+    private void publish(double velocityX, double velocityY, double angularVelocity, long time) {
+        pose.beginWrite();
+        pose.set(X, x);
+        pose.set(Y, y);
+        pose.set(HEADING, heading);
+        pose.set(VELOCITY_X, velocityX);
+        pose.set(VELOCITY_Y, velocityY);
+        pose.set(ANGULAR_VELOCITY, angularVelocity);
+        pose.set(TIMESTAMP, time / 1e9);
+        pose.endWrite();
+    }
+
+    /**
+     * Copy the latest pose. The values are all consistent with each other, and
+     * are indexed by the constants in this class.
+     * 
+     * @param out An array of at least {@link #SNAPSHOT_SIZE} elements.
+     * @return The number of updates that have been published.
+     */
+    public long getPose(double[] out) {
+        return pose.read(out);
+    }
+
+    /**
+     * @return The latest X position, in meters.
+     */
+    public double getX() {
+        return pose.get(X);
+    }
+
+    /**
+     * @return The latest Y position, in meters.
+     */
+    public double getY() {
+        return pose.get(Y);
+    }
+
+    /**
+     * @return The latest heading, in degrees from 0 to 360.
+     */
+    public double getHeading() {
+        return pose.get(HEADING);
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Swerve drive kinematics that work with any number of modules.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+package net.bancino.robotics.swerveio.kinematics;
@@ -1,8 +1,10 @@
 package net.bancino.robotics.swerveio.log;
 
-import java.util.Map;
+import java.util.Arrays;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
 import net.bancino.robotics.swerveio.SwerveDrive;
 import net.bancino.robotics.swerveio.SwerveModule;
 import net.bancino.robotics.swerveio.SwerveVector;
@@ -12,14 +14,58 @@ import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
  * A SmartDashboard logging class designed for cleanly logging swerve drive
  * variables to the dashboard. This can be used for viewing variables in real
  * time.
+ * <p>
+ * The NetworkTable entries are looked up once, the first time the state is
+ * logged, and a value is only published when it has moved by more than the
+ * epsilon of its field since it was last published. The calculated wheel angles
+ * are taken from the angles the swerve drive already calculated in its last
+ * cycle. All the changes from one call are flushed to the NetworkTables
+ * together.
  * 
  * @author Jordan Bancino
- * @version 1.2.2
+ * @version 2.1.0
  * @since 1.2.2
  */
 public class DashboardSwerveLogger implements SwerveLogger {
 
+    /**
+     * The groups of values this logger publishes, each with its own epsilon.
+     */
+    public enum Field {
+        /** The fwd, str, and rcw of the last swerve vector. */
+        JOYSTICK(1e-3),
+        /** The gyro yaw, in degrees. */
+        GYRO(0.1),
+        /** The pivot motor speed. */
+        PIVOT_SPEED(1e-3),
+        /** The pivot encoder reading. */
+        PIVOT_ENCODER(0.1),
+        /** The calculated wheel angle, and its difference from the encoder. */
+        PIVOT_ANGLE(0.1),
+        /** The drive motor speed. */
+        DRIVE_SPEED(1e-3),
+        /** The drive encoder reading. */
+        DRIVE_ENCODER(0.01);
+
+        private final double defaultEpsilon;
+
+        private Field(double defaultEpsilon) {
+            this.defaultEpsilon = defaultEpsilon;
+        }
+    }
+
+    private static final int JOYSTICK_ENTRIES = 3;
+    private static final int MODULE_ENTRIES = 6;
+
     private String tableName;
+    private final double[] fieldEpsilon = new double[Field.values().length];
+
+    /* Resolved on the first call to logState(), once the drive is known. */
+    private NetworkTableEntry[] entries;
+    private double[] lastValues;
+    private double[] epsilons;
+    private AbstractSwerveModule[] modules;
+    private double[] state;
 
     /**
      * Construct a dashboard logger using the default table name.
@@ -35,38 +81,117 @@ public class DashboardSwerveLogger implements SwerveLogger {
      */
     public DashboardSwerveLogger(String tableName) {
         this.tableName = tableName;
+        for (Field field : Field.values()) {
+            fieldEpsilon[field.ordinal()] = field.defaultEpsilon;
+        }
+    }
+
+    /**
+     * Set how far a value must move before it is published again. This must be
+     * set before the first call to {@link #logState(SwerveDrive)}.
+     * 
+     * @param field   The group of values to set the epsilon for.
+     * @param epsilon The smallest change that will be published. Zero publishes
+     *                every change.
+     */
+    public void setEpsilon(Field field, double epsilon) {
+        if (epsilon < 0) {
+            throw new IllegalArgumentException("Epsilon must not be negative.");
+        }
+        if (entries != null) {
+            throw new IllegalStateException("Cannot change an epsilon after logging has started.");
+        }
+        fieldEpsilon[field.ordinal()] = epsilon;
     }
 
     @Override
     public void logState(SwerveDrive drive) {
-        SwerveVector latestInput = drive.getLastSwerveVector();
-        String joystick = tableName + "/Joystick/";
-        SmartDashboard.putNumber(joystick + "Fwd (Y)", latestInput.getFwd());
-        SmartDashboard.putNumber(joystick + "Str (X)", latestInput.getStr());
-        SmartDashboard.putNumber(joystick + "Rcw (Z)", latestInput.getRcw());
+        if (entries == null) {
+            resolve(drive);
+        }
+        drive.getState(state);
+        boolean changed = false;
 
-        SmartDashboard.putNumber(tableName + "/Gyro/Yaw", drive.getLastGyroAngle());
+        SwerveVector latestInput = drive.getLastSwerveVector();
+        changed |= publish(0, latestInput.getFwd());
+        changed |= publish(1, latestInput.getStr());
+        changed |= publish(2, latestInput.getRcw());
+        changed |= publish(JOYSTICK_ENTRIES, drive.getLastGyroAngle());
 
-        Map<SwerveModule, AbstractSwerveModule> moduleMap = drive.getModuleMap();
-        for (SwerveModule key : moduleMap.keySet()) {
-            AbstractSwerveModule module = moduleMap.get(key);
-            String entry = tableName + "/Drivetrain/" + key + "/";
-            SmartDashboard.putNumber(entry + "Pivot/Speed", module.getPivotMotorSpeed());
+        int e = JOYSTICK_ENTRIES + 1;
+        for (int i = 0; i < modules.length; i++) {
+            AbstractSwerveModule module = modules[i];
             double pivotEncoder = module.getPivotMotorEncoder();
-            SmartDashboard.putNumber(entry + "Pivot/Encoder", pivotEncoder);
-            double calculatedAngle = drive.getCalculator().getWheelAngle(key, latestInput.getFwd(),
-                    latestInput.getStr(), latestInput.getRcw(), drive.getLastGyroAngle());
-            SmartDashboard.putNumber(entry + "Pivot/Calculated Angle (CW)", calculatedAngle);
-            SmartDashboard.putNumber(entry + "Pivot/Difference", calculatedAngle - pivotEncoder);
+            double calculatedAngle = state[SwerveDrive.STATE_MODULES + (2 * i) + 1];
+            changed |= publish(e++, module.getPivotMotorSpeed());
+            changed |= publish(e++, pivotEncoder);
+            changed |= publish(e++, calculatedAngle);
+            changed |= publish(e++, calculatedAngle - pivotEncoder);
+            changed |= publish(e++, module.getDriveMotorSpeed());
+            changed |= publish(e++, module.getDriveMotorEncoder());
+        }
+
+        if (changed) {
+            NetworkTableInstance.getDefault().flush();
+        }
+    }
+
+    /**
+     * Publish a value if it has moved far enough since it was last published.
+     */
+    private boolean publish(int entry, double value) {
+        double last = lastValues[entry];
+        if (Double.isNaN(last) || Math.abs(value - last) > epsilons[entry]) {
+            entries[entry].setDouble(value);
+            lastValues[entry] = value;
+            return true;
+        }
+        return false;
+    }
 
-            SmartDashboard.putNumber(entry + "Drive/Speed", module.getDriveMotorSpeed());
-            SmartDashboard.putNumber(entry + "Drive/Encoder", module.getDriveMotorEncoder());
+    /**
+     * Look up all the entries for the given drive. The keys are the same ones
+     * that would be used with the SmartDashboard.
+     */
+    private void resolve(SwerveDrive drive) {
+        SwerveModule[] keys = drive.getModules();
+        modules = new AbstractSwerveModule[keys.length];
+        state = new double[drive.getStateSize()];
 
+        int count = JOYSTICK_ENTRIES + 1 + (keys.length * MODULE_ENTRIES);
+        NetworkTableEntry[] entries = new NetworkTableEntry[count];
+        epsilons = new double[count];
+        lastValues = new double[count];
+        Arrays.fill(lastValues, Double.NaN);
+
+        NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+        String joystick = tableName + "/Joystick/";
+        int e = 0;
+        e = add(entries, e, table.getEntry(joystick + "Fwd (Y)"), Field.JOYSTICK);
+        e = add(entries, e, table.getEntry(joystick + "Str (X)"), Field.JOYSTICK);
+        e = add(entries, e, table.getEntry(joystick + "Rcw (Z)"), Field.JOYSTICK);
+        e = add(entries, e, table.getEntry(tableName + "/Gyro/Yaw"), Field.GYRO);
+        for (int i = 0; i < keys.length; i++) {
+            modules[i] = drive.getModuleMap().get(keys[i]);
+            String entry = tableName + "/Drivetrain/" + keys[i] + "/";
+            e = add(entries, e, table.getEntry(entry + "Pivot/Speed"), Field.PIVOT_SPEED);
+            e = add(entries, e, table.getEntry(entry + "Pivot/Encoder"), Field.PIVOT_ENCODER);
+            e = add(entries, e, table.getEntry(entry + "Pivot/Calculated Angle (CW)"), Field.PIVOT_ANGLE);
+            e = add(entries, e, table.getEntry(entry + "Pivot/Difference"), Field.PIVOT_ANGLE);
+            e = add(entries, e, table.getEntry(entry + "Drive/Speed"), Field.DRIVE_SPEED);
+            e = add(entries, e, table.getEntry(entry + "Drive/Encoder"), Field.DRIVE_ENCODER);
         }
+        this.entries = entries;
+    }
+
+    private int add(NetworkTableEntry[] entries, int index, NetworkTableEntry entry, Field field) {
+        entries[index] = entry;
+        epsilons[index] = fieldEpsilon[field.ordinal()];
+        return index + 1;
     }
 
     @Override
     public boolean requiresEnabledDriverStation() {
         return false;
     }
-}
\ No newline at end of file
+}
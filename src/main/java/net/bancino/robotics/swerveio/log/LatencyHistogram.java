@@ -0,0 +1,155 @@
+package net.bancino.robotics.swerveio.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations, in nanoseconds, with logarithmic buckets. Each
+ * power of two is split into 16 linear buckets, so any value is reported to
+ * within about 6% of what was recorded, from one nanosecond up to about 18
+ * minutes. All the buckets are allocated up front, and recording a value is a
+ * handful of atomic operations with no locks or allocation, so a histogram can
+ * stay on in a control loop while another thread reads it.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a duration.
+     * 
+     * @param nanos The duration, in nanoseconds. Negative durations are recorded
+     *              as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long currentMax = max.get();
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Get the value at a percentile of the recorded durations.
+     * 
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket that the percentile falls in, in
+     *         nanoseconds, or zero if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil((percentile / 100) * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Get the median of the recorded durations.
+     * 
+     * @return The 50th percentile, in nanoseconds.
+     */
+    public long getP50() {
+        return getPercentile(50);
+    }
+
+    /**
+     * Get the 99th percentile of the recorded durations.
+     * 
+     * @return The 99th percentile, in nanoseconds.
+     */
+    public long getP99() {
+        return getPercentile(99);
+    }
+
+    /**
+     * Get the longest recorded duration. This is exact.
+     * 
+     * @return The maximum, in nanoseconds.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean of the recorded durations. This is exact.
+     * 
+     * @return The mean, in nanoseconds, or zero if nothing has been recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Get the number of recorded durations.
+     * 
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Clear all the recorded durations. If this races with
+     * {@link #record(long)}, a value may be partially counted.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /* Values below 32 map straight to their bucket; above that, 16 buckets per power of two. */
+    private static int indexOf(long value) {
+        if (value < (SUB_BUCKETS << 1)) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BUCKET_BITS;
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < (SUB_BUCKETS << 1)) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long lower = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,138 @@
+package net.bancino.robotics.swerveio.log;
+
+/**
+ * How often a swerve logger runs. Each logger registered with a swerve drive
+ * has its own policy, so a heavy logger can run slowly while a light one runs
+ * every cycle.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public final class LogPolicy {
+
+    /**
+     * The kinds of logging policy.
+     */
+    public enum Kind {
+        /** Log on every scheduler cycle. */
+        EVERY_CYCLE,
+        /** Log on every Nth scheduler cycle. */
+        EVERY_NTH_CYCLE,
+        /** Log at most once per period of time. */
+        PERIOD,
+        /** Log only when the swerve drive's state has changed. */
+        ON_CHANGE
+    }
+
+    private static final LogPolicy EVERY_CYCLE = new LogPolicy(Kind.EVERY_CYCLE, 1, 0);
+    private static final LogPolicy ON_CHANGE = new LogPolicy(Kind.ON_CHANGE, 1, 0);
+
+    private final Kind kind;
+    private final int cycles;
+    private final long periodNanos;
+
+    private LogPolicy(Kind kind, int cycles, long periodNanos) {
+        this.kind = kind;
+        this.cycles = cycles;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * Log on every scheduler cycle.
+     * 
+     * @return The policy.
+     */
+    public static LogPolicy everyCycle() {
+        return EVERY_CYCLE;
+    }
+
+    /**
+     * Log on every Nth scheduler cycle. Loggers with the same N are spread across
+     * different cycles.
+     * 
+     * @param n The number of cycles between logs.
+     * @return The policy.
+     */
+    public static LogPolicy everyNthCycle(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("N must be at least 1.");
+        }
+        return (n == 1) ? EVERY_CYCLE : new LogPolicy(Kind.EVERY_NTH_CYCLE, n, 0);
+    }
+
+    /**
+     * Log at most once per period, measured on a monotonic clock.
+     * 
+     * @param seconds The period, in seconds.
+     * @return The policy.
+     */
+    public static LogPolicy period(double seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Period must be greater than 0.");
+        }
+        return new LogPolicy(Kind.PERIOD, 1, (long) (seconds * 1e9));
+    }
+
+    /**
+     * Log at a rate.
+     * 
+     * @param hertz The rate, in hertz.
+     * @return The policy.
+     */
+    public static LogPolicy rate(double hertz) {
+        if (hertz <= 0) {
+            throw new IllegalArgumentException("Rate must be greater than 0.");
+        }
+        return period(1 / hertz);
+    }
+
+    /**
+     * Log only when the swerve vector, gyro angle, or module targets the drive
+     * last drove with have changed since this logger last ran.
+     * 
+     * @return The policy.
+     */
+    public static LogPolicy onChange() {
+        return ON_CHANGE;
+    }
+
+    /**
+     * Get the kind of this policy.
+     * 
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the number of cycles between logs.
+     * 
+     * @return N for {@link Kind#EVERY_NTH_CYCLE}, otherwise 1.
+     */
+    public int getCycles() {
+        return cycles;
+    }
+
+    /**
+     * Get the period between logs.
+     * 
+     * @return The period in nanoseconds for {@link Kind#PERIOD}, otherwise 0.
+     */
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+        case EVERY_NTH_CYCLE:
+            return "Every " + cycles + " cycles";
+        case PERIOD:
+            return "Every " + (periodNanos / 1e9) + " s";
+        default:
+            return kind.toString();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package net.bancino.robotics.swerveio.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.networktables.NetworkTableInstance;
+
+/**
+ * Timing telemetry for a periodic loop. Each cycle is split into named stages,
+ * and the duration of every stage, the whole cycle, and the jitter between the
+ * starts of consecutive cycles are recorded into {@link LatencyHistogram}s.
+ * Cycles that take longer than the loop period are counted as overruns.
+ * <p>
+ * A cycle is profiled by calling {@link #beginCycle()}, then
+ * {@link #mark(int)} at the end of each stage, then {@link #endCycle()}. These
+ * should all be called from the loop's own thread; the results can be read or
+ * published from any thread.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class LoopProfiler {
+
+    /* A gap of more than this many periods means the loop was paused, not late. */
+    private static final int MAX_JITTER_PERIODS = 10;
+
+    private final String name;
+    private final String[] stageNames;
+    private final LatencyHistogram[] stages;
+    private final LatencyHistogram cycle = new LatencyHistogram();
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private final AtomicLong overruns = new AtomicLong();
+
+    private volatile long periodNanos;
+
+    /* Used only by the loop thread. */
+    private long cycleStart;
+    private long lastMark;
+    private long lastCycleStart = -1;
+
+    /* Resolved on the first publish. */
+    private NetworkTableEntry[] entries;
+
+    /**
+     * Create a loop profiler.
+     * 
+     * @param name       The name of the loop, used when publishing.
+     * @param period     The period the loop is supposed to run at, in seconds.
+     * @param stageNames The names of the stages in a cycle, in order.
+     */
+    public LoopProfiler(String name, double period, String... stageNames) {
+        if (name == null || stageNames == null) {
+            throw new IllegalArgumentException("Profiler name and stages cannot be null.");
+        }
+        this.name = name;
+        this.stageNames = stageNames.clone();
+        stages = new LatencyHistogram[stageNames.length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+        setPeriod(period);
+    }
+
+    /**
+     * Set the period the loop is supposed to run at, for measuring jitter and
+     * overruns.
+     * 
+     * @param period The period, in seconds.
+     */
+    public void setPeriod(double period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Loop period must be greater than 0.");
+        }
+        periodNanos = (long) (period * 1e9);
+        lastCycleStart = -1;
+    }
+
+    /**
+     * Start timing a cycle.
+     */
+    public void beginCycle() {
+        long now = System.nanoTime();
+        if (lastCycleStart >= 0) {
+            long period = periodNanos;
+            long elapsed = now - lastCycleStart;
+            if (elapsed <= period * MAX_JITTER_PERIODS) {
+                jitter.record(Math.abs(elapsed - period));
+            }
+        }
+        lastCycleStart = now;
+        cycleStart = now;
+        lastMark = now;
+    }
+
+    /**
+     * Mark the end of a stage. The time since the last mark, or since the start
+     * of the cycle, is recorded against the stage.
+     * 
+     * @param stage The index of the stage that just finished.
+     */
+    public void mark(int stage) {
+        long now = System.nanoTime();
+        stages[stage].record(now - lastMark);
+        lastMark = now;
+    }
+
+    /**
+     * Finish timing a cycle.
+     */
+    public void endCycle() {
+        long duration = System.nanoTime() - cycleStart;
+        cycle.record(duration);
+        if (duration > periodNanos) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the name of this loop.
+     * 
+     * @return The name given at construction.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of stages in a cycle.
+     * 
+     * @return The stage count.
+     */
+    public int getStageCount() {
+        return stages.length;
+    }
+
+    /**
+     * Get the name of a stage.
+     * 
+     * @param stage The index of the stage.
+     * @return The name of the stage.
+     */
+    public String getStageName(int stage) {
+        return stageNames[stage];
+    }
+
+    /**
+     * Get the durations of a stage.
+     * 
+     * @param stage The index of the stage.
+     * @return The histogram of the stage's durations.
+     */
+    public LatencyHistogram getStage(int stage) {
+        return stages[stage];
+    }
+
+    /**
+     * Get the durations of whole cycles.
+     * 
+     * @return The histogram of cycle durations.
+     */
+    public LatencyHistogram getCycle() {
+        return cycle;
+    }
+
+    /**
+     * Get how far the start of each cycle was from when it should have started,
+     * based on the start of the cycle before it.
+     * 
+     * @return The histogram of jitter.
+     */
+    public LatencyHistogram getJitter() {
+        return jitter;
+    }
+
+    /**
+     * Get the number of cycles that took longer than the loop period.
+     * 
+     * @return The overrun count.
+     */
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    /**
+     * Clear all the recorded timing.
+     */
+    public void reset() {
+        for (LatencyHistogram stage : stages) {
+            stage.reset();
+        }
+        cycle.reset();
+        jitter.reset();
+        overruns.set(0);
+    }
+
+    /**
+     * Publish the p50, p99, and max of every stage, the cycle, and the jitter, in
+     * milliseconds, along with the overrun and cycle counts, to the
+     * NetworkTables. This walks every histogram, so it should only be called at a
+     * low rate, such as once a second.
+     * 
+     * @param tableName The table to publish under. The loop name is added as a
+     *                  sub-table.
+     */
+    public void publish(String tableName) {
+        if (entries == null) {
+            NetworkTable table = NetworkTableInstance.getDefault().getTable(tableName).getSubTable(name);
+            entries = new NetworkTableEntry[((stages.length + 2) * 3) + 2];
+            int e = 0;
+            for (int i = 0; i < stages.length + 2; i++) {
+                String key = (i < stages.length) ? stageNames[i] : (i == stages.length) ? "Cycle" : "Jitter";
+                entries[e++] = table.getEntry(key + "/P50 (ms)");
+                entries[e++] = table.getEntry(key + "/P99 (ms)");
+                entries[e++] = table.getEntry(key + "/Max (ms)");
+            }
+            entries[e++] = table.getEntry("Overruns");
+            entries[e] = table.getEntry("Cycles");
+        }
+        int e = 0;
+        for (int i = 0; i < stages.length + 2; i++) {
+            LatencyHistogram histogram = (i < stages.length) ? stages[i] : (i == stages.length) ? cycle : jitter;
+            entries[e++].setDouble(histogram.getP50() / 1e6);
+            entries[e++].setDouble(histogram.getP99() / 1e6);
+            entries[e++].setDouble(histogram.getMax() / 1e6);
+        }
+        entries[e++].setDouble(overruns.get());
+        entries[e].setDouble(cycle.getCount());
+    }
+}
@@ -0,0 +1,45 @@
+package net.bancino.robotics.swerveio.log;
+
+import net.bancino.robotics.swerveio.SwerveDrive;
+
+/**
+ * A logger that publishes the loop timing of a swerve drive to the
+ * NetworkTables. Each time it runs, the stage timings, jitter, and overruns
+ * recorded by the drive's {@link LoopProfiler}s are published, so this should
+ * be run at a low rate, such as once a second.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class ProfileSwerveLogger implements SwerveLogger {
+
+    private final String tableName;
+
+    /**
+     * Construct a profile logger using the default table name.
+     */
+    public ProfileSwerveLogger() {
+        this("SwerveIO/Profile");
+    }
+
+    /**
+     * Construct a profile logger using the given table name.
+     * 
+     * @param tableName The name of the table to publish loop timing to.
+     */
+    public ProfileSwerveLogger(String tableName) {
+        this.tableName = tableName;
+    }
+
+    @Override
+    public void logState(SwerveDrive drive) {
+        drive.getDriveProfiler().publish(tableName);
+        drive.getPeriodicProfiler().publish(tableName);
+    }
+
+    @Override
+    public boolean requiresEnabledDriverStation() {
+        return false;
+    }
+}
@@ -0,0 +1,279 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import net.bancino.robotics.swerveio.SwerveDrive;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.SwerveVector;
+import net.bancino.robotics.swerveio.log.SwerveLogger;
+import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
+
+/**
+ * A swerve logger that writes a compact binary log without doing any file I/O
+ * on the robot thread. Each call to {@link #logState(SwerveDrive)} copies
+ * the state of the drive into a preallocated, off-heap ring buffer, and a
+ * background thread drains the ring to the file in batches. If the writer falls
+ * behind, records are dropped and counted instead of stalling the robot, so
+ * this is cheap enough to run on every cycle.
+ * <p>
+ * The writer encodes each batch as a checksummed, columnar block, with
+ * delta-encoded microsecond timestamps and 32-bit float values; see
+ * {@link SwerveLogFormat}. Logs can be read back with {@link SwerveLogReader},
+ * or converted and queried on a desktop with {@link SwerveLogTool}.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class BinarySwerveLogger implements SwerveLogger, AutoCloseable {
+
+    /** The number of records the ring holds by default, about 20 seconds at 200 Hz. */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final int BATCH_SIZE = 64 * 1024;
+    private static final long WRITER_IDLE_NANOS = 5_000_000;
+
+    /* The columns logged for every module, after the chassis columns. */
+    private static final String[] MODULE_COLUMNS = { "Target Speed", "Target Angle", "Pivot Encoder", "Pivot Speed",
+            "Drive Encoder", "Drive Speed" };
+    private static final String[] CHASSIS_COLUMNS = { "Time", "Fwd", "Str", "Rcw", "Gyro" };
+
+    private final File file;
+    private final FileChannel channel;
+    private final int capacity;
+
+    /* Set up on the first call to logState(), once the drive is known. */
+    private RecordRingBuffer ring;
+    private AbstractSwerveModule[] modules;
+    private double[] state;
+    private String[] columns;
+    private long startNanos;
+    private Thread writer;
+
+    private volatile boolean running = false;
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    /**
+     * Create a new binary swerve logger with the default capacity.
+     * 
+     * @param file The file to write to. It is created if it doesn't exist, and
+     *             truncated if it does.
+     * @throws IOException If the file can't be opened.
+     */
+    public BinarySwerveLogger(File file) throws IOException {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a new binary swerve logger.
+     * 
+     * @param file     The file to write to. It is created if it doesn't exist, and
+     *                 truncated if it does.
+     * @param capacity The number of records to buffer before dropping them.
+     * @throws IOException If the file can't be opened.
+     */
+    public BinarySwerveLogger(File file, int capacity) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("No file specified.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than 0.");
+        }
+        this.file = file;
+        this.capacity = capacity;
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void logState(SwerveDrive drive) {
+        if (ring == null) {
+            open(drive);
+        }
+        int offset = ring.claim();
+        if (offset < 0) {
+            return;
+        }
+        drive.getState(state);
+        SwerveVector input = drive.getLastSwerveVector();
+        ring.putLong(offset, System.nanoTime());
+        offset += Long.BYTES;
+        ring.putDouble(offset, input.getFwd());
+        offset += Double.BYTES;
+        ring.putDouble(offset, input.getStr());
+        offset += Double.BYTES;
+        ring.putDouble(offset, input.getRcw());
+        offset += Double.BYTES;
+        ring.putDouble(offset, drive.getLastGyroAngle());
+        offset += Double.BYTES;
+        for (int i = 0; i < modules.length; i++) {
+            AbstractSwerveModule module = modules[i];
+            ring.putDouble(offset, state[SwerveDrive.STATE_MODULES + (2 * i)]);
+            offset += Double.BYTES;
+            ring.putDouble(offset, state[SwerveDrive.STATE_MODULES + (2 * i) + 1]);
+            offset += Double.BYTES;
+            ring.putDouble(offset, module.getPivotMotorEncoder());
+            offset += Double.BYTES;
+            ring.putDouble(offset, module.getPivotMotorSpeed());
+            offset += Double.BYTES;
+            ring.putDouble(offset, module.getDriveMotorEncoder());
+            offset += Double.BYTES;
+            ring.putDouble(offset, module.getDriveMotorSpeed());
+            offset += Double.BYTES;
+        }
+        ring.commit();
+    }
+
+    /**
+     * Lay out the records for the given drive, and start the writer thread.
+     * 
+     * @param drive The drive being logged.
+     */
+    private synchronized void open(SwerveDrive drive) {
+        SwerveModule[] keys = drive.getModules();
+        modules = new AbstractSwerveModule[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            modules[i] = drive.getModuleMap().get(keys[i]);
+        }
+        state = new double[drive.getStateSize()];
+
+        columns = new String[CHASSIS_COLUMNS.length + (keys.length * MODULE_COLUMNS.length)];
+        int c = 0;
+        for (String column : CHASSIS_COLUMNS) {
+            columns[c++] = column;
+        }
+        for (SwerveModule key : keys) {
+            for (String column : MODULE_COLUMNS) {
+                columns[c++] = key + "/" + column;
+            }
+        }
+        int recordSize = Long.BYTES + ((columns.length - 1) * Double.BYTES);
+        ring = new RecordRingBuffer(recordSize, capacity);
+        startNanos = System.nanoTime();
+
+        running = true;
+        writer = new Thread(this::write, "SwerveIO Binary Logger");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The writer thread. This drains the ring in batches and writes each batch
+     * as a block until the logger is closed, and then drains whatever is left.
+     */
+    private void write() {
+        int recordSize = ring.getRecordSize();
+        int batchRecords = Math.max(1, Math.min(BATCH_SIZE / recordSize, SwerveLogFormat.MAX_BLOCK_RECORDS));
+        ByteBuffer batch = ByteBuffer.allocateDirect(batchRecords * recordSize);
+        ByteBuffer block = ByteBuffer.allocateDirect(SwerveLogFormat.maxBlockSize(batchRecords, columns.length));
+        CRC32 crc = new CRC32();
+
+        writeFully(SwerveLogFormat.encodeHeader(columns, System.currentTimeMillis()));
+        while (true) {
+            batch.clear();
+            int drained = ring.drainTo(batch);
+            if (drained == 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(WRITER_IDLE_NANOS);
+                continue;
+            }
+            SwerveLogFormat.encodeBlock(batch, drained, recordSize, columns.length, startNanos, block, crc);
+            writeFully(block);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) {
+        try {
+            while (buffer.hasRemaining()) {
+                bytesWritten.addAndGet(channel.write(buffer));
+            }
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stop the writer thread, write out everything that's been logged, and close
+     * the file. Anything logged after this is dropped.
+     * 
+     * @throws IOException If the file can't be closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+        if (channel.isOpen()) {
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    /**
+     * Get the file this logger writes to.
+     * 
+     * @return The log file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the number of records dropped because the writer fell behind.
+     * 
+     * @return The drop count.
+     */
+    public long getDroppedRecords() {
+        return (ring == null) ? 0 : ring.getDropped();
+    }
+
+    /**
+     * Get the number of records that have been logged, including any still
+     * waiting to be written.
+     * 
+     * @return The record count.
+     */
+    public long getLoggedRecords() {
+        return (ring == null) ? 0 : ring.getCommitted();
+    }
+
+    /**
+     * Get the number of bytes written to the file so far.
+     * 
+     * @return The byte count.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    /**
+     * Get the number of writes that failed. Records in a failed write are lost.
+     * 
+     * @return The error count.
+     */
+    public long getWriteErrors() {
+        return writeErrors.get();
+    }
+
+    @Override
+    public boolean requiresEnabledDriverStation() {
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed-capacity ring of fixed-size binary records, stored off-heap. One
+ * thread produces records and one other thread consumes them, with no locks and
+ * no allocation on either side. If the consumer falls behind and the ring fills
+ * up, new records are dropped and counted rather than blocking the producer.
+ * <p>
+ * To produce a record, call {@link #claim()}, write the record at the returned
+ * offset with the put methods, then call {@link #commit()}.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class RecordRingBuffer {
+
+    private final ByteBuffer buffer;
+    private final ByteBuffer consumerView;
+    private final int recordSize;
+    private final int capacity;
+    private final int mask;
+
+    /* The number of records committed by the producer, and released by the consumer. */
+    private volatile long head = 0;
+    private volatile long tail = 0;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Create a ring buffer.
+     * 
+     * @param recordSize The size of a record, in bytes.
+     * @param capacity   The number of records the ring can hold. This is rounded
+     *                   up to a power of two.
+     */
+    public RecordRingBuffer(int recordSize, int capacity) {
+        if (recordSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Record size and capacity must be greater than 0.");
+        }
+        int rounded = Integer.highestOneBit(capacity);
+        if (rounded < capacity) {
+            rounded <<= 1;
+        }
+        this.recordSize = recordSize;
+        this.capacity = rounded;
+        this.mask = rounded - 1;
+        buffer = ByteBuffer.allocateDirect(recordSize * rounded);
+        consumerView = buffer.duplicate();
+    }
+
+    /**
+     * Get the size of a record.
+     * 
+     * @return The record size, in bytes.
+     */
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    /**
+     * Get the capacity of the ring.
+     * 
+     * @return The number of records the ring can hold.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Claim the next record for writing. Only the producer may call this.
+     * 
+     * @return The byte offset of the record to write with the put methods, or -1
+     *         if the ring is full and the record should be dropped.
+     */
+    public int claim() {
+        if (head - tail >= capacity) {
+            dropped.incrementAndGet();
+            return -1;
+        }
+        return (int) (head & mask) * recordSize;
+    }
+
+    /**
+     * Write a long into the claimed record.
+     * 
+     * @param offset The byte offset, which is the claimed offset plus the
+     *               position of the value within the record.
+     * @param value  The value to write.
+     */
+    public void putLong(int offset, long value) {
+        buffer.putLong(offset, value);
+    }
+
+    /**
+     * Write a double into the claimed record.
+     * 
+     * @param offset The byte offset, which is the claimed offset plus the
+     *               position of the value within the record.
+     * @param value  The value to write.
+     */
+    public void putDouble(int offset, double value) {
+        buffer.putDouble(offset, value);
+    }
+
+    /**
+     * Publish the claimed record to the consumer.
+     */
+    public void commit() {
+        head = head + 1;
+    }
+
+    /**
+     * Get the number of records waiting for the consumer.
+     * 
+     * @return The number of committed records that haven't been drained.
+     */
+    public int available() {
+        return (int) (head - tail);
+    }
+
+    /**
+     * Copy as many whole records as will fit into the destination, and release
+     * them from the ring. Only the consumer may call this.
+     * 
+     * @param dst The buffer to copy records into, starting at its position.
+     * @return The number of records copied.
+     */
+    public int drainTo(ByteBuffer dst) {
+        long start = tail;
+        int count = (int) Math.min(head - start, dst.remaining() / recordSize);
+        int copied = 0;
+        while (copied < count) {
+            int index = (int) ((start + copied) & mask);
+            int run = Math.min(count - copied, capacity - index);
+            consumerView.limit((index + run) * recordSize);
+            consumerView.position(index * recordSize);
+            dst.put(consumerView);
+            copied += run;
+        }
+        tail = start + count;
+        return count;
+    }
+
+    /**
+     * Get the number of records that were dropped because the ring was full.
+     * 
+     * @return The drop count.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Get the number of records that have been committed.
+     * 
+     * @return The total number of records ever committed.
+     */
+    public long getCommitted() {
+        return head;
+    }
+}
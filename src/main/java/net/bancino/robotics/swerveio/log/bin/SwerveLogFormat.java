@@ -0,0 +1,216 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * The layout of a binary swerve log. A log is a header followed by any number
+ * of blocks, and everything is big-endian.
+ * <p>
+ * The header is the magic number {@link #MAGIC}, the format {@link #VERSION},
+ * the wall clock time the log was started at as a long in milliseconds since
+ * the epoch, the number of columns, and then each column's type byte and its
+ * name as a length-prefixed UTF-8 string. The first column is always the time,
+ * of type {@link #TYPE_TIME}; the rest are {@link #TYPE_FLOAT}.
+ * <p>
+ * Each block is the magic number {@link #BLOCK_MAGIC}, the number of records
+ * in the block, the length of the payload, and a CRC32 of the record count and
+ * length, followed by the payload and a CRC32 of the payload. A block has at
+ * most {@link #MAX_BLOCK_RECORDS} records and {@link #MAX_BLOCK_LENGTH} bytes
+ * of payload. The payload is columnar: first the time of every
+ * record, in microseconds from a monotonic clock since the log was started,
+ * where the first is written as is and the rest as the difference from the
+ * record before, all as unsigned variable-length integers; then each of the
+ * other columns in turn, as one 32-bit float per record. Every block can be
+ * read on its own, so a damaged block only loses its own records; if a block
+ * header is damaged, a reader can scan ahead for the next block magic.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public final class SwerveLogFormat {
+
+    /** The magic number at the start of every binary swerve log, "SWIO". */
+    public static final int MAGIC = 0x5357494F;
+
+    /** The version of the log format. */
+    public static final int VERSION = 2;
+
+    /** The magic number at the start of every block, "BLK1". */
+    public static final int BLOCK_MAGIC = 0x424C4B31;
+
+    /**
+     * The size of a block's header: the magic, record count, length, and the
+     * checksum of the record count and length.
+     */
+    public static final int BLOCK_HEADER_SIZE = 4 * Integer.BYTES;
+
+    /** The most records a block can have. */
+    public static final int MAX_BLOCK_RECORDS = 64 * 1024;
+
+    /** The longest a block's payload can be, in bytes. */
+    public static final int MAX_BLOCK_LENGTH = 1024 * 1024;
+
+    /** The column type of the time column. */
+    public static final byte TYPE_TIME = 0;
+
+    /** The column type of a 32-bit float column. */
+    public static final byte TYPE_FLOAT = 1;
+
+    /** The most bytes an encoded variable-length long can take. */
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    private SwerveLogFormat() {
+
+    }
+
+    /**
+     * Encode the header of a log.
+     * 
+     * @param columns     The column names, starting with the time.
+     * @param startMillis The wall clock time the log was started at.
+     * @return The header, ready to be written.
+     */
+    static ByteBuffer encodeHeader(String[] columns, long startMillis) {
+        byte[][] names = new byte[columns.length][];
+        int size = (3 * Integer.BYTES) + Long.BYTES;
+        for (int i = 0; i < columns.length; i++) {
+            names[i] = columns[i].getBytes(StandardCharsets.UTF_8);
+            size += Byte.BYTES + Short.BYTES + names[i].length;
+        }
+        ByteBuffer header = ByteBuffer.allocate(size);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(startMillis);
+        header.putInt(columns.length);
+        for (int i = 0; i < names.length; i++) {
+            header.put((i == 0) ? TYPE_TIME : TYPE_FLOAT);
+            header.putShort((short) names[i].length);
+            header.put(names[i]);
+        }
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Get the largest a block of records can be once encoded.
+     * 
+     * @param records The number of records.
+     * @param columns The number of columns, including the time.
+     * @return The encoded size in bytes, including the block header and payload
+     *         checksum.
+     */
+    static int maxBlockSize(int records, int columns) {
+        return BLOCK_HEADER_SIZE + (records * (MAX_VARLONG_SIZE + ((columns - 1) * Float.BYTES))) + Integer.BYTES;
+    }
+
+    /**
+     * Transpose a batch of row records into a columnar block. Each record is a
+     * long {@link System#nanoTime()} timestamp followed by a double for each of
+     * the other columns.
+     * 
+     * @param batch      The records.
+     * @param records    The number of records in the batch.
+     * @param recordSize The size of each record, in bytes.
+     * @param columns    The number of columns, including the time.
+     * @param startNanos The time the log was started at, from
+     *                   {@link System#nanoTime()}.
+     * @param block      The buffer to encode the block into. It must have room
+     *                   for {@link #maxBlockSize(int, int)} bytes. It is flipped,
+     *                   ready to be written.
+     * @param crc        A checksum to use.
+     */
+    static void encodeBlock(ByteBuffer batch, int records, int recordSize, int columns, long startNanos,
+            ByteBuffer block, CRC32 crc) {
+        block.clear();
+        block.putInt(BLOCK_MAGIC);
+        block.putInt(records);
+        int lengthPosition = block.position();
+        block.putInt(0);
+        block.putInt(0);
+        int payloadStart = block.position();
+
+        long previous = 0;
+        for (int i = 0; i < records; i++) {
+            long micros = (batch.getLong(i * recordSize) - startNanos) / 1000;
+            putVarLong(block, micros - previous);
+            previous = micros;
+        }
+        for (int c = 1; c < columns; c++) {
+            int offset = Long.BYTES + ((c - 1) * Double.BYTES);
+            for (int i = 0; i < records; i++) {
+                block.putFloat((float) batch.getDouble((i * recordSize) + offset));
+            }
+        }
+
+        int payloadEnd = block.position();
+        int length = payloadEnd - payloadStart;
+        if (records > MAX_BLOCK_RECORDS || length > MAX_BLOCK_LENGTH) {
+            throw new IllegalArgumentException("Block of " + records + " records and " + length
+                    + " bytes is larger than the format allows.");
+        }
+        block.putInt(lengthPosition, length);
+        block.putInt(lengthPosition + Integer.BYTES, headerChecksum(crc, records, length));
+        ByteBuffer payload = block.duplicate();
+        payload.position(payloadStart).limit(payloadEnd);
+        crc.reset();
+        crc.update(payload);
+        block.putInt((int) crc.getValue());
+        block.flip();
+    }
+
+    /**
+     * Get the checksum of a block's record count and length.
+     * 
+     * @param crc     A checksum to use.
+     * @param records The record count.
+     * @param length  The payload length.
+     * @return The CRC32 of the count and length, as big-endian ints.
+     */
+    static int headerChecksum(CRC32 crc, int records, int length) {
+        crc.reset();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(records >>> shift);
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(length >>> shift);
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write an unsigned variable-length long, seven bits at a time, low bits
+     * first.
+     * 
+     * @param out   The buffer to write to.
+     * @param value The value to write. Negative values take the full ten bytes.
+     */
+    public static void putVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /**
+     * Read an unsigned variable-length long.
+     * 
+     * @param in The buffer to read from.
+     * @return The value that was read.
+     * @throws IllegalArgumentException If the value is longer than ten bytes.
+     */
+    public static long getVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable-length long.");
+    }
+}
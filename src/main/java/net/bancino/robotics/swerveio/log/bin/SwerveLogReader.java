@@ -0,0 +1,288 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Reads a binary swerve log one block at a time, so logs of any size can be
+ * read in a fixed amount of memory. Call {@link #nextBlock()} to move to each
+ * block, then read its records with {@link #getTime(int)} and
+ * {@link #getValue(int, int)}. Blocks that fail either checksum are skipped and
+ * counted.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SwerveLogReader implements AutoCloseable {
+
+    private static final int SCAN_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final String[] columns;
+    private final long startMillis;
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer blockHeader = ByteBuffer.allocate(SwerveLogFormat.BLOCK_HEADER_SIZE);
+    private ByteBuffer payload = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer checksum = ByteBuffer.allocate(Integer.BYTES);
+    private long[] times = new long[1024];
+    private int records = 0;
+    private int valuesStart = 0;
+    private long corruptBlocks = 0;
+
+    /**
+     * Open a binary swerve log and read its header.
+     * 
+     * @param file The log to read.
+     * @throws IOException If the file can't be read or isn't a binary swerve log
+     *                     of a supported version.
+     */
+    public SwerveLogReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer fixed = readFully(ByteBuffer.allocate((3 * Integer.BYTES) + Long.BYTES));
+            if (fixed.getInt() != SwerveLogFormat.MAGIC) {
+                throw new IOException(file + " is not a binary swerve log.");
+            }
+            int version = fixed.getInt();
+            if (version != SwerveLogFormat.VERSION) {
+                throw new IOException("Unsupported binary swerve log version: " + version);
+            }
+            startMillis = fixed.getLong();
+            columns = new String[fixed.getInt()];
+            for (int i = 0; i < columns.length; i++) {
+                ByteBuffer column = readFully(ByteBuffer.allocate(Byte.BYTES + Short.BYTES));
+                byte type = column.get();
+                if (type != ((i == 0) ? SwerveLogFormat.TYPE_TIME : SwerveLogFormat.TYPE_FLOAT)) {
+                    throw new IOException("Unsupported column type " + type + " for column " + i + ".");
+                }
+                ByteBuffer name = readFully(ByteBuffer.allocate(column.getShort() & 0xFFFF));
+                columns[i] = new String(name.array(), StandardCharsets.UTF_8);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get the names of the columns. The first column is always the time.
+     * 
+     * @return A copy of the column names.
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Find a column by name.
+     * 
+     * @param name The column name.
+     * @return The index of the column, or -1 if there is no such column.
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the wall clock time the log was started at.
+     * 
+     * @return The start time, in milliseconds since the epoch.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Move to the next intact block. If a block header is damaged, the log is
+     * scanned for the next block.
+     * 
+     * @return True if a block was read, false at the end of the log.
+     * @throws IOException If the file can't be read.
+     */
+    public boolean nextBlock() throws IOException {
+        while (true) {
+            long blockStart = channel.position();
+            blockHeader.clear();
+            if (!fill(blockHeader)) {
+                if (blockHeader.position() > 0) {
+                    corruptBlocks++;
+                }
+                records = 0;
+                return false;
+            }
+            blockHeader.flip();
+            int magic = blockHeader.getInt();
+            int count = blockHeader.getInt();
+            int length = blockHeader.getInt();
+            int headerChecksum = blockHeader.getInt();
+            if (magic != SwerveLogFormat.BLOCK_MAGIC
+                    || headerChecksum != SwerveLogFormat.headerChecksum(crc, count, length)
+                    || count < 0 || count > SwerveLogFormat.MAX_BLOCK_RECORDS
+                    || length < 0 || length > SwerveLogFormat.MAX_BLOCK_LENGTH) {
+                /* Everything from here to the next block magic is lost. */
+                corruptBlocks++;
+                if (!seekBlockMagic(blockStart + 1)) {
+                    records = 0;
+                    return false;
+                }
+                continue;
+            }
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            checksum.clear();
+            if (!fill(payload) || !fill(checksum)) {
+                /* The log was cut off mid-block, most likely by a power loss. */
+                corruptBlocks++;
+                records = 0;
+                return false;
+            }
+            payload.flip();
+            checksum.flip();
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum.getInt()) {
+                corruptBlocks++;
+                continue;
+            }
+            if (times.length < count) {
+                times = new long[count];
+            }
+            long time = 0;
+            try {
+                for (int i = 0; i < count; i++) {
+                    time += SwerveLogFormat.getVarLong(payload);
+                    times[i] = time;
+                }
+            } catch (RuntimeException e) {
+                corruptBlocks++;
+                continue;
+            }
+            if (payload.remaining() != count * (columns.length - 1) * Float.BYTES) {
+                corruptBlocks++;
+                continue;
+            }
+            valuesStart = payload.position();
+            records = count;
+            return true;
+        }
+    }
+
+    /**
+     * Scan forward for the next block magic, and position the channel at it.
+     * 
+     * @param from The position to start scanning at.
+     * @return True if a block magic was found, false if the end of the log came
+     *         first.
+     * @throws IOException If the file can't be read.
+     */
+    private boolean seekBlockMagic(long from) throws IOException {
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long position = from;
+        while (true) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read < Integer.BYTES) {
+                channel.position(channel.size());
+                return false;
+            }
+            for (int i = 0; i + Integer.BYTES <= read; i++) {
+                if (scan.getInt(i) == SwerveLogFormat.BLOCK_MAGIC) {
+                    channel.position(position + i);
+                    return true;
+                }
+            }
+            /* The magic could straddle the end of this chunk. */
+            position += read - (Integer.BYTES - 1);
+        }
+    }
+
+    /**
+     * Get the number of records in the current block.
+     * 
+     * @return The record count.
+     */
+    public int getBlockRecords() {
+        return records;
+    }
+
+    /**
+     * Get the time of a record in the current block.
+     * 
+     * @param record The index of the record in the block.
+     * @return The time, in microseconds since the log was started.
+     */
+    public long getTime(int record) {
+        if (record < 0 || record >= records) {
+            throw new IndexOutOfBoundsException("No record " + record + " in a block of " + records);
+        }
+        return times[record];
+    }
+
+    /**
+     * Get a value of a record in the current block.
+     * 
+     * @param column The index of the column. Column 0 gives the time, in
+     *               seconds.
+     * @param record The index of the record in the block.
+     * @return The value.
+     */
+    public double getValue(int column, int record) {
+        if (column == 0) {
+            return getTime(record) / 1e6;
+        }
+        if (column < 0 || column >= columns.length) {
+            throw new IndexOutOfBoundsException("No column " + column);
+        }
+        if (record < 0 || record >= records) {
+            throw new IndexOutOfBoundsException("No record " + record + " in a block of " + records);
+        }
+        return payload.getFloat(valuesStart + ((((column - 1) * records) + record) * Float.BYTES));
+    }
+
+    /**
+     * Get the number of blocks that were skipped because they were damaged.
+     * 
+     * @return The corrupt block count.
+     */
+    public long getCorruptBlocks() {
+        return corruptBlocks;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer readFully(ByteBuffer buffer) throws IOException {
+        if (!fill(buffer)) {
+            throw new EOFException("Unexpected end of log.");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /* Fill the buffer; returns false if the end of the file came first. */
+    private boolean fill(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,196 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * A desktop tool for binary swerve logs pulled off of the robot. Logs are
+ * streamed one block at a time, so they can be larger than memory.
+ * 
+ * <pre>
+ * info  &lt;log&gt;                                  Print the columns, record count, and duration.
+ * csv   &lt;log&gt; [out.csv]                        Convert the whole log to CSV.
+ * query &lt;log&gt; &lt;from&gt; &lt;to&gt; &lt;column&gt;... [-o out.csv]  Print the given columns between two times, in seconds.
+ * </pre>
+ * 
+ * This can be run with <code>./gradlew swerveLogTool -Pargs="info,log.bin"</code>,
+ * with the arguments separated by commas.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SwerveLogTool {
+
+    private static final String USAGE = "Usage:\n" + "  info  <log>\n" + "  csv   <log> [out.csv]\n"
+            + "  query <log> <from seconds> <to seconds> <column>... [-o out.csv]";
+
+    private SwerveLogTool() {
+
+    }
+
+    /**
+     * Run the tool.
+     * 
+     * @param args The command and its arguments.
+     * @throws IOException If a log can't be read or the output can't be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        File log = new File(args[1]);
+        switch (args[0]) {
+        case "info":
+            info(log);
+            break;
+        case "csv":
+            try (PrintWriter out = open((args.length > 2) ? args[2] : null)) {
+                query(log, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null, out);
+            }
+            break;
+        case "query":
+            if (args.length < 5) {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+            String output = null;
+            int end = args.length;
+            if (args.length > 6 && args[args.length - 2].equals("-o")) {
+                output = args[args.length - 1];
+                end -= 2;
+            }
+            String[] columns = new String[end - 4];
+            System.arraycopy(args, 4, columns, 0, columns.length);
+            try (PrintWriter out = open(output)) {
+                query(log, Double.parseDouble(args[2]), Double.parseDouble(args[3]), columns, out);
+            }
+            break;
+        default:
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+    }
+
+    private static PrintWriter open(String output) throws IOException {
+        Writer writer;
+        if (output == null) {
+            writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        } else {
+            writer = Files.newBufferedWriter(new File(output).toPath(), StandardCharsets.UTF_8);
+        }
+        return new PrintWriter(new BufferedWriter(writer, 64 * 1024));
+    }
+
+    /**
+     * Print a summary of a log.
+     * 
+     * @param log The log to summarize.
+     * @throws IOException If the log can't be read.
+     */
+    public static void info(File log) throws IOException {
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            long blocks = 0;
+            long records = 0;
+            long first = -1;
+            long last = 0;
+            while (reader.nextBlock()) {
+                int count = reader.getBlockRecords();
+                if (first < 0 && count > 0) {
+                    first = reader.getTime(0);
+                }
+                if (count > 0) {
+                    last = reader.getTime(count - 1);
+                }
+                records += count;
+                blocks++;
+            }
+            double duration = (first < 0) ? 0 : (last - first) / 1e6;
+            System.out.println("Log:            " + log.getAbsolutePath());
+            System.out.println("Started:        " + new java.util.Date(reader.getStartMillis()));
+            System.out.println("Size:           " + log.length() + " bytes");
+            System.out.println("Blocks:         " + blocks);
+            System.out.println("Corrupt blocks: " + reader.getCorruptBlocks());
+            System.out.println("Records:        " + records);
+            System.out.println("Duration:       " + duration + " s");
+            if (duration > 0) {
+                System.out.println("Average rate:   " + ((records - 1) / duration) + " Hz");
+            }
+            System.out.println("Columns:");
+            for (String column : reader.getColumns()) {
+                System.out.println("  " + column);
+            }
+        }
+    }
+
+    /**
+     * Write the records of a log between two times as CSV.
+     * 
+     * @param log     The log to read.
+     * @param from    The earliest time to include, in seconds since the log was
+     *                started.
+     * @param to      The latest time to include, in seconds since the log was
+     *                started.
+     * @param columns The names of the columns to include, or null for all of
+     *                them. The time is always included first.
+     * @param out     Where to write the CSV.
+     * @throws IOException If the log can't be read.
+     */
+    public static void query(File log, double from, double to, String[] columns, PrintWriter out)
+            throws IOException {
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            int[] indices;
+            if (columns == null) {
+                indices = new int[reader.getColumns().length];
+                for (int i = 0; i < indices.length; i++) {
+                    indices[i] = i;
+                }
+            } else {
+                indices = new int[columns.length + 1];
+                for (int i = 0; i < columns.length; i++) {
+                    indices[i + 1] = reader.getColumnIndex(columns[i]);
+                    if (indices[i + 1] < 0) {
+                        throw new IllegalArgumentException("No such column: " + columns[i]);
+                    }
+                }
+            }
+
+            String[] names = reader.getColumns();
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < indices.length; i++) {
+                row.append((i == 0) ? "" : ",").append(names[indices[i]]);
+            }
+            out.println(row);
+
+            while (reader.nextBlock()) {
+                int count = reader.getBlockRecords();
+                if (count == 0 || reader.getValue(0, count - 1) < from) {
+                    continue;
+                }
+                for (int r = 0; r < count; r++) {
+                    double time = reader.getValue(0, r);
+                    if (time < from) {
+                        continue;
+                    }
+                    if (time > to) {
+                        return;
+                    }
+                    row.setLength(0);
+                    for (int i = 0; i < indices.length; i++) {
+                        row.append((i == 0) ? "" : ",").append(reader.getValue(indices[i], r));
+                    }
+                    out.println(row);
+                }
+            }
+        } finally {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Log swerve drive state to compact binary files via the SwerveIO logging API,
+ * without doing any file I/O on the robot thread.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+package net.bancino.robotics.swerveio.log.bin;
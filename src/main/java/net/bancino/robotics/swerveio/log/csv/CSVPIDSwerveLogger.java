@@ -7,7 +7,6 @@ import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 
 import net.bancino.robotics.swerveio.SwerveDrive;
-import net.bancino.robotics.swerveio.SwerveIOUtils;
 import net.bancino.robotics.swerveio.SwerveVector;
 import net.bancino.robotics.swerveio.SwerveModule;
 import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
@@ -71,8 +70,11 @@ public class CSVPIDSwerveLogger extends AbstractCSVSwerveLogger {
 
         double setpoint = drive.getCalculator().getWheelAngle(module, fwd, str, rcw, drive.getLastGyroAngle());
         double feedback = swerveModule.getPivotMotorEncoder();
-        double feedbackMod = SwerveIOUtils.correctPivotFeedback(feedback, setpoint, drive.getCountsPerPivotRevolution());
+        /* The pivot loop wraps its input, so log the error it actually sees. */
+        double countsPerRevolution = drive.getCountsPerPivotRevolution();
         double difference = setpoint - feedback;
+        difference -= countsPerRevolution * Math.rint(difference / countsPerRevolution);
+        double feedbackMod = setpoint - difference;
         double previousOutput = swerveModule.getPivotPIDController().getPreviousOutput();
 
         csv.print(setpoint + "," + feedback + "," + feedbackMod + "," + difference + "," + previousOutput);
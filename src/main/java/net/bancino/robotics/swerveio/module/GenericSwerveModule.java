@@ -1,7 +1,6 @@
 package net.bancino.robotics.swerveio.module;
 
 import edu.wpi.first.wpilibj.SpeedController;
-import net.bancino.robotics.swerveio.SwerveIOUtils;
 import net.bancino.robotics.swerveio.encoder.AbstractEncoder;
 import net.bancino.robotics.swerveio.pid.AbstractPIDController;
 import net.bancino.robotics.swerveio.pid.MiniPID;
@@ -68,8 +67,12 @@ public class GenericSwerveModule implements AbstractSwerveModule {
         pivotPid.setOutputLimits(-1, 1);
         drivePid.setOutputLimits(-1, 1);
 
-        /* Tell the PID loop what the maximum range of the encoder is. */
+        /*
+         * Tell the PID loop what the maximum range of the encoder is, and that it
+         * wraps around, so it always turns the module the short way.
+         */
         pivotPid.setSetpointRange(pivotEncoder.countsPerRevolution());
+        pivotPid.setContinuousInput(0, pivotEncoder.countsPerRevolution());
     }
 
     /**
@@ -154,8 +157,7 @@ public class GenericSwerveModule implements AbstractSwerveModule {
 
     @Override
     public void setPivotReference(double ref) {
-        double feedbackMod = SwerveIOUtils.correctPivotFeedback(pivotEncoder.get(), ref, pivotEncoder.countsPerRevolution());
-        setPivotMotorSpeed(-1 * pivotPid.getOutput(feedbackMod, ref));
+        setPivotMotorSpeed(-1 * pivotPid.getOutput(pivotEncoder.get(), ref));
     }
 
     @Override
@@ -173,4 +173,29 @@ public interface AbstractPIDController {
      */
     public void setOutputFilter(double strength);
 
+    /**
+     * Treat the input as continuous, such as an angle, so that the maximum and
+     * minimum are the same point. The error is then the shortest signed distance
+     * between the feedback and the setpoint around that range, so the controller
+     * always goes the short way, even across the point where the input wraps.
+     * The feedback and setpoint can be given wrapped any way.
+     * 
+     * @param min The minimum value of the input.
+     * @param max The maximum value of the input, which is the same point as the
+     *            minimum. In relation to swerve drive, a pivot encoder usually
+     *            has a range of 0 to its counts per revolution.
+     */
+    public void setContinuousInput(double min, double max);
+
+    /**
+     * Stop treating the input as continuous, so that the error is the plain
+     * difference between the setpoint and the feedback.
+     */
+    public void disableContinuousInput();
+
+    /**
+     * @return Whether or not the input is being treated as continuous.
+     */
+    public boolean isContinuousInputEnabled();
+
 }
\ No newline at end of file
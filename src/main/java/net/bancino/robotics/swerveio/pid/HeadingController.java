@@ -0,0 +1,340 @@
+package net.bancino.robotics.swerveio.pid;
+
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+
+/**
+ * A controller for the heading of a chassis, read from a gyro. Unlike a plain
+ * PID loop on the gyro angle, this controller understands that the heading
+ * wraps around at 360 degrees, so it always turns the short way. Instead of
+ * chasing the goal directly, it follows a trapezoidal motion profile from the
+ * heading the chassis was at when the goal was set, which lets the gains be
+ * much more aggressive without overshooting. A goal set in the middle of a
+ * turn starts its profile at the rate the old profile was turning at, so the
+ * output doesn't jump. The output is a rotation value suitable for the rcw
+ * component of a swerve vector.
+ * <p>
+ * The output is made up of a velocity feed-forward term that follows the
+ * profile, plus proportional and derivative terms on the error between the
+ * profile and the actual heading. The controller is considered settled once
+ * the profile has finished and the heading has stayed within a tolerance of
+ * the goal, moving slowly, for a period of time.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class HeadingController {
+
+    /* Gains */
+    private double kP = 0.02;
+    private double kD = 0.001;
+    private double kV = 1.0 / 360;
+    private double maxOutput = 1;
+
+    /* Profile constraints, in degrees per second and degrees per second squared. */
+    private double maxVelocity = 360;
+    private double maxAcceleration = 720;
+
+    /* Settle detection */
+    private double tolerance = 2;
+    private double velocityTolerance = 10;
+    private double settleTime = 0.1;
+
+    /* The current profile. */
+    private double goal = 0;
+    private double start = 0;
+    private double direction = 1;
+    private double startTime = 0;
+    private double accelTime = 0;
+    private double cruiseTime = 0;
+    private double peakVelocity = 0;
+    private boolean hasGoal = false;
+
+    /*
+     * A profile that starts out turning is a profile from rest that has already
+     * been running for startOffset seconds, and is startDistance degrees along.
+     * If it starts out turning away from the goal, startOffset is negative: it
+     * has to slow to a stop before the profile from rest begins.
+     */
+    private double initialVelocity = 0;
+    private double startOffset = 0;
+    private double startDistance = 0;
+
+    /* The profile sampled by sample(), relative to the start, along direction. */
+    private double profilePosition = 0;
+    private double profileVelocity = 0;
+
+    /* Loop state */
+    private boolean firstRun = true;
+    private double lastHeading = 0;
+    private double lastError = 0;
+    private double lastTime = 0;
+    private double settledSince = -1;
+    private boolean settled = false;
+    private double lastOutput = 0;
+
+    /**
+     * Create a heading controller with the default gains and constraints.
+     */
+    public HeadingController() {
+
+    }
+
+    /**
+     * Create a heading controller with the given gains.
+     * 
+     * @param p The proportional gain, in output per degree of error.
+     * @param d The derivative gain, in output per degree per second of error.
+     * @param v The velocity feed-forward gain, in output per degree per second.
+     *          This should be about one over the rotation rate of the chassis at
+     *          full output.
+     */
+    public HeadingController(double p, double d, double v) {
+        setGains(p, d, v);
+    }
+
+    /**
+     * Set the gains of this controller.
+     * 
+     * @param p The proportional gain, in output per degree of error.
+     * @param d The derivative gain, in output per degree per second of error.
+     * @param v The velocity feed-forward gain, in output per degree per second.
+     */
+    public void setGains(double p, double d, double v) {
+        if (p < 0 || d < 0 || v < 0) {
+            throw new IllegalArgumentException("Heading controller gains must not be negative.");
+        }
+        kP = p;
+        kD = d;
+        kV = v;
+    }
+
+    /**
+     * Set the constraints of the motion profile. These take effect the next time
+     * a goal is set.
+     * 
+     * @param maxVelocity     The fastest the chassis should turn, in degrees per
+     *                        second.
+     * @param maxAcceleration The fastest the chassis should speed up or slow down
+     *                        its turning, in degrees per second squared.
+     */
+    public void setConstraints(double maxVelocity, double maxAcceleration) {
+        if (maxVelocity <= 0 || maxAcceleration <= 0) {
+            throw new IllegalArgumentException("Heading constraints must be greater than 0.");
+        }
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+    }
+
+    /**
+     * Set how close the heading must stay to the goal, and for how long, before
+     * the controller is considered settled.
+     * 
+     * @param tolerance         The allowed error, in degrees.
+     * @param velocityTolerance The allowed turning rate, in degrees per second.
+     * @param settleTime        How long the heading must stay in tolerance, in
+     *                          seconds.
+     */
+    public void setTolerance(double tolerance, double velocityTolerance, double settleTime) {
+        this.tolerance = Math.abs(tolerance);
+        this.velocityTolerance = Math.abs(velocityTolerance);
+        this.settleTime = Math.abs(settleTime);
+    }
+
+    /**
+     * Limit the output of this controller.
+     * 
+     * @param maxOutput The output will be limited to -maxOutput to maxOutput.
+     */
+    public void setMaxOutput(double maxOutput) {
+        this.maxOutput = Math.abs(maxOutput);
+    }
+
+    /**
+     * Set a new goal heading, generating a motion profile from the current
+     * heading to the goal. The profile always takes the short way around. If
+     * the current profile is still turning, the new one starts at the same rate,
+     * and goes past the goal and back if it can't stop in time.
+     * 
+     * @param goal    The heading to turn to, in degrees. This can be any value,
+     *                it is wrapped to 0 to 360.
+     * @param heading The current heading, in degrees.
+     * @param time    The current time, in seconds. This can be from any monotonic
+     *                clock, as long as the same clock is used for
+     *                {@link #calculate(double, double)}.
+     */
+    public void setGoal(double goal, double heading, double time) {
+        double velocity = 0;
+        if (hasGoal) {
+            sample(time - startTime);
+            velocity = direction * profileVelocity;
+        }
+        velocity = Math.max(-maxVelocity, Math.min(maxVelocity, velocity));
+
+        this.goal = SwerveIOUtils.wrapAngle360(goal);
+        double distance = SwerveIOUtils.wrapAngle180(this.goal - heading);
+        /* Turn towards the goal from where the chassis would stop, not from where it is. */
+        double stoppingDistance = Math.signum(velocity) * (velocity * velocity) / (2 * maxAcceleration);
+        direction = Math.signum(distance - stoppingDistance);
+        if (direction == 0) {
+            direction = Math.signum(velocity);
+        }
+        start = heading;
+        startTime = time;
+
+        initialVelocity = direction * velocity;
+        startOffset = initialVelocity / maxAcceleration;
+        startDistance = (initialVelocity * initialVelocity) / (2 * maxAcceleration);
+        distance = (direction * distance) + startDistance;
+
+        /* Solve the trapezoid; if it can't reach full speed, it's a triangle. */
+        if (distance < (maxVelocity * maxVelocity) / maxAcceleration) {
+            peakVelocity = Math.sqrt(distance * maxAcceleration);
+            accelTime = peakVelocity / maxAcceleration;
+            cruiseTime = 0;
+        } else {
+            peakVelocity = maxVelocity;
+            accelTime = maxVelocity / maxAcceleration;
+            cruiseTime = (distance - (maxVelocity * accelTime)) / maxVelocity;
+        }
+        hasGoal = true;
+        firstRun = true;
+        settled = false;
+        settledSince = -1;
+    }
+
+    /**
+     * Get the current goal.
+     * 
+     * @return The goal heading, in degrees from 0 to 360.
+     */
+    public double getGoal() {
+        return goal;
+    }
+
+    /**
+     * Get the total duration of the current motion profile.
+     * 
+     * @return The time it takes to follow the profile from start to finish, in
+     *         seconds.
+     */
+    public double getProfileDuration() {
+        return (2 * accelTime) + cruiseTime - startOffset;
+    }
+
+    /**
+     * Sample the current profile into profilePosition and profileVelocity.
+     * 
+     * @param t The time since the profile started, in seconds.
+     */
+    private void sample(double t) {
+        /* Time and position along the profile from rest. */
+        double tau = t + startOffset;
+        double duration = (2 * accelTime) + cruiseTime;
+        double position, velocity;
+        if (t <= 0) {
+            position = startDistance;
+            velocity = initialVelocity;
+        } else if (tau < accelTime) {
+            velocity = maxAcceleration * tau;
+            position = 0.5 * maxAcceleration * tau * tau;
+        } else if (tau < accelTime + cruiseTime) {
+            velocity = peakVelocity;
+            position = (0.5 * peakVelocity * accelTime) + (peakVelocity * (tau - accelTime));
+        } else if (tau < duration) {
+            double remaining = duration - tau;
+            velocity = maxAcceleration * remaining;
+            position = (peakVelocity * (accelTime + cruiseTime)) - (0.5 * maxAcceleration * remaining * remaining);
+        } else {
+            velocity = 0;
+            position = (peakVelocity * (accelTime + cruiseTime));
+        }
+        profilePosition = position - startDistance;
+        profileVelocity = velocity;
+    }
+
+    /**
+     * Calculate the rotation output for the current cycle. This doesn't allocate.
+     * 
+     * @param heading The current heading, in degrees.
+     * @param time    The current time, in seconds.
+     * @return The rotation output, positive for clockwise. This is zero if no
+     *         goal has been set.
+     */
+    public double calculate(double heading, double time) {
+        if (!hasGoal) {
+            return 0;
+        }
+        double t = time - startTime;
+        double duration = getProfileDuration();
+
+        sample(t);
+        double setpoint = start + (direction * profilePosition);
+        double velocity = direction * profileVelocity;
+
+        double error = SwerveIOUtils.wrapAngle180(setpoint - heading);
+        double dt = time - lastTime;
+        double errorRate = 0;
+        double headingRate = 0;
+        if (!firstRun && dt > 0) {
+            errorRate = (error - lastError) / dt;
+            headingRate = SwerveIOUtils.wrapAngle180(heading - lastHeading) / dt;
+        }
+        firstRun = false;
+        lastError = error;
+        lastHeading = heading;
+        lastTime = time;
+
+        double output = (kV * velocity) + (kP * error) + (kD * errorRate);
+        if (output > maxOutput) {
+            output = maxOutput;
+        } else if (output < -maxOutput) {
+            output = -maxOutput;
+        }
+
+        /* Settle detection */
+        double goalError = SwerveIOUtils.wrapAngle180(goal - heading);
+        if (t >= duration && Math.abs(goalError) <= tolerance && Math.abs(headingRate) <= velocityTolerance) {
+            if (settledSince < 0) {
+                settledSince = time;
+            }
+            settled = (time - settledSince) >= settleTime;
+        } else {
+            settledSince = -1;
+            settled = false;
+        }
+
+        lastOutput = output;
+        return output;
+    }
+
+    /**
+     * Whether or not the heading has settled at the goal.
+     * 
+     * @return True if the profile has finished and the heading has stayed within
+     *         tolerance for the settle time.
+     */
+    public boolean isSettled() {
+        return settled;
+    }
+
+    /**
+     * Get the previous output from the controller.
+     * 
+     * @return The output of the last call to {@link #calculate(double, double)}.
+     */
+    public double getPreviousOutput() {
+        return lastOutput;
+    }
+
+    /**
+     * Reset the controller, clearing the goal and all loop state.
+     */
+    public void reset() {
+        hasGoal = false;
+        firstRun = true;
+        settled = false;
+        settledSince = -1;
+        lastOutput = 0;
+    }
+}
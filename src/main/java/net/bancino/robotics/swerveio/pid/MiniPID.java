@@ -42,6 +42,19 @@ public class MiniPID implements AbstractPIDController {
 
 	private double setpointRange = 0;
 
+	// Zero when continuous input is off, which makes the wrap a no-op.
+	private double continuousRange = 0;
+	private double continuousScale = 0;
+
+	// Zero when time-aware mode is off, and every cycle is one nominal period.
+	private double nominalPeriod = 0;
+	private long lastTimestamp = 0;
+	private double derivativeFilter = 0;
+	private double filteredDelta = 0;
+
+	// A gap of more than this many periods means the loop was paused, not late.
+	private static final double MAX_PERIODS = 10;
+
 	// **********************************
 	// Constructor functions
 	// **********************************
@@ -287,28 +300,71 @@ public class MiniPID implements AbstractPIDController {
 
 	/**
 	 * Calculate the output value for the current PID cycle.<br>
+	 * In time-aware mode, the time since the last cycle is measured with a
+	 * monotonic clock.
 	 * 
 	 * @param actual   The monitored value, typically as a sensor input.
 	 * @param setpoint The target value for the system
 	 * @return calculated output value for driving the system
 	 */
 	public double getOutput(double actual, double setpoint) {
+		if (nominalPeriod == 0) {
+			return calculate(actual, setpoint, 0);
+		}
+		long now = System.nanoTime();
+		double dt = firstRun ? nominalPeriod : (now - lastTimestamp) * 1e-9;
+		lastTimestamp = now;
+		return calculate(actual, setpoint, dt);
+	}
+
+	/**
+	 * Calculate the output value for the current PID cycle, with a known time
+	 * since the last cycle. This can only be used in time-aware mode.<br>
+	 * 
+	 * @see #setTimeAware(double)
+	 * @param actual   The monitored value, typically as a sensor input.
+	 * @param setpoint The target value for the system
+	 * @param dt       The time since the last cycle, in seconds.
+	 * @return calculated output value for driving the system
+	 */
+	public double getOutput(double actual, double setpoint, double dt) {
+		if (nominalPeriod == 0) {
+			throw new IllegalStateException("A time step can only be given in time-aware mode.");
+		}
+		lastTimestamp = System.nanoTime();
+		return calculate(actual, setpoint, dt);
+	}
+
+	private double calculate(double actual, double setpoint, double dt) {
 		double output;
 		double Poutput;
 		double Ioutput;
 		double Doutput;
 		double Foutput;
 
+		// Scale the I and D terms to the length of this cycle, so that they act as
+		// they would at the nominal period.
+		double iScale = 1;
+		double dScale = 1;
+		if (nominalPeriod != 0) {
+			dt = (dt > 0) ? Math.min(dt, nominalPeriod * MAX_PERIODS) : nominalPeriod;
+			iScale = dt / nominalPeriod;
+			dScale = nominalPeriod / dt;
+		}
+
 		this.setpoint = setpoint;
 
+		// Do the simple parts of the calculations. With continuous input, the error
+		// is wrapped to the shortest way around; otherwise this subtracts zero.
+		double error = setpoint - actual;
+		error -= continuousRange * Math.rint(error * continuousScale);
+
 		// Ramp the setpoint used for calculations if user has opted to do so
 		if (setpointRange != 0) {
-			setpoint = constrain(setpoint, actual - setpointRange, actual + setpointRange);
+			error = constrain(error, -setpointRange, setpointRange);
+			setpoint = actual + error;
 		}
 
-		// Do the simple parts of the calculations
-		double error = setpoint - actual;
-
 		// Calculate F output. Notice, this depends only on the setpoint, and not the
 		// error.
 		Foutput = F * setpoint;
@@ -323,13 +379,21 @@ public class MiniPID implements AbstractPIDController {
 		if (firstRun) {
 			lastActual = actual;
 			lastOutput = Poutput + Foutput;
+			filteredDelta = 0;
 			firstRun = false;
 		}
 
 		// Calculate D Term
 		// Note, this is negative. This actually "slows" the system if it's doing
 		// the correct thing, and small values helps prevent output spikes and overshoot
-		Doutput = -D * (actual - lastActual);
+		double delta = actual - lastActual;
+		delta -= continuousRange * Math.rint(delta * continuousScale);
+		delta *= dScale;
+		if (derivativeFilter != 0 && nominalPeriod != 0) {
+			filteredDelta += (dt / (derivativeFilter + dt)) * (delta - filteredDelta);
+			delta = filteredDelta;
+		}
+		Doutput = -D * delta;
 		lastActual = actual;
 
 		// The Iterm is more complex. There's several things to factor in to make it
@@ -356,11 +420,11 @@ public class MiniPID implements AbstractPIDController {
 		} else if (outputRampRate != 0 && !bounded(output, lastOutput - outputRampRate, lastOutput + outputRampRate)) {
 			errorSum = error;
 		} else if (maxIOutput != 0) {
-			errorSum = constrain(errorSum + error, -maxError, maxError);
+			errorSum = constrain(errorSum + error * iScale, -maxError, maxError);
 			// In addition to output limiting directly, we also want to prevent I term
 			// buildup, so restrict the error directly
 		} else {
-			errorSum += error;
+			errorSum += error * iScale;
 		}
 
 		// Restrict output to our specified output and ramp limits
@@ -419,6 +483,7 @@ public class MiniPID implements AbstractPIDController {
 	public void reset() {
 		firstRun = true;
 		errorSum = 0;
+		filteredDelta = 0;
 	}
 
 	/**
@@ -472,6 +537,107 @@ public class MiniPID implements AbstractPIDController {
 		}
 	}
 
+	/**
+	 * Turn on time-aware mode, where the I and D terms account for how long each
+	 * cycle actually took. Gains keep the meaning they have at the nominal period,
+	 * so gains tuned for one loop rate still hold if the loop runs late, or runs
+	 * at another rate entirely. <br>
+	 * The time between cycles is measured with a monotonic clock, or can be given
+	 * to {@link #getOutput(double, double, double)}. A gap of more than ten
+	 * nominal periods is treated as ten, so the I term doesn't jump after the
+	 * loop has been paused. <br>
+	 * This isn't part of {@link AbstractPIDController}, so it can only be turned
+	 * on with a reference to the MiniPID itself, such as by casting a module's
+	 * controller. Controllers in a {@link PIDBank} can't use it.
+	 * 
+	 * @param nominalPeriod The period the gains are tuned for, in seconds, or 0 to
+	 *                      turn time-aware mode off.
+	 */
+	public void setTimeAware(double nominalPeriod) {
+		if (nominalPeriod < 0) {
+			throw new IllegalArgumentException("Nominal period cannot be negative.");
+		}
+		this.nominalPeriod = nominalPeriod;
+	}
+
+	/**
+	 * @return The nominal period of time-aware mode, in seconds, or 0 if it is
+	 *         off.
+	 */
+	public double getNominalPeriod() {
+		return nominalPeriod;
+	}
+
+	/**
+	 * Filter the D term with a first order low-pass filter, to keep sensor noise
+	 * from being amplified by the derivative. This only applies in time-aware
+	 * mode, because the filter needs the time between cycles.
+	 * 
+	 * @param timeConstant The time constant of the filter, in seconds, or 0 to
+	 *                     turn the filter off.
+	 */
+	public void setDerivativeFilter(double timeConstant) {
+		if (timeConstant < 0) {
+			throw new IllegalArgumentException("Derivative filter time constant cannot be negative.");
+		}
+		derivativeFilter = timeConstant;
+	}
+
+	/**
+	 * Treat the input as continuous, such as an angle, so that the maximum and
+	 * minimum are the same point. Errors, and the change in input used by the D
+	 * term, are wrapped to the shortest way around the range.
+	 * 
+	 * @param min The minimum value of the input.
+	 * @param max The maximum value of the input, which is the same point as min.
+	 */
+	public void setContinuousInput(double min, double max) {
+		if (max <= min) {
+			throw new IllegalArgumentException("Continuous input maximum must be greater than the minimum.");
+		}
+		continuousRange = max - min;
+		continuousScale = 1 / continuousRange;
+	}
+
+	/**
+	 * Stop treating the input as continuous.
+	 */
+	public void disableContinuousInput() {
+		continuousRange = 0;
+		continuousScale = 0;
+	}
+
+	/**
+	 * @return Whether the input is being treated as continuous.
+	 */
+	public boolean isContinuousInputEnabled() {
+		return continuousRange != 0;
+	}
+
+	/**
+	 * Configure another controller the same way as this one. Only the
+	 * configuration is copied, not the state, and not time-aware mode.
+	 *
+	 * @param target The controller to configure.
+	 */
+	void copyConfiguration(AbstractPIDController target) {
+		// The gains only take the sign of the direction when they are set, so copy
+		// them with the direction they were set with, then the current direction.
+		target.setDirection(P < 0 || I < 0 || D < 0 || F < 0);
+		target.setPID(P, I, D, F);
+		target.setDirection(reversed);
+		target.setOutputLimits(minOutput, maxOutput);
+		target.setMaxIOutput(maxIOutput);
+		target.setOutputRampRate(outputRampRate);
+		target.setSetpointRange(setpointRange);
+		target.setOutputFilter(outputFilter);
+		if (continuousRange != 0) {
+			target.setContinuousInput(0, continuousRange);
+		} else {
+			target.disableContinuousInput();
+		}
+	}
+
 	// **************************************
 	// Helper functions
 	// **************************************
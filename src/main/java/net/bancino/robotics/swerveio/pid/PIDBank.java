@@ -0,0 +1,433 @@
+package net.bancino.robotics.swerveio.pid;
+
+import java.util.Arrays;
+
+/**
+ * A bank of PID controllers whose gains and state are all stored in parallel
+ * primitive arrays, instead of spread across the heap in separate objects. Each
+ * controller behaves exactly like a {@link MiniPID} with the same
+ * configuration: output limits, ramp rate, setpoint range, output filter, the
+ * I output limit, direction, and continuous input all work the same way.
+ * <p>
+ * There are two ways to use the bank. Each controller is available as a
+ * lightweight {@link AbstractPIDController} view, so it can be handed to
+ * anything that takes a PID controller, such as a swerve module. Or, the inputs
+ * of every controller can be set with {@link #setInput(int, double, double)},
+ * and all of them evaluated at once with {@link #evaluate()}, in one loop over
+ * the arrays.
+ * <p>
+ * MiniPID's time-aware mode is not supported; every controller in a bank
+ * assumes a fixed period. Like MiniPID, a bank is not thread-safe.
+ *
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class PIDBank {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int size = 0;
+
+    /* Gains and configuration. */
+    private double[] p, i, d, f;
+    private double[] maxIOutput, maxError;
+    private double[] minOutput, maxOutput;
+    private double[] outputRampRate, outputFilter, setpointRange;
+    private double[] continuousRange, continuousScale;
+    private boolean[] reversed;
+
+    /* State. */
+    private double[] errorSum, lastActual, lastOutput, setpoint;
+    private boolean[] firstRun;
+
+    /* Inputs for evaluate(). */
+    private double[] inputFeedback, inputSetpoint;
+
+    /**
+     * Create an empty PID bank.
+     */
+    public PIDBank() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty PID bank with room for a number of controllers. The bank
+     * grows if more are added.
+     *
+     * @param capacity The number of controllers to make room for.
+     */
+    public PIDBank(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("PID bank capacity must be at least 1.");
+        }
+        resize(capacity);
+    }
+
+    private void resize(int capacity) {
+        p = Arrays.copyOf(orEmpty(p), capacity);
+        i = Arrays.copyOf(orEmpty(i), capacity);
+        d = Arrays.copyOf(orEmpty(d), capacity);
+        f = Arrays.copyOf(orEmpty(f), capacity);
+        maxIOutput = Arrays.copyOf(orEmpty(maxIOutput), capacity);
+        maxError = Arrays.copyOf(orEmpty(maxError), capacity);
+        minOutput = Arrays.copyOf(orEmpty(minOutput), capacity);
+        maxOutput = Arrays.copyOf(orEmpty(maxOutput), capacity);
+        outputRampRate = Arrays.copyOf(orEmpty(outputRampRate), capacity);
+        outputFilter = Arrays.copyOf(orEmpty(outputFilter), capacity);
+        setpointRange = Arrays.copyOf(orEmpty(setpointRange), capacity);
+        continuousRange = Arrays.copyOf(orEmpty(continuousRange), capacity);
+        continuousScale = Arrays.copyOf(orEmpty(continuousScale), capacity);
+        reversed = (reversed == null) ? new boolean[capacity] : Arrays.copyOf(reversed, capacity);
+        errorSum = Arrays.copyOf(orEmpty(errorSum), capacity);
+        lastActual = Arrays.copyOf(orEmpty(lastActual), capacity);
+        lastOutput = Arrays.copyOf(orEmpty(lastOutput), capacity);
+        setpoint = Arrays.copyOf(orEmpty(setpoint), capacity);
+        firstRun = (firstRun == null) ? new boolean[capacity] : Arrays.copyOf(firstRun, capacity);
+        inputFeedback = Arrays.copyOf(orEmpty(inputFeedback), capacity);
+        inputSetpoint = Arrays.copyOf(orEmpty(inputSetpoint), capacity);
+    }
+
+    private static double[] orEmpty(double[] array) {
+        return (array == null) ? new double[0] : array;
+    }
+
+    /**
+     * Add a controller to the bank, with all gains zero, like
+     * {@code new MiniPID(0, 0, 0)}.
+     *
+     * @return A view of the new controller.
+     */
+    public Controller add() {
+        if (size == p.length) {
+            resize(p.length * 2);
+        }
+        firstRun[size] = true;
+        return new Controller(size++);
+    }
+
+    /**
+     * Move a controller into the bank. If the controller is a {@link MiniPID},
+     * a new controller is added to the bank with the same configuration, and its
+     * view is returned. Its state is not copied, so it starts fresh, as if it had
+     * just been reset. Any other controller, or a MiniPID in time-aware mode, is
+     * returned as it is.
+     *
+     * @param controller The controller to move into the bank.
+     * @return The controller to use in its place.
+     */
+    public AbstractPIDController adopt(AbstractPIDController controller) {
+        if (!(controller instanceof MiniPID) || ((MiniPID) controller).getNominalPeriod() != 0) {
+            return controller;
+        }
+        Controller view = add();
+        ((MiniPID) controller).copyConfiguration(view);
+        return view;
+    }
+
+    /**
+     * @return The number of controllers in the bank.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the view of a controller in the bank.
+     *
+     * @param index The index of the controller, in the order they were added.
+     * @return The view.
+     */
+    public Controller get(int index) {
+        checkIndex(index);
+        return new Controller(index);
+    }
+
+    /**
+     * Set the inputs of a controller for the next {@link #evaluate()}.
+     *
+     * @param index    The index of the controller.
+     * @param feedback The monitored value, typically a sensor input.
+     * @param setpoint The target value.
+     */
+    public void setInput(int index, double feedback, double setpoint) {
+        checkIndex(index);
+        inputFeedback[index] = feedback;
+        inputSetpoint[index] = setpoint;
+    }
+
+    /**
+     * Evaluate every controller in the bank with the inputs set by
+     * {@link #setInput(int, double, double)}. The outputs can then be read with
+     * {@link #getOutput(int)}.
+     */
+    public void evaluate() {
+        for (int n = 0; n < size; n++) {
+            calculate(n, inputFeedback[n], inputSetpoint[n]);
+        }
+    }
+
+    /**
+     * Get the most recent output of a controller.
+     *
+     * @param index The index of the controller.
+     * @return The output from the last time the controller was evaluated.
+     */
+    public double getOutput(int index) {
+        checkIndex(index);
+        return lastOutput[index];
+    }
+
+    /**
+     * Reset every controller in the bank.
+     */
+    public void reset() {
+        for (int n = 0; n < size; n++) {
+            firstRun[n] = true;
+            errorSum[n] = 0;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("No PID controller at index " + index + " in a bank of " + size);
+        }
+    }
+
+    /* The same calculation as MiniPID.getOutput(), on one column of the arrays. */
+    private double calculate(int n, double actual, double setpoint) {
+        this.setpoint[n] = setpoint;
+
+        double error = setpoint - actual;
+        error -= continuousRange[n] * Math.rint(error * continuousScale[n]);
+
+        double range = setpointRange[n];
+        if (range != 0) {
+            error = constrain(error, -range, range);
+            setpoint = actual + error;
+        }
+
+        double fOutput = f[n] * setpoint;
+        double pOutput = p[n] * error;
+
+        if (firstRun[n]) {
+            lastActual[n] = actual;
+            lastOutput[n] = pOutput + fOutput;
+            firstRun[n] = false;
+        }
+
+        double delta = actual - lastActual[n];
+        delta -= continuousRange[n] * Math.rint(delta * continuousScale[n]);
+        double dOutput = -d[n] * delta;
+        lastActual[n] = actual;
+
+        double maxI = maxIOutput[n];
+        double iOutput = i[n] * errorSum[n];
+        if (maxI != 0) {
+            iOutput = constrain(iOutput, -maxI, maxI);
+        }
+
+        double output = fOutput + pOutput + iOutput + dOutput;
+
+        double min = minOutput[n];
+        double max = maxOutput[n];
+        double ramp = outputRampRate[n];
+        double previous = lastOutput[n];
+        if (min != max && !bounded(output, min, max)) {
+            errorSum[n] = error;
+        } else if (ramp != 0 && !bounded(output, previous - ramp, previous + ramp)) {
+            errorSum[n] = error;
+        } else if (maxI != 0) {
+            errorSum[n] = constrain(errorSum[n] + error, -maxError[n], maxError[n]);
+        } else {
+            errorSum[n] += error;
+        }
+
+        if (ramp != 0) {
+            output = constrain(output, previous - ramp, previous + ramp);
+        }
+        if (min != max) {
+            output = constrain(output, min, max);
+        }
+        double filter = outputFilter[n];
+        if (filter != 0) {
+            output = previous * filter + output * (1 - filter);
+        }
+
+        lastOutput[n] = output;
+        return output;
+    }
+
+    private static double constrain(double value, double min, double max) {
+        if (value > max) {
+            return max;
+        }
+        if (value < min) {
+            return min;
+        }
+        return value;
+    }
+
+    private static boolean bounded(double value, double min, double max) {
+        return (min < value) && (value < max);
+    }
+
+    /* All gains take the sign of the direction, as in MiniPID. */
+    private void checkSigns(int n) {
+        double sign = reversed[n] ? -1 : 1;
+        p[n] = sign * Math.abs(p[n]);
+        i[n] = sign * Math.abs(i[n]);
+        d[n] = sign * Math.abs(d[n]);
+        f[n] = sign * Math.abs(f[n]);
+    }
+
+    /**
+     * A view of one controller in a {@link PIDBank}. It holds nothing but the
+     * bank and an index, so any number of views of the same controller can
+     * exist, and they all share its configuration and state.
+     */
+    public final class Controller implements AbstractPIDController {
+
+        private final int index;
+
+        private Controller(int index) {
+            this.index = index;
+        }
+
+        /**
+         * @return The index of this controller in its bank.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return The bank this controller is in.
+         */
+        public PIDBank getBank() {
+            return PIDBank.this;
+        }
+
+        @Override
+        public void setP(double p) {
+            PIDBank.this.p[index] = p;
+            checkSigns(index);
+        }
+
+        @Override
+        public void setI(double i) {
+            double[] gains = PIDBank.this.i;
+            if (gains[index] != 0) {
+                errorSum[index] = errorSum[index] * gains[index] / i;
+            }
+            if (maxIOutput[index] != 0) {
+                maxError[index] = maxIOutput[index] / i;
+            }
+            gains[index] = i;
+            checkSigns(index);
+        }
+
+        @Override
+        public void setD(double d) {
+            PIDBank.this.d[index] = d;
+            checkSigns(index);
+        }
+
+        @Override
+        public void setF(double f) {
+            PIDBank.this.f[index] = f;
+            checkSigns(index);
+        }
+
+        @Override
+        public void setPID(double p, double i, double d) {
+            PIDBank.this.p[index] = p;
+            PIDBank.this.d[index] = d;
+            setI(i);
+        }
+
+        @Override
+        public void setPID(double p, double i, double d, double f) {
+            PIDBank.this.f[index] = f;
+            setPID(p, i, d);
+        }
+
+        @Override
+        public void setMaxIOutput(double max) {
+            maxIOutput[index] = max;
+            if (i[index] != 0) {
+                maxError[index] = max / i[index];
+            }
+        }
+
+        @Override
+        public void setOutputLimits(double min, double max) {
+            if (max < min) {
+                return;
+            }
+            maxOutput[index] = max;
+            minOutput[index] = min;
+            if (maxIOutput[index] == 0 || maxIOutput[index] > (max - min)) {
+                setMaxIOutput(max - min);
+            }
+        }
+
+        @Override
+        public void setDirection(boolean reversed) {
+            PIDBank.this.reversed[index] = reversed;
+        }
+
+        @Override
+        public double getOutput(double feedback, double setpoint) {
+            return calculate(index, feedback, setpoint);
+        }
+
+        @Override
+        public double getPreviousOutput() {
+            return lastOutput[index];
+        }
+
+        @Override
+        public void reset() {
+            firstRun[index] = true;
+            errorSum[index] = 0;
+        }
+
+        @Override
+        public void setOutputRampRate(double rate) {
+            outputRampRate[index] = rate;
+        }
+
+        @Override
+        public void setSetpointRange(double range) {
+            setpointRange[index] = range;
+        }
+
+        @Override
+        public void setOutputFilter(double strength) {
+            if (strength == 0 || bounded(strength, 0, 1)) {
+                outputFilter[index] = strength;
+            }
+        }
+
+        @Override
+        public void setContinuousInput(double min, double max) {
+            if (max <= min) {
+                throw new IllegalArgumentException("Continuous input maximum must be greater than the minimum.");
+            }
+            continuousRange[index] = max - min;
+            continuousScale[index] = 1 / (max - min);
+        }
+
+        @Override
+        public void disableContinuousInput() {
+            continuousRange[index] = 0;
+            continuousScale[index] = 0;
+        }
+
+        @Override
+        public boolean isContinuousInputEnabled() {
+            return continuousRange[index] != 0;
+        }
+    }
+}
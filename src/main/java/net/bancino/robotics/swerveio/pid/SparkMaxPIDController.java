@@ -84,6 +84,21 @@ public class SparkMaxPIDController implements AbstractPIDController {
         throw new UnsupportedOperationException("Output filter not implemented in Spark Max PID controller.");
     }
 
+    @Override
+    public void setContinuousInput(double min, double max) {
+        throw new UnsupportedOperationException("Position wrapping is not supported by the Spark Max PID controller.");
+    }
+
+    @Override
+    public void disableContinuousInput() {
+        /* Continuous input can never be enabled, so it is always disabled. */
+    }
+
+    @Override
+    public boolean isContinuousInputEnabled() {
+        return false;
+    }
+
     @Override
     public double getPreviousOutput() {
         throw new UnsupportedOperationException(
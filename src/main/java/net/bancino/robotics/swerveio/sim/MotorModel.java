@@ -0,0 +1,128 @@
+package net.bancino.robotics.swerveio.sim;
+
+/**
+ * The constants of a brushed or brushless DC motor, taken from its
+ * manufacturer's curves. These are used to work out how a
+ * {@link SimulatedMotor} responds to a voltage.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class MotorModel {
+
+    /** A REV NEO brushless motor. */
+    public static final MotorModel NEO = new MotorModel(12, 2.6, 105, 1.8, 5676);
+
+    /** A REV NEO 550 brushless motor. */
+    public static final MotorModel NEO_550 = new MotorModel(12, 0.97, 100, 1.4, 11000);
+
+    /** A CIM motor. */
+    public static final MotorModel CIM = new MotorModel(12, 2.42, 133, 2.7, 5310);
+
+    private final double nominalVoltage;
+    private final double stallTorque;
+    private final double stallCurrent;
+    private final double freeCurrent;
+    private final double freeSpeed;
+
+    private final double resistance;
+    private final double kt;
+    private final double kv;
+
+    /**
+     * Create a motor model.
+     * 
+     * @param nominalVoltage The voltage that the other constants were measured
+     *                       at.
+     * @param stallTorque    The stall torque, in newton meters.
+     * @param stallCurrent   The stall current, in amps.
+     * @param freeCurrent    The free current, in amps.
+     * @param freeSpeedRPM   The free speed, in rotations per minute.
+     */
+    public MotorModel(double nominalVoltage, double stallTorque, double stallCurrent, double freeCurrent,
+            double freeSpeedRPM) {
+        if (nominalVoltage <= 0 || stallTorque <= 0 || stallCurrent <= 0 || freeSpeedRPM <= 0) {
+            throw new IllegalArgumentException("Motor constants must be greater than 0.");
+        }
+        if (freeCurrent < 0 || freeCurrent >= stallCurrent) {
+            throw new IllegalArgumentException("Free current must be between 0 and the stall current.");
+        }
+        this.nominalVoltage = nominalVoltage;
+        this.stallTorque = stallTorque;
+        this.stallCurrent = stallCurrent;
+        this.freeCurrent = freeCurrent;
+        this.freeSpeed = freeSpeedRPM * 2 * Math.PI / 60;
+
+        resistance = nominalVoltage / stallCurrent;
+        kt = stallTorque / stallCurrent;
+        kv = freeSpeed / (nominalVoltage - (resistance * freeCurrent));
+    }
+
+    /**
+     * @return The voltage that the constants were measured at.
+     */
+    public double getNominalVoltage() {
+        return nominalVoltage;
+    }
+
+    /**
+     * @return The stall torque, in newton meters.
+     */
+    public double getStallTorque() {
+        return stallTorque;
+    }
+
+    /**
+     * @return The stall current, in amps.
+     */
+    public double getStallCurrent() {
+        return stallCurrent;
+    }
+
+    /**
+     * @return The free current, in amps.
+     */
+    public double getFreeCurrent() {
+        return freeCurrent;
+    }
+
+    /**
+     * @return The free speed, in radians per second.
+     */
+    public double getFreeSpeed() {
+        return freeSpeed;
+    }
+
+    /**
+     * @return The winding resistance, in ohms.
+     */
+    public double getResistance() {
+        return resistance;
+    }
+
+    /**
+     * @return The torque constant, in newton meters per amp.
+     */
+    public double getTorqueConstant() {
+        return kt;
+    }
+
+    /**
+     * @return The velocity constant, in radians per second per volt.
+     */
+    public double getVelocityConstant() {
+        return kv;
+    }
+
+    /**
+     * Get the current that the motor draws.
+     * 
+     * @param voltage The applied voltage.
+     * @param speed   The speed of the motor shaft, in radians per second.
+     * @return The current, in amps.
+     */
+    public double getCurrent(double voltage, double speed) {
+        return (voltage - (speed / kv)) / resistance;
+    }
+}
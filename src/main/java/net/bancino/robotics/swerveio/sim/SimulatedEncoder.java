@@ -0,0 +1,66 @@
+package net.bancino.robotics.swerveio.sim;
+
+import java.util.function.DoubleSupplier;
+
+import net.bancino.robotics.swerveio.encoder.AbstractEncoder;
+
+/**
+ * A simulated encoder that reads the position of a simulated shaft. It can be
+ * relative, counting up forever like a motor's internal encoder, or absolute,
+ * wrapping around once per revolution like an analog encoder.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SimulatedEncoder implements AbstractEncoder {
+
+    private final DoubleSupplier shaft;
+    private final double countsPerRevolution;
+    private final boolean absolute;
+    private double offset = 0;
+
+    /**
+     * Create a simulated encoder.
+     * 
+     * @param shaft               Supplies the position of the shaft, in radians.
+     * @param countsPerRevolution The number of counts in one revolution of the
+     *                            shaft. A negative number counts the other way.
+     * @param absolute            Whether the encoder wraps around to zero every
+     *                            revolution.
+     */
+    public SimulatedEncoder(DoubleSupplier shaft, double countsPerRevolution, boolean absolute) {
+        if (shaft == null) {
+            throw new IllegalArgumentException("Shaft cannot be null.");
+        }
+        if (countsPerRevolution == 0) {
+            throw new IllegalArgumentException("Counts per revolution cannot be 0.");
+        }
+        this.shaft = shaft;
+        this.countsPerRevolution = countsPerRevolution;
+        this.absolute = absolute;
+    }
+
+    @Override
+    public double get() {
+        double counts = ((shaft.getAsDouble() / (2 * Math.PI)) * countsPerRevolution) - offset;
+        if (absolute) {
+            double range = Math.abs(countsPerRevolution);
+            counts %= range;
+            if (counts < 0) {
+                counts += range;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void set(double val) {
+        offset += get() - val;
+    }
+
+    @Override
+    public double countsPerRevolution() {
+        return Math.abs(countsPerRevolution);
+    }
+}
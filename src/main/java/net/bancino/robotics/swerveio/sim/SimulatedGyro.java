@@ -0,0 +1,44 @@
+package net.bancino.robotics.swerveio.sim;
+
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.gyro.AbstractGyro;
+
+/**
+ * A simulated gyro, whose heading is set by a {@link SwerveSimulation}.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SimulatedGyro implements AbstractGyro {
+
+    private volatile double heading = 0;
+    private volatile double offset = 0;
+
+    /**
+     * Set the true heading of the simulated robot.
+     * 
+     * @param heading The heading, in degrees, clockwise.
+     */
+    public void setHeading(double heading) {
+        this.heading = heading;
+    }
+
+    /**
+     * @return The true heading of the simulated robot, in degrees, clockwise,
+     *         without the offset from {@link #zero()}.
+     */
+    public double getHeading() {
+        return heading;
+    }
+
+    @Override
+    public double getAngle() {
+        return SwerveIOUtils.wrapAngle360(heading - offset);
+    }
+
+    @Override
+    public void zero() {
+        offset = heading;
+    }
+}
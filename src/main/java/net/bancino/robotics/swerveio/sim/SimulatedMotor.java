@@ -0,0 +1,171 @@
+package net.bancino.robotics.swerveio.sim;
+
+import edu.wpi.first.wpilibj.SpeedController;
+
+/**
+ * A simulated motor controller driving a DC motor through a gearbox into an
+ * inertial load. It can be handed to anything that takes a
+ * {@link SpeedController}.
+ * <p>
+ * The motor and its load form a first-order system, which is integrated
+ * exactly with {@link #update(double)}, so it is stable at any time step. The
+ * motor is modeled at a constant supply voltage, without current limiting or
+ * friction.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SimulatedMotor implements SpeedController {
+
+    private final MotorModel motor;
+    private final double gearRatio;
+    private final double inertia;
+    private final double timeConstant;
+    private final double speedPerVolt;
+
+    private double voltage = 12;
+    private double output = 0;
+    private boolean inverted = false;
+
+    /* The state of the output shaft, after the gearbox. */
+    private double position = 0;
+    private double velocity = 0;
+
+    /**
+     * Create a simulated motor.
+     * 
+     * @param motor     The model of motor.
+     * @param gearRatio The gear reduction between the motor and the load. For a
+     *                  10:1 reduction, this is 10.
+     * @param inertia   The moment of inertia of the load, in kilogram square
+     *                  meters, as seen at the output shaft.
+     */
+    public SimulatedMotor(MotorModel motor, double gearRatio, double inertia) {
+        if (motor == null) {
+            throw new IllegalArgumentException("Motor model cannot be null.");
+        }
+        if (gearRatio <= 0 || inertia <= 0) {
+            throw new IllegalArgumentException("Gear ratio and inertia must be greater than 0.");
+        }
+        this.motor = motor;
+        this.gearRatio = gearRatio;
+        this.inertia = inertia;
+        /*
+         * J * dw/dt = (G * kt / R) * (V - (G * w / kv)), so the output speed settles
+         * at V * kv / G with a time constant of R * J * kv / (G^2 * kt).
+         */
+        timeConstant = (motor.getResistance() * inertia * motor.getVelocityConstant())
+                / (gearRatio * gearRatio * motor.getTorqueConstant());
+        speedPerVolt = motor.getVelocityConstant() / gearRatio;
+    }
+
+    /**
+     * Advance the simulation.
+     * 
+     * @param dt The time step, in seconds.
+     */
+    public void update(double dt) {
+        double applied = output * voltage * ((inverted) ? -1 : 1);
+        double steadyState = applied * speedPerVolt;
+        double decay = Math.exp(-dt / timeConstant);
+        position += (steadyState * dt) + ((velocity - steadyState) * timeConstant * (1 - decay));
+        velocity = steadyState + ((velocity - steadyState) * decay);
+    }
+
+    /**
+     * Set the supply voltage, which is 12 volts by default.
+     * 
+     * @param voltage The supply voltage.
+     */
+    public void setSupplyVoltage(double voltage) {
+        this.voltage = voltage;
+    }
+
+    /**
+     * @return The position of the output shaft, in radians.
+     */
+    public double getPosition() {
+        return position;
+    }
+
+    /**
+     * Move the output shaft without simulating it, such as to set an initial
+     * position.
+     * 
+     * @param position The position of the output shaft, in radians.
+     */
+    public void setPosition(double position) {
+        this.position = position;
+    }
+
+    /**
+     * @return The speed of the output shaft, in radians per second.
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return The current the motor is drawing, in amps.
+     */
+    public double getCurrent() {
+        double applied = output * voltage * ((inverted) ? -1 : 1);
+        return motor.getCurrent(applied, velocity * gearRatio);
+    }
+
+    /**
+     * @return The gear reduction between the motor and the load.
+     */
+    public double getGearRatio() {
+        return gearRatio;
+    }
+
+    /**
+     * @return The moment of inertia of the load, in kilogram square meters.
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * @return The model of the motor.
+     */
+    public MotorModel getMotorModel() {
+        return motor;
+    }
+
+    @Override
+    public void set(double speed) {
+        output = Math.max(-1, Math.min(1, speed));
+    }
+
+    @Override
+    public double get() {
+        return output;
+    }
+
+    @Override
+    public void setInverted(boolean isInverted) {
+        inverted = isInverted;
+    }
+
+    @Override
+    public boolean getInverted() {
+        return inverted;
+    }
+
+    @Override
+    public void disable() {
+        output = 0;
+    }
+
+    @Override
+    public void stopMotor() {
+        output = 0;
+    }
+
+    public void pidWrite(double output) {
+        set(output);
+    }
+}
@@ -0,0 +1,136 @@
+package net.bancino.robotics.swerveio.sim;
+
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.module.GenericSwerveModule;
+import net.bancino.robotics.swerveio.si.Length;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * A simulated swerve module. This is a {@link GenericSwerveModule} driving two
+ * {@link SimulatedMotor}s, so the same pivot PID and output paths run as on a
+ * real module. The drive encoder counts motor revolutions, like a Spark Max's
+ * internal encoder, and the pivot encoder is an absolute encoder with 360
+ * counts per revolution of the module, like an analog encoder.
+ * <p>
+ * Each module drives its share of the robot's mass on its own; the
+ * {@link SwerveSimulation} reconciles the modules into the motion of the
+ * chassis. Call {@link #update(double)} to advance the motors, or let the
+ * simulation do it.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SimulatedSwerveModule extends GenericSwerveModule {
+
+    /** The drive gear reduction of an MK2 module. */
+    public static final double MK2_DRIVE_GEAR_RATIO = 8.33;
+    /** The pivot gear reduction of an MK2 module. */
+    public static final double MK2_PIVOT_GEAR_RATIO = 18;
+    /** The wheel diameter of an MK2 module. */
+    public static final Length MK2_WHEEL_DIAMETER = new Length(4, Unit.INCHES);
+    /** An estimate of the moment of inertia of an MK2 module about its pivot, in kilogram square meters. */
+    public static final double MK2_PIVOT_INERTIA = 0.004;
+
+    private final SimulatedMotor driveMotor;
+    private final SimulatedMotor pivotMotor;
+    private final double wheelRadius;
+
+    /**
+     * Create an MK2 swerve module with NEO motors and the same default pivot
+     * gains as the real one.
+     * 
+     * @param massPerModule The share of the robot's mass that this module
+     *                      carries, in kilograms.
+     * @return The simulated module.
+     */
+    public static SimulatedSwerveModule mk2(double massPerModule) {
+        SimulatedSwerveModule module = new SimulatedSwerveModule(MotorModel.NEO, MotorModel.NEO,
+                MK2_DRIVE_GEAR_RATIO, MK2_PIVOT_GEAR_RATIO, MK2_WHEEL_DIAMETER, massPerModule, MK2_PIVOT_INERTIA);
+        module.getPivotPIDController().setP(0.003);
+        return module;
+    }
+
+    /**
+     * Create a simulated swerve module.
+     * 
+     * @param driveMotor     The model of the drive motor.
+     * @param pivotMotor     The model of the pivot motor.
+     * @param driveGearRatio The gear reduction between the drive motor and the
+     *                       wheel.
+     * @param pivotGearRatio The gear reduction between the pivot motor and the
+     *                       module.
+     * @param wheelDiameter  The diameter of the wheel.
+     * @param massPerModule  The share of the robot's mass that this module
+     *                       carries, in kilograms.
+     * @param pivotInertia   The moment of inertia of the module about its pivot,
+     *                       in kilogram square meters.
+     */
+    public SimulatedSwerveModule(MotorModel driveMotor, MotorModel pivotMotor, double driveGearRatio,
+            double pivotGearRatio, Length wheelDiameter, double massPerModule, double pivotInertia) {
+        this(new SimulatedMotor(driveMotor, driveGearRatio, massPerModule * square(radius(wheelDiameter))),
+                new SimulatedMotor(pivotMotor, pivotGearRatio, pivotInertia), wheelDiameter);
+    }
+
+    private SimulatedSwerveModule(SimulatedMotor driveMotor, SimulatedMotor pivotMotor, Length wheelDiameter) {
+        /*
+         * The pivot encoder counts backwards, because the generic module inverts
+         * the pivot PID output.
+         */
+        super(driveMotor, pivotMotor, new SimulatedEncoder(driveMotor::getPosition, driveMotor.getGearRatio(), false),
+                new SimulatedEncoder(pivotMotor::getPosition, -360, true), driveMotor.getGearRatio(),
+                driveMotor.getMotorModel().getFreeSpeed() * 60 / (2 * Math.PI), wheelDiameter);
+        this.driveMotor = driveMotor;
+        this.pivotMotor = pivotMotor;
+        this.wheelRadius = radius(wheelDiameter);
+    }
+
+    private static double radius(Length wheelDiameter) {
+        if (wheelDiameter == null) {
+            throw new IllegalArgumentException("Wheel diameter must not be null.");
+        }
+        return wheelDiameter.get(Unit.METERS) / 2;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    /**
+     * Advance both motors.
+     * 
+     * @param dt The time step, in seconds.
+     */
+    public void update(double dt) {
+        driveMotor.update(dt);
+        pivotMotor.update(dt);
+    }
+
+    /**
+     * @return The simulated drive motor.
+     */
+    public SimulatedMotor getSimulatedDriveMotor() {
+        return driveMotor;
+    }
+
+    /**
+     * @return The simulated pivot motor.
+     */
+    public SimulatedMotor getSimulatedPivotMotor() {
+        return pivotMotor;
+    }
+
+    /**
+     * @return The true angle of the module, in degrees clockwise from forward.
+     */
+    public double getWheelAngle() {
+        return SwerveIOUtils.wrapAngle360(-Math.toDegrees(pivotMotor.getPosition()));
+    }
+
+    /**
+     * @return The true ground speed of the wheel, in meters per second.
+     */
+    public double getWheelSpeed() {
+        return driveMotor.getVelocity() * wheelRadius;
+    }
+}
@@ -0,0 +1,250 @@
+package net.bancino.robotics.swerveio.sim;
+
+import static java.lang.Math.cos;
+import static java.lang.Math.sin;
+import static java.lang.Math.toDegrees;
+import static java.lang.Math.toRadians;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import net.bancino.robotics.swerveio.SwerveDrive;
+import net.bancino.robotics.swerveio.SwerveFlag;
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+import net.bancino.robotics.swerveio.SwerveMeta;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.kinematics.SwerveKinematics;
+import net.bancino.robotics.swerveio.module.AbstractSwerveModule;
+import net.bancino.robotics.swerveio.si.ChassisDimension;
+
+/**
+ * A headless simulation of a whole swerve drive. It owns simulated modules
+ * and a simulated gyro, provides a {@link SwerveMeta} to build a
+ * {@link SwerveDrive} from them, and integrates the motion of the chassis from
+ * the motion of the modules at a fixed time step.
+ * <p>
+ * The simulation is not tied to the clock: {@link #step(double)} advances it
+ * by as much simulated time as asked, as fast as the computer can, so a match
+ * can be run in well under a second. A typical loop drives the swerve drive
+ * and then steps the simulation by the period of the loop.
+ * <p>
+ * The chassis moves with the least-squares fit of its modules, the same
+ * forward kinematics that odometry uses, so wheels are assumed not to slip and
+ * the modules don't load each other.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class SwerveSimulation {
+
+    /** The default time step, in seconds. */
+    public static final double DEFAULT_STEP = 1e-3;
+
+    /** The number of counts in one revolution of a simulated pivot encoder. */
+    public static final double COUNTS_PER_PIVOT_REVOLUTION = 360;
+
+    private final ChassisDimension chassisDimension;
+    private final Map<SwerveModule, SimulatedSwerveModule> moduleMap;
+    private final SimulatedSwerveModule[] modules;
+    private final SwerveKinematics kinematics;
+    private final SimulatedGyro gyro = new SimulatedGyro();
+    private final double step;
+
+    private final double[] moduleVectors;
+    private final double[] chassisMotion = new double[3];
+    private double x, y, heading, time;
+
+    /**
+     * Simulate a square or rectangular chassis with an MK2 module on each
+     * corner.
+     * 
+     * @param chassisDimension The dimensions of the chassis.
+     * @param robotMass        The mass of the robot, in kilograms.
+     * @return The simulation.
+     */
+    public static SwerveSimulation mk2(ChassisDimension chassisDimension, double robotMass) {
+        Map<SwerveModule, SimulatedSwerveModule> modules = new EnumMap<>(SwerveModule.class);
+        modules.put(SwerveModule.FRONT_LEFT, SimulatedSwerveModule.mk2(robotMass / 4));
+        modules.put(SwerveModule.FRONT_RIGHT, SimulatedSwerveModule.mk2(robotMass / 4));
+        modules.put(SwerveModule.REAR_LEFT, SimulatedSwerveModule.mk2(robotMass / 4));
+        modules.put(SwerveModule.REAR_RIGHT, SimulatedSwerveModule.mk2(robotMass / 4));
+        return new SwerveSimulation(chassisDimension, modules, DEFAULT_STEP);
+    }
+
+    /**
+     * Create a swerve simulation.
+     * 
+     * @param chassisDimension The dimensions of the chassis.
+     * @param modules          The modules, on the corners of the chassis.
+     * @param step             The time step to integrate at, in seconds.
+     */
+    public SwerveSimulation(ChassisDimension chassisDimension, Map<SwerveModule, SimulatedSwerveModule> modules,
+            double step) {
+        if (chassisDimension == null) {
+            throw new IllegalArgumentException("Chassis dimension cannot be null.");
+        }
+        if (modules == null || modules.isEmpty()) {
+            throw new IllegalArgumentException("A swerve simulation needs modules.");
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be greater than 0.");
+        }
+        this.chassisDimension = chassisDimension;
+        this.moduleMap = Collections.unmodifiableMap(new EnumMap<>(modules));
+        this.step = step;
+        kinematics = SwerveKinematics.fromChassisDimension(chassisDimension);
+        SwerveModule[] keys = kinematics.getModules();
+        this.modules = new SimulatedSwerveModule[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            this.modules[i] = modules.get(keys[i]);
+            if (this.modules[i] == null) {
+                throw new IllegalArgumentException("No simulated module for " + keys[i]);
+            }
+        }
+        moduleVectors = new double[keys.length * 2];
+    }
+
+    /**
+     * Get a swerve meta that builds a swerve drive from this simulation.
+     * 
+     * @param name  The name of the swerve drive.
+     * @param flags The flags to apply, or null for none.
+     * @return A swerve meta for the simulated modules and gyro.
+     */
+    public SwerveMeta getMeta(String name, List<SwerveFlag> flags) {
+        return new SwerveMeta() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public ChassisDimension chassisDimensions() {
+                return chassisDimension;
+            }
+
+            @Override
+            public double countsPerPivotRevolution() {
+                return COUNTS_PER_PIVOT_REVOLUTION;
+            }
+
+            @Override
+            public Map<SwerveModule, AbstractSwerveModule> moduleMap() {
+                return new EnumMap<>(moduleMap);
+            }
+
+            @Override
+            public SimulatedGyro gyro() {
+                return gyro;
+            }
+
+            @Override
+            public void modifyModule(AbstractSwerveModule module) {
+                /* The simulated modules are already configured. */
+            }
+
+            @Override
+            public void initialize(SwerveDrive swerve) {
+                /* Nothing to initialize. */
+            }
+
+            @Override
+            public List<SwerveFlag> applyFlags() {
+                return flags;
+            }
+        };
+    }
+
+    /**
+     * Advance the simulation. This is broken into fixed time steps; any remainder
+     * shorter than a step is simulated as one shorter step.
+     * 
+     * @param seconds The amount of simulated time to advance by.
+     */
+    public void step(double seconds) {
+        while (seconds > 0) {
+            double dt = Math.min(step, seconds);
+            integrate(dt);
+            seconds -= dt;
+        }
+    }
+
+    private void integrate(double dt) {
+        for (int i = 0; i < modules.length; i++) {
+            SimulatedSwerveModule module = modules[i];
+            module.update(dt);
+            double angle = toRadians(module.getWheelAngle());
+            double distance = module.getWheelSpeed() * dt;
+            moduleVectors[i * 2] = distance * sin(angle);
+            moduleVectors[(i * 2) + 1] = distance * cos(angle);
+        }
+        kinematics.toChassisMotion(moduleVectors, chassisMotion);
+
+        double deltaHeading = toDegrees(chassisMotion[2] / kinematics.getRadius());
+        double midHeading = toRadians(heading + (deltaHeading / 2));
+        x += (chassisMotion[0] * cos(midHeading)) - (chassisMotion[1] * sin(midHeading));
+        y += (chassisMotion[0] * sin(midHeading)) + (chassisMotion[1] * cos(midHeading));
+        heading = SwerveIOUtils.wrapAngle360(heading + deltaHeading);
+        gyro.setHeading(heading);
+        time += dt;
+    }
+
+    /**
+     * Move the simulated robot, without simulating it.
+     * 
+     * @param x       The X position, in meters.
+     * @param y       The Y position, in meters.
+     * @param heading The heading, in degrees, clockwise.
+     */
+    public void reset(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = SwerveIOUtils.wrapAngle360(heading);
+        gyro.setHeading(this.heading);
+    }
+
+    /**
+     * @return The true X (forward) position of the robot, in meters.
+     */
+    public double getX() {
+        return x;
+    }
+
+    /**
+     * @return The true Y (right) position of the robot, in meters.
+     */
+    public double getY() {
+        return y;
+    }
+
+    /**
+     * @return The true heading of the robot, in degrees, clockwise.
+     */
+    public double getHeading() {
+        return heading;
+    }
+
+    /**
+     * @return The amount of time that has been simulated, in seconds.
+     */
+    public double getTime() {
+        return time;
+    }
+
+    /**
+     * @return The simulated gyro.
+     */
+    public SimulatedGyro getGyro() {
+        return gyro;
+    }
+
+    /**
+     * @return The simulated modules.
+     */
+    public Map<SwerveModule, SimulatedSwerveModule> getModules() {
+        return moduleMap;
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Simulated swerve modules, encoders, motors, and gyros, so that a swerve drive
+ * can be run headless on a desktop without any hardware, for benchmarking,
+ * testing, and tuning.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+package net.bancino.robotics.swerveio.sim;
@@ -0,0 +1,360 @@
+package net.bancino.robotics.swerveio.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import edu.wpi.first.wpilibj.trajectory.Trajectory;
+import edu.wpi.first.wpilibj.trajectory.TrajectoryUtil;
+
+/**
+ * A trajectory that has been resampled onto a uniform time grid and stored as
+ * flat columns of floats. Because the grid is uniform, sampling is a direct
+ * index and a linear interpolation instead of a search, and because the columns
+ * are flat, a compiled trajectory can be saved to a file and memory-mapped
+ * back, so loading it costs almost nothing and it takes almost no heap.
+ * <p>
+ * {@link #fromPathweaverJson(Path)} keeps a compiled copy of a Pathweaver JSON
+ * file next to it, and only parses the JSON again when it has changed. The
+ * {@link #main(String[])} method compiles every Pathweaver JSON file in a
+ * directory ahead of time.
+ * <p>
+ * A compiled file is a header of the magic number {@link #MAGIC}, the
+ * {@link #VERSION}, the length and CRC32 of the source file it was compiled
+ * from, the grid step, the total time, the number of samples, and the number
+ * of columns, followed by each column in turn as one float per sample.
+ * Everything is big-endian.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class CompiledTrajectory {
+
+    /** The magic number at the start of a compiled trajectory, "SWTJ". */
+    public static final int MAGIC = 0x5357544A;
+
+    /** The version of the compiled trajectory format. */
+    public static final int VERSION = 1;
+
+    /** The file extension given to compiled trajectories. */
+    public static final String EXTENSION = ".bin";
+
+    /** The default grid step, in seconds. */
+    public static final double DEFAULT_STEP = 0.01;
+
+    /** The column of the X position, in meters. */
+    public static final int X = 0;
+    /** The column of the Y position, in meters. */
+    public static final int Y = 1;
+    /**
+     * The column of the pose heading, in radians. This is unwrapped, so it is
+     * continuous and can be interpolated.
+     */
+    public static final int HEADING = 2;
+    /** The column of the velocity, in meters per second. */
+    public static final int VELOCITY = 3;
+    /** The column of the acceleration, in meters per second squared. */
+    public static final int ACCELERATION = 4;
+    /** The column of the curvature, in radians per meter. */
+    public static final int CURVATURE = 5;
+    /** The number of columns. */
+    public static final int COLUMNS = 6;
+
+    private static final int HEADER_SIZE = (2 * Integer.BYTES) + Long.BYTES + Integer.BYTES + (2 * Double.BYTES)
+            + (2 * Integer.BYTES);
+
+    private final ByteBuffer data;
+    private final long sourceLength;
+    private final int sourceCrc;
+    private final double step;
+    private final double totalTime;
+    private final int count;
+
+    private CompiledTrajectory(ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.capacity() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a compiled trajectory.");
+        }
+        int version = data.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Unsupported compiled trajectory version: " + version);
+        }
+        sourceLength = data.getLong(2 * Integer.BYTES);
+        sourceCrc = data.getInt((2 * Integer.BYTES) + Long.BYTES);
+        step = data.getDouble((3 * Integer.BYTES) + Long.BYTES);
+        totalTime = data.getDouble((3 * Integer.BYTES) + Long.BYTES + Double.BYTES);
+        count = data.getInt((3 * Integer.BYTES) + Long.BYTES + (2 * Double.BYTES));
+        int columns = data.getInt((4 * Integer.BYTES) + Long.BYTES + (2 * Double.BYTES));
+        if (columns != COLUMNS || count < 1 || step <= 0
+                || data.capacity() != HEADER_SIZE + ((long) COLUMNS * count * Float.BYTES)) {
+            throw new IOException("Compiled trajectory is truncated or corrupt.");
+        }
+    }
+
+    /**
+     * Compile a trajectory onto a uniform time grid.
+     * 
+     * @param trajectory   The trajectory to compile.
+     * @param step         The grid step, in seconds.
+     * @param sourceLength The length of the file the trajectory was read from, or
+     *                     zero if it wasn't read from a file.
+     * @param sourceCrc    The CRC32 of the file the trajectory was read from, or
+     *                     zero.
+     * @return The compiled trajectory, held in memory.
+     */
+    public static CompiledTrajectory compile(Trajectory trajectory, double step, long sourceLength, int sourceCrc) {
+        if (trajectory == null) {
+            throw new IllegalArgumentException("Trajectory cannot be null.");
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("Step must be greater than 0.");
+        }
+        double totalTime = trajectory.getTotalTimeSeconds();
+        int count = (int) Math.ceil(totalTime / step) + 1;
+
+        ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE + (COLUMNS * count * Float.BYTES));
+        data.putInt(MAGIC).putInt(VERSION).putLong(sourceLength).putInt(sourceCrc).putDouble(step)
+                .putDouble(totalTime).putInt(count).putInt(COLUMNS);
+
+        double lastRaw = 0;
+        double heading = 0;
+        for (int i = 0; i < count; i++) {
+            Trajectory.State state = trajectory.sample(Math.min(i * step, totalTime));
+            double raw = state.poseMeters.getRotation().getRadians();
+            if (i == 0) {
+                heading = raw;
+            } else {
+                double delta = raw - lastRaw;
+                heading += Math.IEEEremainder(delta, 2 * Math.PI);
+            }
+            lastRaw = raw;
+            put(data, count, X, i, state.poseMeters.getTranslation().getX());
+            put(data, count, Y, i, state.poseMeters.getTranslation().getY());
+            put(data, count, HEADING, i, heading);
+            put(data, count, VELOCITY, i, state.velocityMetersPerSecond);
+            put(data, count, ACCELERATION, i, state.accelerationMetersPerSecondSq);
+            put(data, count, CURVATURE, i, state.curvatureRadPerMeter);
+        }
+        data.clear();
+        try {
+            return new CompiledTrajectory(data);
+        } catch (IOException e) {
+            throw new IllegalStateException("Compiled an invalid trajectory.", e);
+        }
+    }
+
+    private static void put(ByteBuffer data, int count, int column, int index, double value) {
+        data.putFloat(HEADER_SIZE + (((column * count) + index) * Float.BYTES), (float) value);
+    }
+
+    /**
+     * Memory-map a compiled trajectory file.
+     * 
+     * @param file The compiled trajectory to map.
+     * @return The compiled trajectory, backed by the file.
+     * @throws IOException If the file can't be read or isn't a valid compiled
+     *                     trajectory.
+     */
+    public static CompiledTrajectory map(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new CompiledTrajectory(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Load a Pathweaver JSON trajectory, compiling it if there is no up-to-date
+     * compiled copy next to it. The compiled copy has the same name with
+     * {@link #EXTENSION} in place of ".json", and is only rebuilt when the length
+     * or CRC32 of the JSON file no longer matches. If the compiled copy can't be
+     * written, the trajectory is still compiled and used from memory.
+     * 
+     * @param json The Pathweaver JSON file.
+     * @return The compiled trajectory.
+     * @throws IOException If the JSON file can't be read or parsed.
+     */
+    public static CompiledTrajectory fromPathweaverJson(Path json) throws IOException {
+        return fromPathweaverJson(json, DEFAULT_STEP);
+    }
+
+    /**
+     * Load a Pathweaver JSON trajectory, compiling it with the given step if there
+     * is no up-to-date compiled copy next to it.
+     * 
+     * @param json The Pathweaver JSON file.
+     * @param step The grid step, in seconds.
+     * @return The compiled trajectory.
+     * @throws IOException If the JSON file can't be read or parsed.
+     */
+    public static CompiledTrajectory fromPathweaverJson(Path json, double step) throws IOException {
+        long length = Files.size(json);
+        int crc = crc32(json);
+        File compiledFile = getCompiledPath(json).toFile();
+        if (compiledFile.isFile()) {
+            try {
+                CompiledTrajectory compiled = map(compiledFile);
+                if (compiled.sourceLength == length && compiled.sourceCrc == crc && compiled.step == step) {
+                    return compiled;
+                }
+            } catch (IOException e) {
+                /* Stale or damaged, so compile it again. */
+            }
+        }
+        CompiledTrajectory compiled = compile(TrajectoryUtil.fromPathweaverJson(json), step, length, crc);
+        try {
+            compiled.save(compiledFile);
+            return map(compiledFile);
+        } catch (IOException e) {
+            return compiled;
+        }
+    }
+
+    /**
+     * Get the path that the compiled copy of a source file is kept at.
+     * 
+     * @param source The source trajectory file.
+     * @return The path of its compiled copy.
+     */
+    public static Path getCompiledPath(Path source) {
+        String name = source.getFileName().toString();
+        if (name.endsWith(".json")) {
+            name = name.substring(0, name.length() - ".json".length());
+        }
+        return source.resolveSibling(name + EXTENSION);
+    }
+
+    private static int crc32(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Save this compiled trajectory to a file, so that it can be mapped later.
+     * The file is written to a temporary file first and then moved into place,
+     * so a half-written file is never mapped.
+     * 
+     * @param file The file to save to.
+     * @throws IOException If the file can't be written.
+     */
+    public void save(File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer source = data.duplicate();
+            source.clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Get a single value at a grid point.
+     * 
+     * @param column The column to read.
+     * @param index  The grid index, from 0 to {@link #getSampleCount()} - 1.
+     * @return The value.
+     */
+    public double get(int column, int index) {
+        if (column < 0 || column >= COLUMNS) {
+            throw new IndexOutOfBoundsException("No column " + column);
+        }
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("No sample " + index + " in a trajectory of " + count);
+        }
+        return data.getFloat(HEADER_SIZE + (((column * count) + index) * Float.BYTES));
+    }
+
+    /**
+     * Sample the trajectory at a time, interpolating between the grid points on
+     * either side of it. This doesn't allocate.
+     * 
+     * @param time The time, in seconds. Times outside of the trajectory give the
+     *             first or last state.
+     * @param out  An array of at least {@link #COLUMNS}, filled with the state
+     *             at each column's index.
+     */
+    public void sample(double time, double[] out) {
+        double position = Math.max(0, Math.min(time, totalTime)) / step;
+        int index = Math.min((int) position, count - 1);
+        int next = Math.min(index + 1, count - 1);
+        /* The last grid point is clamped to the total time, so it may be closer than one step. */
+        double nextTime = Math.min(next * step, totalTime);
+        double span = nextTime - (index * step);
+        double fraction = (span > 0) ? ((Math.min(time, totalTime) - (index * step)) / span) : 0;
+        fraction = Math.max(0, Math.min(1, fraction));
+        for (int c = 0; c < COLUMNS; c++) {
+            int offset = HEADER_SIZE + (c * count * Float.BYTES);
+            double v0 = data.getFloat(offset + (index * Float.BYTES));
+            double v1 = data.getFloat(offset + (next * Float.BYTES));
+            out[c] = v0 + ((v1 - v0) * fraction);
+        }
+    }
+
+    /**
+     * Get the duration of the trajectory.
+     * 
+     * @return The total time, in seconds.
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Get the grid step.
+     * 
+     * @return The time between grid points, in seconds.
+     */
+    public double getStep() {
+        return step;
+    }
+
+    /**
+     * Get the number of grid points.
+     * 
+     * @return The sample count.
+     */
+    public int getSampleCount() {
+        return count;
+    }
+
+    /**
+     * Compile every Pathweaver JSON file in a directory ahead of time, so the
+     * robot never has to parse them.
+     * 
+     * @param args The directory to compile, which defaults to src/main/deploy,
+     *             and optionally the grid step in seconds.
+     * @throws IOException If a file can't be read, parsed, or written.
+     */
+    public static void main(String[] args) throws IOException {
+        File directory = new File((args.length > 0) ? args[0] : "src/main/deploy");
+        double step = (args.length > 1) ? Double.parseDouble(args[1]) : DEFAULT_STEP;
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        for (File file : files) {
+            long start = System.nanoTime();
+            CompiledTrajectory compiled = fromPathweaverJson(file.toPath(), step);
+            System.out.printf("%s: %d samples, %.2f s, %d bytes, %.1f ms%n", file.getName(),
+                    compiled.getSampleCount(), compiled.getTotalTime(), compiled.data.capacity(),
+                    (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package net.bancino.robotics.swerveio.trajectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A time-parameterized heading for a holonomic robot to follow alongside a
+ * {@link CompiledTrajectory}, so that it can turn while it drives instead of
+ * stopping to rotate afterwards.
+ * <p>
+ * The profile is built from rotation keyframes, each giving the heading the
+ * robot should have once it has driven a certain distance along the
+ * trajectory. The keyframes of a trajectory are kept next to it, in a
+ * {@link #ROTATIONS_SUFFIX rotations file} of the same name, so they always
+ * describe the path they are followed on. Between two keyframes, the robot
+ * turns the short way around with a trapezoidal profile that is stretched to
+ * take the whole segment, so it arrives at each keyframe just as the
+ * trajectory does. If a turn can't be made in time within the angular velocity
+ * and acceleration limits, it is made as quickly as possible and finishes
+ * late, and the next turn starts after it.
+ * <p>
+ * The whole profile is computed onto the same uniform time grid as the
+ * trajectory when it is built, so sampling is a direct index and a linear
+ * interpolation. Headings are in radians, counter-clockwise, like the
+ * {@link CompiledTrajectory#HEADING} column.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class HeadingProfile {
+
+    /** The index of the heading, in radians, in a sample. */
+    public static final int HEADING = 0;
+    /** The index of the angular velocity, in radians per second, in a sample. */
+    public static final int ANGULAR_VELOCITY = 1;
+    /** The number of values in a sample. */
+    public static final int COLUMNS = 2;
+
+    /** The default angular velocity limit, in radians per second. */
+    public static final double DEFAULT_MAX_VELOCITY = 2 * Math.PI;
+    /** The default angular acceleration limit, in radians per second squared. */
+    public static final double DEFAULT_MAX_ACCELERATION = 4 * Math.PI;
+
+    /**
+     * The suffix of the rotations file that goes with a trajectory. The
+     * keyframes of {@code 5ball.wpilib.json} are in {@code 5ball.rotations}.
+     */
+    public static final String ROTATIONS_SUFFIX = ".rotations";
+
+    private final double step;
+    private final double totalTime;
+    private final double[] heading;
+    private final double[] velocity;
+
+    private HeadingProfile(double step, double[] heading, double[] velocity) {
+        this.step = step;
+        this.heading = heading;
+        this.velocity = velocity;
+        this.totalTime = (heading.length - 1) * step;
+    }
+
+    /**
+     * Get the rotations file that goes with a Pathweaver trajectory.
+     * 
+     * @param trajectoryFile The trajectory's JSON file.
+     * @return The rotations file next to it. It may not exist.
+     */
+    public static Path getRotationsFile(Path trajectoryFile) {
+        String name = trajectoryFile.getFileName().toString();
+        for (String suffix : new String[] { ".wpilib.json", ".json" }) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+                break;
+            }
+        }
+        return trajectoryFile.resolveSibling(name + ROTATIONS_SUFFIX);
+    }
+
+    /**
+     * Read rotation keyframes from a rotations file. The file is a JSON object
+     * whose {@code "rotations"} object maps a distance along the trajectory, in
+     * the trajectory's own units, to a heading in degrees, counter-clockwise,
+     * like {@code {"rotations": {"0": 0, "2.5": 90}}}.
+     * 
+     * @param file The rotations file to read.
+     * @return The keyframes, mapping a distance to a heading in radians. This is
+     *         empty if the file has no rotations.
+     * @throws IOException If the file can't be read or parsed.
+     */
+    public static NavigableMap<Double, Double> readKeyframes(Path file) throws IOException {
+        NavigableMap<Double, Double> keyframes = new TreeMap<>();
+        JsonNode rotations = new ObjectMapper().readTree(file.toFile()).get("rotations");
+        if (rotations == null || !rotations.isObject()) {
+            return keyframes;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = rotations.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            try {
+                keyframes.put(Double.parseDouble(field.getKey()), Math.toRadians(field.getValue().asDouble()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid rotation keyframe distance: " + field.getKey(), e);
+            }
+        }
+        return keyframes;
+    }
+
+    /**
+     * Build a heading profile with the default limits.
+     * 
+     * @param trajectory The trajectory the profile runs alongside.
+     * @param keyframes  The keyframes, mapping a distance along the trajectory
+     *                   to a heading in radians.
+     * @return The heading profile.
+     * @throws IllegalArgumentException If a keyframe is before the start or past
+     *                                  the end of the trajectory.
+     */
+    public static HeadingProfile build(CompiledTrajectory trajectory, NavigableMap<Double, Double> keyframes) {
+        return build(trajectory, keyframes, DEFAULT_MAX_VELOCITY, DEFAULT_MAX_ACCELERATION);
+    }
+
+    /**
+     * Build a heading profile.
+     * 
+     * @param trajectory      The trajectory the profile runs alongside.
+     * @param keyframes       The keyframes, mapping a distance along the
+     *                        trajectory, in its own units, to a heading in
+     *                        radians. If there is no keyframe at the start, the
+     *                        heading of the first keyframe is held from the
+     *                        start.
+     * @param maxVelocity     The angular velocity limit, in radians per second.
+     * @param maxAcceleration The angular acceleration limit, in radians per
+     *                        second squared.
+     * @return The heading profile.
+     * @throws IllegalArgumentException If a keyframe is before the start or past
+     *                                  the end of the trajectory.
+     */
+    public static HeadingProfile build(CompiledTrajectory trajectory, NavigableMap<Double, Double> keyframes,
+            double maxVelocity, double maxAcceleration) {
+        if (trajectory == null) {
+            throw new IllegalArgumentException("Trajectory cannot be null.");
+        }
+        if (keyframes == null || keyframes.isEmpty()) {
+            throw new IllegalArgumentException("A heading profile needs at least one keyframe.");
+        }
+        if (maxVelocity <= 0 || maxAcceleration <= 0) {
+            throw new IllegalArgumentException("Angular velocity and acceleration limits must be greater than 0.");
+        }
+        double step = trajectory.getStep();
+        int count = trajectory.getSampleCount();
+
+        /* How far along the trajectory is each grid point? */
+        double[] distance = new double[count];
+        for (int i = 1; i < count; i++) {
+            double dx = trajectory.get(CompiledTrajectory.X, i) - trajectory.get(CompiledTrajectory.X, i - 1);
+            double dy = trajectory.get(CompiledTrajectory.Y, i) - trajectory.get(CompiledTrajectory.Y, i - 1);
+            distance[i] = distance[i - 1] + Math.hypot(dx, dy);
+        }
+        double length = distance[count - 1];
+        if (keyframes.firstKey() < 0 || keyframes.lastKey() > length * (1 + 1e-9)) {
+            throw new IllegalArgumentException("Rotation keyframes from " + keyframes.firstKey() + " to "
+                    + keyframes.lastKey() + " don't fit on a trajectory of length " + length + ".");
+        }
+
+        /* When is each keyframe reached, and what is its heading the short way around from the last? */
+        int segments = keyframes.size();
+        double[] times = new double[segments];
+        double[] headings = new double[segments];
+        int k = 0;
+        for (Map.Entry<Double, Double> keyframe : keyframes.entrySet()) {
+            times[k] = timeAtDistance(distance, keyframe.getKey(), step, trajectory.getTotalTime());
+            headings[k] = (k == 0) ? keyframe.getValue()
+                    : headings[k - 1] + Math.IEEEremainder(keyframe.getValue() - headings[k - 1], 2 * Math.PI);
+            k++;
+        }
+
+        /* Plan one trapezoid per pair of keyframes. */
+        double[] starts = new double[segments];
+        double[] cruise = new double[segments];
+        double[] accelTime = new double[segments];
+        double[] cruiseTime = new double[segments];
+        double end = times[0];
+        for (k = 0; k + 1 < segments; k++) {
+            starts[k] = Math.max(times[k], end);
+            double travel = Math.abs(headings[k + 1] - headings[k]);
+            double window = times[k + 1] - starts[k];
+            double v = maxVelocity;
+            double discriminant = (maxAcceleration * maxAcceleration * window * window)
+                    - (4 * maxAcceleration * travel);
+            if (window > 0 && discriminant >= 0) {
+                /* Slowest cruise that still arrives on time, so the turn is spread over the segment. */
+                v = Math.min(maxVelocity, ((maxAcceleration * window) - Math.sqrt(discriminant)) / 2);
+            }
+            if (travel < (v * v) / maxAcceleration) {
+                v = Math.sqrt(travel * maxAcceleration);
+            }
+            cruise[k] = v;
+            accelTime[k] = (v > 0) ? v / maxAcceleration : 0;
+            cruiseTime[k] = (v > 0) ? (travel / v) - accelTime[k] : 0;
+            end = starts[k] + (2 * accelTime[k]) + cruiseTime[k];
+        }
+
+        double totalTime = Math.max(trajectory.getTotalTime(), end);
+        int profileCount = (int) Math.ceil(totalTime / step) + 1;
+        double[] heading = new double[profileCount];
+        double[] velocity = new double[profileCount];
+        int segment = 0;
+        for (int i = 0; i < profileCount; i++) {
+            double time = i * step;
+            while (segment + 1 < segments - 1 && time >= starts[segment + 1]) {
+                segment++;
+            }
+            if (segments == 1 || time < starts[0]) {
+                heading[i] = headings[0];
+                continue;
+            }
+            double direction = Math.signum(headings[segment + 1] - headings[segment]);
+            double a = accelTime[segment];
+            double c = cruiseTime[segment];
+            double v = cruise[segment];
+            double accel = v / Math.max(a, Double.MIN_VALUE);
+            double t = time - starts[segment];
+            double travelled;
+            double rate;
+            if (t <= 0) {
+                travelled = 0;
+                rate = 0;
+            } else if (t < a) {
+                travelled = 0.5 * accel * t * t;
+                rate = accel * t;
+            } else if (t < a + c) {
+                travelled = (0.5 * v * a) + (v * (t - a));
+                rate = v;
+            } else if (t < (2 * a) + c) {
+                double remaining = (2 * a) + c - t;
+                travelled = (v * a) + (v * c) - (0.5 * accel * remaining * remaining);
+                rate = accel * remaining;
+            } else {
+                travelled = Math.abs(headings[segment + 1] - headings[segment]);
+                rate = 0;
+            }
+            heading[i] = headings[segment] + (direction * travelled);
+            velocity[i] = direction * rate;
+        }
+        return new HeadingProfile(step, heading, velocity);
+    }
+
+    private static double timeAtDistance(double[] distance, double target, double step, double totalTime) {
+        if (target <= 0) {
+            return 0;
+        }
+        int low = 0;
+        int high = distance.length - 1;
+        if (target >= distance[high]) {
+            return totalTime;
+        }
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            if (distance[mid] < target) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        double span = distance[high] - distance[low];
+        double fraction = (span > 0) ? (target - distance[low]) / span : 0;
+        return Math.min((low + fraction) * step, totalTime);
+    }
+
+    /**
+     * Sample the heading at a time. This doesn't allocate.
+     * 
+     * @param time The time, in seconds. Times outside of the profile give the
+     *             first or last heading.
+     * @param out  An array of at least {@link #COLUMNS}, filled with the heading
+     *             and angular velocity.
+     */
+    public void sample(double time, double[] out) {
+        double position = Math.max(0, Math.min(time, totalTime)) / step;
+        int index = Math.min((int) position, heading.length - 1);
+        int next = Math.min(index + 1, heading.length - 1);
+        double fraction = position - index;
+        out[HEADING] = heading[index] + ((heading[next] - heading[index]) * fraction);
+        out[ANGULAR_VELOCITY] = velocity[index] + ((velocity[next] - velocity[index]) * fraction);
+    }
+
+    /**
+     * Get the heading at a grid point.
+     * 
+     * @param index The grid index.
+     * @return The heading, in radians.
+     */
+    public double get(int index) {
+        return heading[index];
+    }
+
+    /**
+     * Get the duration of the profile. This is at least as long as its
+     * trajectory, and longer if the last turn finishes late.
+     * 
+     * @return The total time, in seconds.
+     */
+    public double getTotalTime() {
+        return totalTime;
+    }
+}
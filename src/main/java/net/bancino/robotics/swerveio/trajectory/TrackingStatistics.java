@@ -0,0 +1,102 @@
+package net.bancino.robotics.swerveio.trajectory;
+
+/**
+ * Accumulates how far a robot strayed from the trajectory it was following.
+ * Recording doesn't allocate, so this can be updated every cycle from the
+ * follower itself.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class TrackingStatistics {
+
+    private long count;
+    private double sumSquaredPosition, maxPosition, finalPosition;
+    private double sumSquaredHeading, maxHeading, finalHeading;
+
+    /**
+     * Record the error of one cycle.
+     * 
+     * @param positionError The distance between the robot and the trajectory, in
+     *                      meters.
+     * @param headingError  The difference between the robot's heading and the
+     *                      trajectory's, in degrees. The sign is ignored.
+     */
+    public void record(double positionError, double headingError) {
+        positionError = Math.abs(positionError);
+        headingError = Math.abs(headingError);
+        count++;
+        sumSquaredPosition += positionError * positionError;
+        sumSquaredHeading += headingError * headingError;
+        maxPosition = Math.max(maxPosition, positionError);
+        maxHeading = Math.max(maxHeading, headingError);
+        finalPosition = positionError;
+        finalHeading = headingError;
+    }
+
+    /**
+     * Clear all recorded errors.
+     */
+    public void reset() {
+        count = 0;
+        sumSquaredPosition = maxPosition = finalPosition = 0;
+        sumSquaredHeading = maxHeading = finalHeading = 0;
+    }
+
+    /**
+     * @return The number of cycles recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The root-mean-square position error, in meters.
+     */
+    public double getRmsPositionError() {
+        return (count > 0) ? Math.sqrt(sumSquaredPosition / count) : 0;
+    }
+
+    /**
+     * @return The largest position error, in meters.
+     */
+    public double getMaxPositionError() {
+        return maxPosition;
+    }
+
+    /**
+     * @return The position error of the last cycle, in meters.
+     */
+    public double getFinalPositionError() {
+        return finalPosition;
+    }
+
+    /**
+     * @return The root-mean-square heading error, in degrees.
+     */
+    public double getRmsHeadingError() {
+        return (count > 0) ? Math.sqrt(sumSquaredHeading / count) : 0;
+    }
+
+    /**
+     * @return The largest heading error, in degrees.
+     */
+    public double getMaxHeadingError() {
+        return maxHeading;
+    }
+
+    /**
+     * @return The heading error of the last cycle, in degrees.
+     */
+    public double getFinalHeadingError() {
+        return finalHeading;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d cycles, position RMS %.3f m max %.3f m final %.3f m, "
+                + "heading RMS %.1f deg max %.1f deg final %.1f deg", count, getRmsPositionError(), maxPosition,
+                finalPosition, getRmsHeadingError(), maxHeading, finalHeading);
+    }
+}
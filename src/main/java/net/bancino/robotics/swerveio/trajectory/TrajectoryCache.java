@@ -0,0 +1,270 @@
+package net.bancino.robotics.swerveio.trajectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Loads every trajectory in a directory in parallel on a small pool of
+ * background threads, so that they are ready long before autonomous starts.
+ * This should be started as early as possible, usually at the top of
+ * {@code robotInit()}, so the robot can load its paths while it sits disabled
+ * on the field.
+ * <p>
+ * Files are matched to loaders by their suffix. Pathweaver JSON files are
+ * loaded as {@link CompiledTrajectory} by default; other formats can be added
+ * with {@link #register(String, Loader)} before the cache is started. Files
+ * that don't match any loader are ignored.
+ * <p>
+ * Each file is available by its name as a {@link Future}. Commands should use
+ * {@link #getNow(String, Class)}, which never blocks, so that autonomous can't
+ * stall on I/O or parsing; if a trajectory isn't ready, it is reported to the
+ * driver station and the command can decide what to do.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+public class TrajectoryCache implements AutoCloseable {
+
+    /**
+     * Loads one kind of trajectory file.
+     * 
+     * @param <T> The type of trajectory produced.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        /**
+         * Load a trajectory. This is called on a background thread.
+         * 
+         * @param file The file to load.
+         * @return The loaded trajectory.
+         * @throws IOException If the file can't be read or parsed.
+         */
+        T load(Path file) throws IOException;
+    }
+
+    /** The number of loader threads used when none is given. */
+    public static final int DEFAULT_THREADS = 2;
+
+    private static TrajectoryCache instance;
+
+    private final File directory;
+    private final int threads;
+    private final Map<String, Loader<?>> loaders = new LinkedHashMap<>();
+    private final Map<String, CompletableFuture<Object>> trajectories = new ConcurrentHashMap<>();
+    private final Map<String, Double> loadTimes = new ConcurrentHashMap<>();
+    private ExecutorService pool;
+
+    /**
+     * Get the cache for the deploy directory, creating it if needed.
+     * 
+     * @return The shared trajectory cache.
+     */
+    public static synchronized TrajectoryCache getInstance() {
+        if (instance == null) {
+            instance = new TrajectoryCache(Filesystem.getDeployDirectory(), DEFAULT_THREADS);
+        }
+        return instance;
+    }
+
+    /**
+     * Create a trajectory cache.
+     * 
+     * @param directory The directory to load trajectories from. This is not
+     *                  searched recursively.
+     * @param threads   The number of background threads to load with.
+     */
+    public TrajectoryCache(File directory, int threads) {
+        if (directory == null) {
+            throw new IllegalArgumentException("Trajectory directory cannot be null.");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Trajectory cache needs at least one thread.");
+        }
+        this.directory = directory;
+        this.threads = threads;
+        register(".json", CompiledTrajectory::fromPathweaverJson);
+    }
+
+    /**
+     * Register a loader for files ending in the given suffix. Loaders are tried
+     * in the order they were registered, and the first match wins. Registering a
+     * suffix again replaces its loader.
+     * 
+     * @param suffix The file name suffix, such as ".path".
+     * @param loader The loader for those files.
+     * @throws IllegalStateException If the cache has already been started.
+     */
+    public synchronized void register(String suffix, Loader<?> loader) {
+        if (suffix == null || loader == null) {
+            throw new IllegalArgumentException("Suffix and loader cannot be null.");
+        }
+        if (pool != null) {
+            throw new IllegalStateException("Loaders must be registered before the trajectory cache is started.");
+        }
+        loaders.put(suffix, loader);
+    }
+
+    /**
+     * Start loading every matching file in the directory in the background. This
+     * returns immediately, and does nothing if the cache is already started.
+     */
+    public synchronized void start() {
+        if (pool != null) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "SwerveIO Trajectory Cache " + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null) {
+            DriverStation.reportError("[SwerveIO Trajectory Cache] Not a directory: " + directory, false);
+            return;
+        }
+        for (File file : files) {
+            Loader<?> loader = getLoader(file.getName());
+            if (loader != null) {
+                trajectories.put(file.getName(), CompletableFuture.supplyAsync(() -> load(file, loader), pool));
+            }
+        }
+    }
+
+    private Loader<?> getLoader(String name) {
+        for (Map.Entry<String, Loader<?>> entry : loaders.entrySet()) {
+            if (name.endsWith(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private Object load(File file, Loader<?> loader) {
+        long start = System.nanoTime();
+        try {
+            Object trajectory = loader.load(file.toPath());
+            double millis = (System.nanoTime() - start) / 1e6;
+            loadTimes.put(file.getName(), millis);
+            System.out.printf("[SwerveIO Trajectory Cache] Loaded %s in %.1f ms%n", file.getName(), millis);
+            return trajectory;
+        } catch (IOException | RuntimeException e) {
+            DriverStation.reportError("[SwerveIO Trajectory Cache] Failed to load " + file.getName() + ": " + e,
+                    false);
+            throw new IllegalStateException("Failed to load " + file.getName(), e);
+        }
+    }
+
+    /**
+     * Get the future of a trajectory. This may be waited on, but commands should
+     * prefer {@link #getNow(String, Class)}.
+     * 
+     * @param name The file name of the trajectory, such as "5ball.wpilib.json".
+     * @return The future of the trajectory, or null if there is no such
+     *         trajectory or the cache hasn't been started.
+     */
+    public Future<Object> get(String name) {
+        return trajectories.get(name);
+    }
+
+    /**
+     * Get a trajectory without blocking. If it isn't ready yet, failed to load,
+     * or is of the wrong type, this is reported to the driver station.
+     * 
+     * @param <T>  The type of trajectory expected.
+     * @param name The file name of the trajectory.
+     * @param type The class of trajectory expected.
+     * @return The trajectory, or null if it isn't available yet.
+     */
+    public <T> T getNow(String name, Class<T> type) {
+        CompletableFuture<Object> future = trajectories.get(name);
+        String problem;
+        if (future == null) {
+            problem = "no such trajectory";
+        } else if (!future.isDone()) {
+            problem = "still loading";
+        } else if (future.isCompletedExceptionally()) {
+            problem = "failed to load";
+        } else {
+            Object trajectory = future.join();
+            if (type.isInstance(trajectory)) {
+                return type.cast(trajectory);
+            }
+            problem = "not a " + type.getSimpleName();
+        }
+        DriverStation.reportError("[SwerveIO Trajectory Cache] " + name + " is not available: " + problem, false);
+        return null;
+    }
+
+    /**
+     * Check whether a trajectory has finished loading successfully.
+     * 
+     * @param name The file name of the trajectory.
+     * @return Whether the trajectory can be fetched with
+     *         {@link #getNow(String, Class)}.
+     */
+    public boolean isLoaded(String name) {
+        CompletableFuture<Object> future = trajectories.get(name);
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * Check whether every trajectory has finished loading, whether or not it
+     * succeeded.
+     * 
+     * @return Whether the cache is done loading.
+     */
+    public boolean isDone() {
+        for (CompletableFuture<Object> future : trajectories.values()) {
+            if (!future.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get how long a trajectory took to load.
+     * 
+     * @param name The file name of the trajectory.
+     * @return The load time in milliseconds, or NaN if it hasn't loaded.
+     */
+    public double getLoadTime(String name) {
+        return loadTimes.getOrDefault(name, Double.NaN);
+    }
+
+    /**
+     * @return The file names of every trajectory being loaded.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(trajectories.keySet());
+    }
+
+    /**
+     * Stop any loads that are still running. Trajectories that have already
+     * loaded remain available.
+     */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+/**
+ * Trajectories that have been compiled ahead of time into a compact binary
+ * form, so that they load and sample quickly on the robot.
+ * 
+ * @author Jordan Bancino
+ * @version 2.1.0
+ * @since 2.1.0
+ */
+package net.bancino.robotics.swerveio.trajectory;
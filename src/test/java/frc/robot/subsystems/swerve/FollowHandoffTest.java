@@ -0,0 +1,117 @@
+/*----------------------------------------------------------------------------*/
+/* Copyright (c) 2019 FIRST. All Rights Reserved.                             */
+/* Open Source Software - may be modified and shared by FRC teams. The code   */
+/* must be accompanied by the FIRST BSD license file in the root directory of */
+/* the project.                                                               */
+/*----------------------------------------------------------------------------*/
+
+package frc.robot.subsystems.swerve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the hand-off of trajectories between commands and the update thread,
+ * where several requests can land between two updates
+ */
+public class FollowHandoffTest {
+
+  @Test
+  public void testFollowStartsTrajectory() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long id = handoff.follow("a");
+    assertTrue(handoff.poll());
+    assertEquals("a", handoff.getActiveTrajectory());
+    assertFalse(handoff.isComplete(id));
+    assertFalse(handoff.poll());
+  }
+
+  @Test
+  public void testCancelStopsTrajectory() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long id = handoff.follow("a");
+    handoff.poll();
+    handoff.cancel(id);
+    assertTrue(handoff.poll());
+    assertNull(handoff.getActiveTrajectory());
+    assertTrue(handoff.isComplete(id));
+  }
+
+  @Test
+  public void testHandoffInOneUpdate() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long first = handoff.follow("a");
+    handoff.poll();
+
+    /**
+     * One command lets go and the next starts and is interrupted, all before
+     * the update thread runs again
+     */
+    handoff.cancel(first);
+    long second = handoff.follow("b");
+    handoff.cancel(second);
+
+    assertTrue(handoff.poll());
+    assertNull(handoff.getActiveTrajectory());
+    assertTrue(handoff.isComplete(first));
+    assertTrue(handoff.isComplete(second));
+  }
+
+  @Test
+  public void testFollowReplacesPendingCancel() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long first = handoff.follow("a");
+    handoff.poll();
+    handoff.cancel(first);
+    long second = handoff.follow("b");
+
+    assertTrue(handoff.poll());
+    assertEquals("b", handoff.getActiveTrajectory());
+    assertTrue(handoff.isComplete(first));
+    assertFalse(handoff.isComplete(second));
+  }
+
+  @Test
+  public void testStaleCancelIgnored() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long first = handoff.follow("a");
+    handoff.poll();
+    long second = handoff.follow("b");
+    handoff.poll();
+
+    handoff.cancel(first);
+    assertFalse(handoff.poll());
+    assertEquals("b", handoff.getActiveTrajectory());
+    assertFalse(handoff.isComplete(second));
+  }
+
+  @Test
+  public void testStaleCancelKeepsPendingFollow() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long first = handoff.follow("a");
+    handoff.follow("b");
+    handoff.cancel(first);
+
+    assertTrue(handoff.poll());
+    assertEquals("b", handoff.getActiveTrajectory());
+  }
+
+  @Test
+  public void testFinishCompletesTrajectory() {
+    FollowHandoff<String> handoff = new FollowHandoff<>();
+    long id = handoff.follow("a");
+    handoff.poll();
+    handoff.finish();
+    assertNull(handoff.getActiveTrajectory());
+    assertTrue(handoff.isComplete(id));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testFollowNull() {
+    new FollowHandoff<String>().follow(null);
+  }
+}
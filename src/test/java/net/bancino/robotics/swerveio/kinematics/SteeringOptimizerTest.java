@@ -0,0 +1,116 @@
+package net.bancino.robotics.swerveio.kinematics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.bancino.robotics.swerveio.SwerveIOUtils;
+
+/**
+ * Checks that the steering optimizer always picks a short move that still
+ * points the wheel along the target, including across the 0/360 seam, and that
+ * it doesn't flip direction inside the hysteresis band.
+ */
+public class SteeringOptimizerTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    public void testTravelAndDirection() {
+        Random random = new Random(5557);
+        SteeringOptimizer optimizer = new SteeringOptimizer(1);
+        double limit = 90 + (optimizer.getHysteresis() / 2);
+        /* The module is read wrapped to 0 to 360, like a pivot encoder. */
+        double reading = 0;
+        for (int s = 0; s < 100000; s++) {
+            double target = (random.nextDouble() * 720) - 360;
+            double angle = optimizer.optimize(0, reading, target);
+            double continuous = optimizer.getContinuousAngle(0);
+            assertEquals(0, SwerveIOUtils.wrapAngle180(continuous - reading), EPSILON);
+            assertTrue("Travelled " + (angle - continuous), Math.abs(angle - continuous) <= limit + EPSILON);
+
+            double pointing = angle + (optimizer.isReversed(0) ? 180 : 0);
+            assertEquals(0, SwerveIOUtils.wrapAngle180(pointing - target), EPSILON);
+
+            /* Move part of the way there, sometimes across the seam. */
+            reading = SwerveIOUtils.wrapAngle360(continuous + ((angle - continuous) * random.nextDouble()));
+        }
+    }
+
+    @Test
+    public void testAcrossSeam() {
+        SteeringOptimizer optimizer = new SteeringOptimizer(1);
+        assertEquals(365, optimizer.optimize(0, 355, 5), EPSILON);
+        assertFalse(optimizer.isReversed(0));
+
+        /* The encoder wraps to 10, but the module has only turned 15 degrees. */
+        assertEquals(350, optimizer.optimize(0, 10, 350), EPSILON);
+        assertEquals(370, optimizer.getContinuousAngle(0), EPSILON);
+        assertFalse(optimizer.isReversed(0));
+
+        assertEquals(360, optimizer.optimize(0, 355, 180), EPSILON);
+        assertTrue(optimizer.isReversed(0));
+    }
+
+    @Test
+    public void testContinuousAcrossTurns() {
+        SteeringOptimizer optimizer = new SteeringOptimizer(1);
+        double angle = 0;
+        for (int turn = 0; turn < 3 * 360; turn += 30) {
+            angle = optimizer.optimize(0, SwerveIOUtils.wrapAngle360(turn), SwerveIOUtils.wrapAngle360(turn + 30));
+            assertEquals(turn + 30, angle, EPSILON);
+        }
+    }
+
+    @Test
+    public void testHysteresis() {
+        SteeringOptimizer optimizer = new SteeringOptimizer(1, 10);
+        /* Forward is 95 away and backward is 85; that's inside the band. */
+        assertEquals(95, optimizer.optimize(0, 0, 95), EPSILON);
+        assertFalse(optimizer.isReversed(0));
+
+        /* Past the band, it flips. */
+        assertEquals(-83, optimizer.optimize(0, 0, 97), EPSILON);
+        assertTrue(optimizer.isReversed(0));
+
+        /* And it takes the same margin to flip back. */
+        assertEquals(-94, optimizer.optimize(0, 0, 86), EPSILON);
+        assertTrue(optimizer.isReversed(0));
+        assertEquals(84, optimizer.optimize(0, 0, 84), EPSILON);
+        assertFalse(optimizer.isReversed(0));
+    }
+
+    @Test
+    public void testNoFlipInsideBand() {
+        Random random = new Random(2020);
+        SteeringOptimizer optimizer = new SteeringOptimizer(1, 10);
+        for (boolean reversed : new boolean[] { false, true }) {
+            /* Get into the direction under test, then jitter the target around 90. */
+            optimizer.reset();
+            optimizer.optimize(0, 0, reversed ? 180 : 0);
+            for (int s = 0; s < 10000; s++) {
+                double target = 85.01 + (random.nextDouble() * 9.98);
+                optimizer.optimize(0, 0, (random.nextBoolean()) ? target : -target);
+                assertEquals(reversed, optimizer.isReversed(0));
+            }
+        }
+    }
+
+    @Test
+    public void testModulesAreIndependent() {
+        SteeringOptimizer optimizer = new SteeringOptimizer(2);
+        optimizer.optimize(0, 0, 170);
+        optimizer.optimize(1, 0, 10);
+        assertTrue(optimizer.isReversed(0));
+        assertFalse(optimizer.isReversed(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHysteresisTooLarge() {
+        new SteeringOptimizer(1, 180);
+    }
+}
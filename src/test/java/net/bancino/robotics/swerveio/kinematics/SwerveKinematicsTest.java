@@ -0,0 +1,175 @@
+package net.bancino.robotics.swerveio.kinematics;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.wpi.first.wpilibj.geometry.Translation2d;
+import net.bancino.robotics.swerveio.SwerveModule;
+import net.bancino.robotics.swerveio.si.ChassisDimension;
+import net.bancino.robotics.swerveio.si.Length;
+import net.bancino.robotics.swerveio.si.Unit;
+
+/**
+ * Checks the kinematics engine against the corner equations it replaced, and
+ * checks that forward kinematics undoes inverse kinematics.
+ */
+public class SwerveKinematicsTest {
+
+    private static final int SAMPLES = 10000;
+    private static final double EPSILON = 1e-9;
+
+    private static final SwerveModule[] CORNERS = { SwerveModule.FRONT_LEFT, SwerveModule.FRONT_RIGHT,
+            SwerveModule.REAR_LEFT, SwerveModule.REAR_RIGHT };
+
+    @Test
+    public void testMatchesCornerEquations() {
+        Random random = new Random(5557);
+        double[] speeds = new double[CORNERS.length];
+        double[] angles = new double[CORNERS.length];
+        for (int s = 0; s < SAMPLES; s++) {
+            double width = 0.2 + random.nextDouble();
+            double length = 0.2 + random.nextDouble();
+            SwerveKinematics kinematics = SwerveKinematics.fromChassisDimension(
+                    new ChassisDimension(new Length(width, Unit.METERS), new Length(length, Unit.METERS)));
+            double fwd = (2 * random.nextDouble()) - 1;
+            double str = (2 * random.nextDouble()) - 1;
+            double rcw = (2 * random.nextDouble()) - 1;
+
+            kinematics.solve(fwd, str, rcw, 0, speeds, angles);
+            for (SwerveModule module : CORNERS) {
+                double[] sides = cornerEquations(module, width, length, fwd, str, rcw);
+                double speed = Math.min(1, Math.sqrt((sides[0] * sides[0]) + (sides[1] * sides[1])));
+                double angle = Math.toDegrees(Math.atan2(sides[0], sides[1]));
+                int i = kinematics.indexOf(module);
+                assertEquals(speed, speeds[i], EPSILON);
+                assertEquals(angle, angles[i], EPSILON);
+                assertEquals(speed, kinematics.getWheelSpeed(i, fwd, str, rcw), EPSILON);
+                assertEquals(angle, kinematics.getWheelAngle(i, fwd, str, rcw), EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testFieldCentricMatchesRotatedInput() {
+        Random random = new Random(2020);
+        SwerveKinematics kinematics = SwerveKinematics
+                .fromChassisDimension(new ChassisDimension(new Length(0.6, Unit.METERS), new Length(0.7, Unit.METERS)));
+        double[] speeds = new double[CORNERS.length];
+        double[] angles = new double[CORNERS.length];
+        for (int s = 0; s < SAMPLES; s++) {
+            double fwd = (2 * random.nextDouble()) - 1;
+            double str = (2 * random.nextDouble()) - 1;
+            double rcw = (2 * random.nextDouble()) - 1;
+            double gyroAngle = random.nextDouble() * 360;
+            double cos = Math.cos(Math.toRadians(gyroAngle));
+            double sin = Math.sin(Math.toRadians(gyroAngle));
+            double modFwd = (fwd * cos) + (str * sin);
+            double modStr = (-fwd * sin) + (str * cos);
+
+            kinematics.solve(fwd, str, rcw, gyroAngle, speeds, angles);
+            for (int i = 0; i < CORNERS.length; i++) {
+                assertEquals(kinematics.getWheelSpeed(i, modFwd, modStr, rcw), speeds[i], EPSILON);
+                assertEquals(kinematics.getWheelAngle(i, modFwd, modStr, rcw), angles[i], EPSILON);
+            }
+        }
+    }
+
+    @Test
+    public void testChassisMotionInvertsSolveForCorners() {
+        checkChassisMotionInvertsSolve(SwerveKinematics
+                .fromChassisDimension(new ChassisDimension(new Length(0.5, Unit.METERS), new Length(0.8, Unit.METERS))));
+    }
+
+    @Test
+    public void testChassisMotionInvertsSolveForSixModules() {
+        var positions = new EnumMap<SwerveModule, Translation2d>(SwerveModule.class);
+        positions.put(SwerveModule.FRONT_LEFT, new Translation2d(0.4, 0.3));
+        positions.put(SwerveModule.FRONT_RIGHT, new Translation2d(0.4, -0.3));
+        positions.put(SwerveModule.MIDDLE_LEFT, new Translation2d(0, 0.35));
+        positions.put(SwerveModule.MIDDLE_RIGHT, new Translation2d(0, -0.35));
+        positions.put(SwerveModule.REAR_LEFT, new Translation2d(-0.4, 0.3));
+        positions.put(SwerveModule.REAR_RIGHT, new Translation2d(-0.4, -0.3));
+        checkChassisMotionInvertsSolve(new SwerveKinematics(positions));
+    }
+
+    @Test
+    public void testChassisMotionInvertsSolveForThreeModules() {
+        var positions = new EnumMap<SwerveModule, Translation2d>(SwerveModule.class);
+        positions.put(SwerveModule.FRONT_LEFT, new Translation2d(0.3, 0.2));
+        positions.put(SwerveModule.FRONT_RIGHT, new Translation2d(0.3, -0.25));
+        positions.put(SwerveModule.REAR_LEFT, new Translation2d(-0.35, 0));
+        checkChassisMotionInvertsSolve(new SwerveKinematics(positions));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testModulesAtCenter() {
+        var positions = new EnumMap<SwerveModule, Translation2d>(SwerveModule.class);
+        positions.put(SwerveModule.FRONT_LEFT, new Translation2d(0, 0));
+        new SwerveKinematics(positions);
+    }
+
+    /**
+     * Solve for random chassis motions, slow enough that no wheel is clamped to
+     * full speed, turn each module's speed and angle back into a vector, and
+     * check that forward kinematics recovers the chassis motion.
+     */
+    private static void checkChassisMotionInvertsSolve(SwerveKinematics kinematics) {
+        Random random = new Random(1);
+        int count = kinematics.getModuleCount();
+        double[] speeds = new double[count];
+        double[] angles = new double[count];
+        double[] vectors = new double[count * 2];
+        double[] motion = new double[3];
+        for (int s = 0; s < SAMPLES; s++) {
+            double fwd = (random.nextDouble() - 0.5) * 0.6;
+            double str = (random.nextDouble() - 0.5) * 0.6;
+            double rcw = (random.nextDouble() - 0.5) * 0.6;
+            kinematics.solve(fwd, str, rcw, 0, speeds, angles);
+            for (int i = 0; i < count; i++) {
+                vectors[i * 2] = speeds[i] * Math.sin(Math.toRadians(angles[i]));
+                vectors[(i * 2) + 1] = speeds[i] * Math.cos(Math.toRadians(angles[i]));
+            }
+            kinematics.toChassisMotion(vectors, motion);
+            assertEquals(fwd, motion[0], EPSILON);
+            assertEquals(str, motion[1], EPSILON);
+            assertEquals(rcw, motion[2], EPSILON);
+        }
+    }
+
+    /**
+     * The corner equations that SwerveDriveCalculator used before the kinematics
+     * engine, where R is the diagonal of the chassis.
+     * 
+     * @return The strafe side and the forward side of the module's vector.
+     */
+    private static double[] cornerEquations(SwerveModule module, double width, double length, double fwd,
+            double str, double rcw) {
+        double r = Math.sqrt((length * length) + (width * width));
+        double[] sides = new double[2];
+        switch (module) {
+        case FRONT_RIGHT:
+            sides[0] = str + rcw * (length / r);
+            sides[1] = fwd - rcw * (width / r);
+            break;
+        case FRONT_LEFT:
+            sides[0] = str + rcw * (length / r);
+            sides[1] = fwd + rcw * (width / r);
+            break;
+        case REAR_LEFT:
+            sides[0] = str - rcw * (length / r);
+            sides[1] = fwd + rcw * (width / r);
+            break;
+        case REAR_RIGHT:
+            sides[0] = str - rcw * (length / r);
+            sides[1] = fwd - rcw * (width / r);
+            break;
+        default:
+            throw new IllegalArgumentException("Not a corner: " + module);
+        }
+        return sides;
+    }
+}
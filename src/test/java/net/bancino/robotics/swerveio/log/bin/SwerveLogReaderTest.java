@@ -0,0 +1,184 @@
+package net.bancino.robotics.swerveio.log.bin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Round trips blocks through the binary log format, then damages them in
+ * every part of a block to make sure only the damaged block is lost.
+ */
+public class SwerveLogReaderTest {
+
+    private static final String[] COLUMNS = { "Time", "Fwd", "Str", "Rcw" };
+    private static final int BLOCKS = 20;
+    private static final int RECORDS = 1000;
+    private static final int RECORD_SIZE = Long.BYTES + ((COLUMNS.length - 1) * Double.BYTES);
+    private static final long START_NANOS = 1_000_000_000L;
+
+    /* The offsets of the fields in a block header. */
+    private static final int COUNT = Integer.BYTES;
+    private static final int LENGTH = 2 * Integer.BYTES;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File log;
+    private long[] blockOffsets;
+
+    @Before
+    public void writeLog() throws IOException {
+        log = folder.newFile("test.bin");
+        blockOffsets = new long[BLOCKS + 1];
+        ByteBuffer batch = ByteBuffer.allocate(RECORDS * RECORD_SIZE);
+        ByteBuffer block = ByteBuffer.allocate(SwerveLogFormat.maxBlockSize(RECORDS, COLUMNS.length));
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(log.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(SwerveLogFormat.encodeHeader(COLUMNS, 0));
+            for (int b = 0; b < BLOCKS; b++) {
+                blockOffsets[b] = channel.position();
+                batch.clear();
+                for (int i = 0; i < RECORDS; i++) {
+                    int record = (b * RECORDS) + i;
+                    batch.putLong(START_NANOS + (record * 5_000_000L));
+                    for (int c = 1; c < COLUMNS.length; c++) {
+                        batch.putDouble(value(record, c));
+                    }
+                }
+                SwerveLogFormat.encodeBlock(batch, RECORDS, RECORD_SIZE, COLUMNS.length, START_NANOS, block, crc);
+                channel.write(block);
+            }
+            blockOffsets[BLOCKS] = channel.position();
+        }
+    }
+
+    private static double value(int record, int column) {
+        return (record * 0.25) - (column * 100);
+    }
+
+    /**
+     * Read the whole log, checking every record that is read.
+     * 
+     * @return The number of records read.
+     */
+    private int readAll(SwerveLogReader reader) throws IOException {
+        int read = 0;
+        while (reader.nextBlock()) {
+            for (int i = 0; i < reader.getBlockRecords(); i++) {
+                int record = (int) (reader.getTime(i) / 5000);
+                assertEquals(record * 5000L, reader.getTime(i));
+                for (int c = 1; c < COLUMNS.length; c++) {
+                    assertEquals((float) value(record, c), reader.getValue(c, i), 0);
+                }
+                read++;
+            }
+        }
+        return read;
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0x40);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertArrayEquals(COLUMNS, reader.getColumns());
+            assertEquals(BLOCKS * RECORDS, readAll(reader));
+            assertEquals(0, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testCorruptMagic() throws IOException {
+        corrupt(blockOffsets[3]);
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testCorruptCount() throws IOException {
+        corrupt(blockOffsets[5] + COUNT);
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testCorruptLength() throws IOException {
+        corrupt(blockOffsets[7] + LENGTH);
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testCorruptPayload() throws IOException {
+        corrupt(blockOffsets[9] + SwerveLogFormat.BLOCK_HEADER_SIZE + 100);
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testOversizedHeaderIsRejected() throws IOException {
+        /* A count and length too large to allocate, with a matching header checksum. */
+        int count = Integer.MAX_VALUE;
+        int length = Integer.MAX_VALUE;
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.seek(blockOffsets[2] + COUNT);
+            file.writeInt(count);
+            file.writeInt(length);
+            file.writeInt(SwerveLogFormat.headerChecksum(new CRC32(), count, length));
+        }
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+        }
+    }
+
+    @Test
+    public void testTruncated() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(blockOffsets[BLOCKS - 1] + 50);
+        }
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertEquals(1, reader.getCorruptBlocks());
+            assertFalse(reader.nextBlock());
+        }
+    }
+
+    @Test
+    public void testCorruptLastHeader() throws IOException {
+        corrupt(blockOffsets[BLOCKS - 1] + LENGTH);
+        try (SwerveLogReader reader = new SwerveLogReader(log)) {
+            assertEquals((BLOCKS - 1) * RECORDS, readAll(reader));
+            assertTrue(reader.getCorruptBlocks() >= 1);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package net.bancino.robotics.swerveio.pid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks the heading controller's motion profile, in particular that a goal
+ * set in the middle of a turn carries on smoothly from the old profile.
+ */
+public class HeadingControllerTest {
+
+    private static final double PERIOD = 0.005;
+
+    /**
+     * A controller with only velocity feed-forward, so that its output is the
+     * profile's velocity in degrees per second.
+     */
+    private static HeadingController feedForwardOnly() {
+        HeadingController controller = new HeadingController(0, 0, 1);
+        controller.setMaxOutput(Double.MAX_VALUE);
+        controller.setConstraints(360, 720);
+        return controller;
+    }
+
+    @Test
+    public void testProfileFromRest() {
+        HeadingController controller = feedForwardOnly();
+        controller.setGoal(90, 0, 0);
+        assertEquals(2 * Math.sqrt(90.0 / 720), controller.getProfileDuration(), 1e-9);
+        assertEquals(0, controller.calculate(0, 0), 1e-9);
+        assertEquals(720 * 0.1, controller.calculate(0, 0.1), 1e-9);
+        assertEquals(0, controller.calculate(90, controller.getProfileDuration()), 1e-9);
+    }
+
+    @Test
+    public void testShortWayAround() {
+        HeadingController controller = feedForwardOnly();
+        controller.setGoal(350, 10, 0);
+        assertTrue(controller.calculate(10, 0.05) < 0);
+    }
+
+    @Test
+    public void testRetargetKeepsVelocity() {
+        HeadingController controller = feedForwardOnly();
+        controller.setGoal(180, 0, 0);
+        double before = controller.calculate(45, 0.25);
+        assertEquals(180, before, 1e-9);
+
+        /* Push the goal further along while turning. */
+        controller.setGoal(200, 45, 0.25);
+        assertEquals(before, controller.calculate(45, 0.25), 1e-9);
+        assertEquals(before + (720 * PERIOD), controller.calculate(45.9, 0.25 + PERIOD), 1e-9);
+    }
+
+    @Test
+    public void testRetargetBehindSlowsDown() {
+        HeadingController controller = feedForwardOnly();
+        controller.setGoal(180, 0, 0);
+        double before = controller.calculate(45, 0.25);
+
+        /* A goal just behind the chassis: it has to stop, then come back. */
+        controller.setGoal(40, 45, 0.25);
+        assertEquals(before, controller.calculate(45, 0.25), 1e-9);
+        assertEquals(before - (720 * PERIOD), controller.calculate(45.9, 0.25 + PERIOD), 1e-9);
+
+        /* It ends up stopped at the goal. */
+        double end = 0.25 + controller.getProfileDuration();
+        assertEquals(0, controller.calculate(40, end), 1e-9);
+        double position = 45;
+        double last = before;
+        for (double t = 0.25; t < end; t += PERIOD) {
+            double velocity = controller.calculate(position, t);
+            assertTrue(Math.abs(velocity - last) <= (720 * PERIOD) + 1e-9);
+            position += velocity * PERIOD;
+            last = velocity;
+        }
+        assertEquals(40, position, 1);
+    }
+
+    @Test
+    public void testRetargetOvershoots() {
+        HeadingController controller = feedForwardOnly();
+        controller.setGoal(180, 0, 0);
+        controller.calculate(45, 0.25);
+
+        /* Turning at 180 degrees per second, it takes 22.5 degrees to stop. */
+        controller.setGoal(55, 45, 0.25);
+        double position = 45;
+        double furthest = position;
+        double end = 0.25 + controller.getProfileDuration();
+        for (double t = 0.25; t < end; t += PERIOD) {
+            position += controller.calculate(position, t) * PERIOD;
+            furthest = Math.max(furthest, position);
+        }
+        assertEquals(67.5, furthest, 1);
+        assertEquals(55, position, 1);
+    }
+
+    @Test
+    public void testRetargetResetsDerivative() {
+        HeadingController controller = new HeadingController(0, 1, 0);
+        controller.setMaxOutput(Double.MAX_VALUE);
+        controller.setGoal(90, 0, 0);
+        controller.calculate(0, 0);
+        controller.calculate(0, PERIOD);
+
+        /* The first cycle of a new profile has no previous error to differentiate. */
+        controller.setGoal(0, 0, PERIOD);
+        assertEquals(0, controller.calculate(0, 2 * PERIOD), 1e-9);
+    }
+}
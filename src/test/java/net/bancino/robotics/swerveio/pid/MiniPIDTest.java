@@ -0,0 +1,275 @@
+package net.bancino.robotics.swerveio.pid;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that MiniPID's output is unchanged by time-aware mode when it is off,
+ * and that time-aware mode scales the I and D terms by the period.
+ */
+public class MiniPIDTest {
+
+    private static final int CONFIGURATIONS = 2000;
+    private static final int STEPS = 200;
+
+    @Test
+    public void testMatchesFixedPeriodReference() {
+        Random inputs = new Random(5557);
+        for (int c = 0; c < CONFIGURATIONS; c++) {
+            MiniPID pid = new MiniPID(0, 0, 0);
+            FixedPeriodPID reference = new FixedPeriodPID();
+            RandomPIDConfiguration.configure(pid, c);
+            RandomPIDConfiguration.configure(reference, c);
+            for (int s = 0; s < STEPS; s++) {
+                if (s == STEPS / 2) {
+                    RandomPIDConfiguration.retune(pid, c);
+                    RandomPIDConfiguration.retune(reference, c);
+                }
+                double actual = (inputs.nextDouble() * 400) - 20;
+                double setpoint = (inputs.nextDouble() * 400) - 20;
+                assertEquals("Configuration " + c + ", step " + s, reference.getOutput(actual, setpoint),
+                        pid.getOutput(actual, setpoint), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testTimeAwareAtNominalPeriodMatches() {
+        Random inputs = new Random(2020);
+        for (int c = 0; c < 100; c++) {
+            MiniPID fixed = new MiniPID(0, 0, 0);
+            MiniPID timed = new MiniPID(0, 0, 0);
+            RandomPIDConfiguration.configure(fixed, c);
+            RandomPIDConfiguration.configure(timed, c);
+            timed.setTimeAware(0.02);
+            for (int s = 0; s < STEPS; s++) {
+                double actual = inputs.nextDouble() * 360;
+                double setpoint = inputs.nextDouble() * 360;
+                assertEquals(fixed.getOutput(actual, setpoint), timed.getOutput(actual, setpoint, 0.02), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testTimeAwareScalesIntegral() {
+        MiniPID pid = new MiniPID(0, 1, 0);
+        pid.setTimeAware(0.02);
+        assertEquals(0, pid.getOutput(0, 1, 0.04), 0);
+        /* One error of 1 over two nominal periods. */
+        assertEquals(2, pid.getOutput(0, 1, 0.04), 1e-12);
+    }
+
+    @Test
+    public void testTimeAwareScalesDerivative() {
+        MiniPID pid = new MiniPID(0, 0, 1);
+        pid.setTimeAware(0.02);
+        pid.getOutput(0, 0, 0.02);
+        /* A change of 1 over two nominal periods is half the rate. */
+        assertEquals(-0.5, pid.getOutput(1, 0, 0.04), 1e-12);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPeriodNeedsTimeAware() {
+        new MiniPID(1, 0, 0).getOutput(0, 1, 0.02);
+    }
+
+    /**
+     * The MiniPID algorithm as it was before time-aware mode, where every cycle
+     * is one period long.
+     */
+    private static final class FixedPeriodPID implements AbstractPIDController {
+        private double p, i, d, f;
+        private double maxIOutput, maxError, errorSum;
+        private double maxOutput, minOutput;
+        private double lastActual, lastOutput;
+        private boolean firstRun = true;
+        private boolean reversed;
+        private double outputRampRate, outputFilter, setpointRange;
+        private double continuousRange, continuousScale;
+
+        @Override
+        public void setP(double p) {
+            this.p = p;
+            checkSigns();
+        }
+
+        @Override
+        public void setI(double i) {
+            if (this.i != 0) {
+                errorSum = errorSum * this.i / i;
+            }
+            if (maxIOutput != 0) {
+                maxError = maxIOutput / i;
+            }
+            this.i = i;
+            checkSigns();
+        }
+
+        @Override
+        public void setD(double d) {
+            this.d = d;
+            checkSigns();
+        }
+
+        @Override
+        public void setF(double f) {
+            this.f = f;
+            checkSigns();
+        }
+
+        @Override
+        public void setPID(double p, double i, double d) {
+            this.p = p;
+            this.d = d;
+            setI(i);
+        }
+
+        @Override
+        public void setPID(double p, double i, double d, double f) {
+            this.f = f;
+            setPID(p, i, d);
+        }
+
+        @Override
+        public void setMaxIOutput(double max) {
+            maxIOutput = max;
+            if (i != 0) {
+                maxError = maxIOutput / i;
+            }
+        }
+
+        @Override
+        public void setOutputLimits(double min, double max) {
+            if (max < min) {
+                return;
+            }
+            maxOutput = max;
+            minOutput = min;
+            if (maxIOutput == 0 || maxIOutput > (max - min)) {
+                setMaxIOutput(max - min);
+            }
+        }
+
+        @Override
+        public void setDirection(boolean reversed) {
+            this.reversed = reversed;
+        }
+
+        @Override
+        public double getOutput(double actual, double setpoint) {
+            double error = setpoint - actual;
+            error -= continuousRange * Math.rint(error * continuousScale);
+            if (setpointRange != 0) {
+                error = constrain(error, -setpointRange, setpointRange);
+                setpoint = actual + error;
+            }
+            double fOutput = f * setpoint;
+            double pOutput = p * error;
+            if (firstRun) {
+                lastActual = actual;
+                lastOutput = pOutput + fOutput;
+                firstRun = false;
+            }
+            double delta = actual - lastActual;
+            delta -= continuousRange * Math.rint(delta * continuousScale);
+            double dOutput = -d * delta;
+            lastActual = actual;
+            double iOutput = i * errorSum;
+            if (maxIOutput != 0) {
+                iOutput = constrain(iOutput, -maxIOutput, maxIOutput);
+            }
+            double output = fOutput + pOutput + iOutput + dOutput;
+            if (minOutput != maxOutput && !bounded(output, minOutput, maxOutput)) {
+                errorSum = error;
+            } else if (outputRampRate != 0
+                    && !bounded(output, lastOutput - outputRampRate, lastOutput + outputRampRate)) {
+                errorSum = error;
+            } else if (maxIOutput != 0) {
+                errorSum = constrain(errorSum + error, -maxError, maxError);
+            } else {
+                errorSum += error;
+            }
+            if (outputRampRate != 0) {
+                output = constrain(output, lastOutput - outputRampRate, lastOutput + outputRampRate);
+            }
+            if (minOutput != maxOutput) {
+                output = constrain(output, minOutput, maxOutput);
+            }
+            if (outputFilter != 0) {
+                output = lastOutput * outputFilter + output * (1 - outputFilter);
+            }
+            lastOutput = output;
+            return output;
+        }
+
+        @Override
+        public double getPreviousOutput() {
+            return lastOutput;
+        }
+
+        @Override
+        public void reset() {
+            firstRun = true;
+            errorSum = 0;
+        }
+
+        @Override
+        public void setOutputRampRate(double rate) {
+            outputRampRate = rate;
+        }
+
+        @Override
+        public void setSetpointRange(double range) {
+            setpointRange = range;
+        }
+
+        @Override
+        public void setOutputFilter(double strength) {
+            if (strength == 0 || bounded(strength, 0, 1)) {
+                outputFilter = strength;
+            }
+        }
+
+        @Override
+        public void setContinuousInput(double min, double max) {
+            continuousRange = max - min;
+            continuousScale = 1 / continuousRange;
+        }
+
+        @Override
+        public void disableContinuousInput() {
+            continuousRange = 0;
+            continuousScale = 0;
+        }
+
+        @Override
+        public boolean isContinuousInputEnabled() {
+            return continuousRange != 0;
+        }
+
+        private static double constrain(double value, double min, double max) {
+            if (value > max) {
+                return max;
+            }
+            if (value < min) {
+                return min;
+            }
+            return value;
+        }
+
+        private static boolean bounded(double value, double min, double max) {
+            return (min < value) && (value < max);
+        }
+
+        private void checkSigns() {
+            double sign = reversed ? -1 : 1;
+            p = sign * Math.abs(p);
+            i = sign * Math.abs(i);
+            d = sign * Math.abs(d);
+            f = sign * Math.abs(f);
+        }
+    }
+}
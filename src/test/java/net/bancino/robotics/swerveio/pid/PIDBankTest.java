@@ -0,0 +1,119 @@
+package net.bancino.robotics.swerveio.pid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that every way of running a controller in a PID bank gives exactly
+ * the same output as a MiniPID with the same configuration.
+ */
+public class PIDBankTest {
+
+    private static final int CONFIGURATIONS = 2000;
+    private static final int STEPS = 200;
+    private static final int CONTROLLERS = 8;
+
+    @Test
+    public void testViewMatchesMiniPID() {
+        Random inputs = new Random(5557);
+        PIDBank bank = new PIDBank();
+        for (int c = 0; c < CONFIGURATIONS; c++) {
+            MiniPID pid = new MiniPID(0, 0, 0);
+            AbstractPIDController view = bank.add();
+            RandomPIDConfiguration.configure(pid, c);
+            RandomPIDConfiguration.configure(view, c);
+            for (int s = 0; s < STEPS; s++) {
+                if (s == STEPS / 2) {
+                    RandomPIDConfiguration.retune(pid, c);
+                    RandomPIDConfiguration.retune(view, c);
+                }
+                double actual = (inputs.nextDouble() * 400) - 20;
+                double setpoint = (inputs.nextDouble() * 400) - 20;
+                assertEquals("Configuration " + c + ", step " + s, pid.getOutput(actual, setpoint),
+                        view.getOutput(actual, setpoint), 0);
+                assertEquals(pid.getPreviousOutput(), view.getPreviousOutput(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testEvaluateMatchesMiniPID() {
+        Random inputs = new Random(2020);
+        for (int c = 0; c < CONFIGURATIONS; c += CONTROLLERS) {
+            PIDBank bank = new PIDBank(CONTROLLERS);
+            MiniPID[] pids = new MiniPID[CONTROLLERS];
+            for (int n = 0; n < CONTROLLERS; n++) {
+                pids[n] = new MiniPID(0, 0, 0);
+                RandomPIDConfiguration.configure(pids[n], c + n);
+                RandomPIDConfiguration.configure(bank.add(), c + n);
+            }
+            for (int s = 0; s < STEPS; s++) {
+                if (s == STEPS / 2) {
+                    for (int n = 0; n < CONTROLLERS; n++) {
+                        RandomPIDConfiguration.retune(pids[n], c + n);
+                        RandomPIDConfiguration.retune(bank.get(n), c + n);
+                    }
+                }
+                double[] expected = new double[CONTROLLERS];
+                for (int n = 0; n < CONTROLLERS; n++) {
+                    double actual = (inputs.nextDouble() * 400) - 20;
+                    double setpoint = (inputs.nextDouble() * 400) - 20;
+                    expected[n] = pids[n].getOutput(actual, setpoint);
+                    bank.setInput(n, actual, setpoint);
+                }
+                bank.evaluate();
+                for (int n = 0; n < CONTROLLERS; n++) {
+                    assertEquals("Configuration " + (c + n) + ", step " + s, expected[n], bank.getOutput(n), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAdoptMatchesMiniPID() {
+        Random inputs = new Random(1);
+        PIDBank bank = new PIDBank();
+        for (int c = 0; c < CONFIGURATIONS; c++) {
+            MiniPID pid = new MiniPID(0, 0, 0);
+            MiniPID adopted = new MiniPID(0, 0, 0);
+            RandomPIDConfiguration.configure(pid, c);
+            RandomPIDConfiguration.configure(adopted, c);
+            AbstractPIDController view = bank.adopt(adopted);
+            for (int s = 0; s < STEPS; s++) {
+                double actual = (inputs.nextDouble() * 400) - 20;
+                double setpoint = (inputs.nextDouble() * 400) - 20;
+                assertEquals("Configuration " + c + ", step " + s, pid.getOutput(actual, setpoint),
+                        view.getOutput(actual, setpoint), 0);
+            }
+        }
+        assertEquals(CONFIGURATIONS, bank.size());
+    }
+
+    @Test
+    public void testAdoptLeavesTimeAwareMiniPID() {
+        PIDBank bank = new PIDBank();
+        MiniPID pid = new MiniPID(1, 0, 0);
+        pid.setTimeAware(0.02);
+        assertSame(pid, bank.adopt(pid));
+        assertEquals(0, bank.size());
+    }
+
+    @Test
+    public void testGrowsPastCapacity() {
+        PIDBank bank = new PIDBank(1);
+        for (int n = 0; n < 3; n++) {
+            bank.add().setP(n + 1);
+        }
+        assertEquals(3, bank.size());
+        assertEquals(3, bank.get(2).getOutput(0, 1), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetOutsideBank() {
+        new PIDBank(4).get(0);
+    }
+}
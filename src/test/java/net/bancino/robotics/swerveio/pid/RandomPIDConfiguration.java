@@ -0,0 +1,84 @@
+package net.bancino.robotics.swerveio.pid;
+
+import java.util.Random;
+
+/**
+ * Configures PID controllers at random, using every option of
+ * {@link AbstractPIDController}, so that two implementations can be given the
+ * same configuration and checked against each other.
+ */
+final class RandomPIDConfiguration {
+
+    private RandomPIDConfiguration() {
+
+    }
+
+    /**
+     * Configure a controller. Controllers configured with the same seed get the
+     * same calls, in the same order.
+     * 
+     * @param pid  The controller to configure.
+     * @param seed The seed of the configuration.
+     */
+    static void configure(AbstractPIDController pid, long seed) {
+        Random random = new Random(seed);
+        if (random.nextBoolean()) {
+            pid.setDirection(random.nextBoolean());
+        }
+        double p = random.nextDouble();
+        double i = random.nextBoolean() ? random.nextDouble() * 0.05 : 0;
+        double d = random.nextBoolean() ? random.nextDouble() * 0.2 : 0;
+        if (random.nextBoolean()) {
+            pid.setPID(p, i, d, random.nextDouble() * 0.1);
+        } else {
+            pid.setPID(p, i, d);
+        }
+        if (random.nextBoolean()) {
+            double limit = 0.1 + random.nextDouble();
+            pid.setOutputLimits(-limit, limit * random.nextDouble());
+        }
+        if (random.nextInt(3) == 0) {
+            pid.setMaxIOutput(random.nextDouble() * 0.5);
+        }
+        if (random.nextInt(3) == 0) {
+            pid.setOutputRampRate(random.nextDouble() * 0.2);
+        }
+        if (random.nextInt(3) == 0) {
+            pid.setSetpointRange(random.nextDouble() * 180);
+        }
+        if (random.nextInt(3) == 0) {
+            pid.setOutputFilter(random.nextDouble());
+        }
+        if (random.nextInt(3) == 0) {
+            pid.setContinuousInput(0, 360);
+        }
+        if (random.nextInt(4) == 0) {
+            pid.setDirection(random.nextBoolean());
+        }
+    }
+
+    /**
+     * Reconfigure a controller in the middle of a run, the way a robot might
+     * while it is being tuned.
+     * 
+     * @param pid  The controller to reconfigure.
+     * @param seed The seed of the change.
+     */
+    static void retune(AbstractPIDController pid, long seed) {
+        Random random = new Random(seed);
+        switch (random.nextInt(4)) {
+        case 0:
+            pid.setI(random.nextDouble() * 0.05);
+            break;
+        case 1:
+            pid.setP(random.nextDouble());
+            break;
+        case 2:
+            pid.reset();
+            break;
+        default:
+            pid.setMaxIOutput(random.nextDouble() * 0.5);
+            break;
+        }
+    }
+}